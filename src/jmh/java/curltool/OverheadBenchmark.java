@@ -0,0 +1,137 @@
+package curltool;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the tool itself on the hot paths of every request: curl args, the curl process, templated bodies,
+ * write-out parsing and statistics. Times are per request, so they could be compared with the reported milliseconds.
+ * Run by <code>mvn -P benchmarks test-compile exec:exec</code>, curl is started from PATH.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OverheadBenchmark {
+
+    private static final int BATCH = 100;
+
+    @Param("curl")
+    public String curl;
+
+    private CurlCmd curlCmd;
+    // the bodies are static, so the args don't have files of the rendered ones
+    private final List<Path> bodyFiles = new ArrayList<>();
+    private ProcessSupervisor supervisor;
+    private CurlProcessEngine engine;
+    // curl output of a batch: a response followed by the write-out block for every request
+    private byte[] output;
+    private Statistics statistics;
+    private Sample sample;
+    private long next;
+    private RequestBody body;
+    private Template.Output rendered;
+
+    @Setup
+    public void setUp() throws IOException {
+        CurlCmd.Builder builder = new CurlCmd.Builder().setCurlCmd(curl).setUrlToTest("file:///dev/null");
+        builder.addHeader("Accept: application/json");
+        builder.addHeader("X-Request-Id: benchmark");
+        curlCmd = builder.build();
+
+        supervisor = new ProcessSupervisor(1, new Histogram(3_600_000_000L, CurlCmd.DEFAULT_PRECISION));
+        // the file url is read without the network, so the process is the only cost
+        engine = new CurlProcessEngine(curlCmd::curlArgs, CurlCmd.DEFAULT_TIMEOUT, 0, supervisor, false, false);
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < BATCH; i++) {
+            sb.append("{\"status\":\"ok\",\"items\":[1,2,3]}\n")
+                    .append("exitcode=0\njson={}\nstdout=\nhttp_code=200\n")
+                    .append("time_namelookup=0.000512\ntime_connect=0.001024\ntime_appconnect=0.004096\n")
+                    .append("time_redirect=0.000000\ntime_pretransfer=0.004200\ntime_starttransfer=0.012345\n")
+                    .append("size_download=33\nspeed_download=2640\ntime_total=0.012500\n");
+        }
+        output = sb.toString().getBytes(StandardCharsets.US_ASCII);
+
+        statistics = new Statistics(3_600_000_000L, CurlCmd.DEFAULT_PRECISION);
+        sample = new Sample();
+        sample.httpCode = 200;
+        sample.sizeDownload = 33;
+
+        body = RequestBody.of(Collections.emptySet(), Collections.singleton(
+                "{\"id\":{{seq}},\"trace\":\"{{uuid}}\",\"shard\":{{random:64}},\"items\":[1,2,3]}"), true, null);
+        rendered = new Template.Output();
+    }
+
+    @TearDown
+    public void tearDown() {
+        supervisor.close();
+    }
+
+    @Benchmark
+    public String[] curlArgs() throws IOException {
+        return curlCmd.curlArgs(1, bodyFiles);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public String[] curlArgsBatch() throws IOException {
+        return curlCmd.curlArgs(BATCH, bodyFiles);
+    }
+
+    // fork, pipe reading and reap of a curl process executing one request
+    @Benchmark
+    public boolean curlProcess(Blackhole blackhole) throws IOException, InterruptedException {
+        return engine.execute(1, null, blackhole::consume);
+    }
+
+    // body with the sequence number, a UUID and a random value, rendered to the reused buffer
+    @Benchmark
+    public int renderBody() {
+        body.render(rendered);
+        return rendered.length;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void parseWriteOut(Blackhole blackhole) throws IOException {
+        WriteOutReader.read(new ByteArrayInputStream(output), null, s -> blackhole.consume(s.total));
+    }
+
+    @Benchmark
+    public Statistics countStatistics() {
+        // times are changed, so the values are recorded in different buckets
+        long total = 1_000 + (next++ & 0xFFFF);
+        sample.namelookup = total >> 6;
+        sample.connect = total >> 5;
+        sample.pretransfer = total >> 4;
+        sample.starttransfer = total >> 1;
+        sample.total = total;
+        sample.speedDownload = 33_000_000 / total;
+        statistics.add(sample);
+        return statistics;
+    }
+}
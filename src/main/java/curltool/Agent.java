@@ -0,0 +1,96 @@
+package curltool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+
+import static java.lang.String.format;
+
+/**
+ * Agent of a distributed run: it joins the coordinator (see <code>Coordinator</code> for the messages),
+ * waits for the common start time and sends the statistics of its run back.
+ */
+class Agent implements AutoCloseable {
+
+    private final Socket socket;
+    private final DataOutputStream out;
+    private final int index;
+    private final int agents;
+    private final long startTime;
+
+    /**
+     * Connects to the coordinator 'host:port' and waits till all the agents have joined
+     */
+    Agent(String coordinator) throws IOException {
+        int colon = coordinator.lastIndexOf(':');
+        socket = new Socket(coordinator.substring(0, colon), Integer.parseInt(coordinator.substring(colon + 1)));
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            out.writeInt(Coordinator.MAGIC);
+            out.writeInt(Coordinator.VERSION);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            if (in.readInt() != Coordinator.MAGIC) {
+                throw new IOException(format("%s is not a coordinator.", coordinator));
+            }
+            int version = in.readInt();
+            if (version != Coordinator.VERSION) {
+                throw new IOException(format("Version %d of the coordinator is not supported.", version));
+            }
+            index = in.readInt();
+            agents = in.readInt();
+            startTime = in.readLong();
+        } catch (EOFException e) {
+            socket.close();
+            throw new IOException(format("Coordinator %s has closed the connection.", coordinator), e);
+        } catch (IOException | RuntimeException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    // index of the agent from 0
+    int getIndex() {
+        return index;
+    }
+
+    int getAgents() {
+        return agents;
+    }
+
+    /**
+     * Sleeps till the start time of all the agents
+     */
+    void awaitStart() throws InterruptedException {
+        for (long left = startTime - System.currentTimeMillis(); left > 0; left = startTime - System.currentTimeMillis()) {
+            Thread.sleep(left);
+        }
+    }
+
+    void sendResult(CurlCmd curlCmd) throws IOException {
+        out.writeBoolean(true);
+        curlCmd.writeResult(out);
+        out.flush();
+    }
+
+    // the coordinator is told about the failure, it couldn't merge the statistics anyway
+    void sendFailure(Exception failure) {
+        try {
+            out.writeBoolean(false);
+            out.writeUTF(String.valueOf(failure.getMessage()));
+            out.flush();
+        } catch (IOException e) {
+            failure.addSuppressed(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,20 @@
+package curltool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+/**
+ * Request engine which executes requests without blocking the caller,
+ * so the count of requests in flight is not bounded by the count of threads.
+ */
+interface AsyncRequestEngine extends RequestEngine {
+
+    /**
+     * Starts the same requests as <code>execute</code> and returns at once. The results are passed to the consumer
+     * by the engine threads, the future is completed with the result of <code>execute</code>.
+     */
+    CompletableFuture<Boolean> executeAsync(int transfers, File logFile, Consumer<Sample> consumer)
+            throws IOException;
+}
@@ -0,0 +1,118 @@
+package curltool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Baseline of a run: the distribution of the total times of its successful steady state requests saved to a file.
+ * A later run is compared to it by the one-sided Mann-Whitney U test, which doesn't assume any shape
+ * of the distributions. The test is counted on the histogram buckets, so the values of the same bucket are ties.
+ */
+class Baseline {
+
+    // "CTBL"
+    static final int MAGIC = 0x4354424c;
+    static final int VERSION = 1;
+
+    private Baseline() {
+    }
+
+    static void write(Path file, Histogram times) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            times.write(out);
+        }
+    }
+
+    static Histogram read(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException(format("%s is not a baseline file.", file));
+            }
+            int version = in.readInt();
+            if (version != VERSION) {
+                throw new IOException(format("Version %d of the baseline file is not supported.", version));
+            }
+            return Histogram.read(in);
+        } catch (EOFException e) {
+            throw new IOException(format("%s is not a baseline file.", file), e);
+        }
+    }
+
+    /**
+     * Returns p-value of the hypothesis that the current values are not greater than the baseline ones.
+     * A small value means that the current values are significantly greater. It is NaN if any histogram is empty.
+     */
+    static double slowerPValue(Histogram baseline, Histogram current) {
+        long n1 = baseline.getTotalCount();
+        long n2 = current.getTotalCount();
+        if (n1 == 0 || n2 == 0) {
+            return Double.NaN;
+        }
+        List<long[]> baselineBuckets = buckets(baseline);
+        List<long[]> currentBuckets = buckets(current);
+
+        // U statistic of the current values: count of pairs where the current value is greater, ties count as halves
+        double u = 0;
+        // sum of (t^3 - t) of the tie groups to correct the variance
+        double ties = 0;
+        long baselineBelow = 0;
+        int b = 0;
+        int c = 0;
+        while (b < baselineBuckets.size() || c < currentBuckets.size()) {
+            long baselineValue = b < baselineBuckets.size() ? baselineBuckets.get(b)[0] : Long.MAX_VALUE;
+            long currentValue = c < currentBuckets.size() ? currentBuckets.get(c)[0] : Long.MAX_VALUE;
+            long value = Math.min(baselineValue, currentValue);
+            long baselineCount = baselineValue == value ? baselineBuckets.get(b++)[1] : 0;
+            long currentCount = currentValue == value ? currentBuckets.get(c++)[1] : 0;
+            u += currentCount * (baselineBelow + baselineCount / 2.0);
+            double t = baselineCount + currentCount;
+            ties += t * t * t - t;
+            baselineBelow += baselineCount;
+        }
+
+        double n = n1 + n2;
+        double mean = n1 * (double) n2 / 2;
+        double variance = n1 * (double) n2 / 12 * ((n + 1) - ties / (n * (n - 1)));
+        if (variance <= 0) {
+            // all the values are the same
+            return 0.5;
+        }
+        // continuity correction
+        double z = (u - mean - 0.5) / Math.sqrt(variance);
+        return upperTail(z);
+    }
+
+    // probability that a standard normal value is greater than z
+    static double upperTail(double z) {
+        return erfc(z / Math.sqrt(2)) / 2;
+    }
+
+    // complementary error function with the relative error less than 1.2e-7 (Numerical Recipes, erfcc)
+    private static double erfc(double x) {
+        double z = Math.abs(x);
+        double t = 1 / (1 + z / 2);
+        double r = t * Math.exp(-z * z - 1.26551223 + t * (1.00002368 + t * (0.37409196 + t * (0.09678418
+                + t * (-0.18628806 + t * (0.27886807 + t * (-1.13520398 + t * (1.48851587
+                + t * (-0.82215223 + t * 0.17087277)))))))));
+        return x >= 0 ? r : 2 - r;
+    }
+
+    // value and count of every bucket in the ascending order of the values
+    private static List<long[]> buckets(Histogram histogram) {
+        List<long[]> buckets = new ArrayList<>();
+        histogram.forEachBucket((value, count) -> buckets.add(new long[]{value, count}));
+        return buckets;
+    }
+}
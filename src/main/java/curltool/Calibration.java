@@ -0,0 +1,123 @@
+package curltool;
+
+import java.io.IOException;
+import java.text.DecimalFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import static java.lang.String.format;
+import static java.lang.System.lineSeparator;
+
+/**
+ * Measures the accuracy of the tool: every engine is run by the usual <code>CurlCmd</code> execution against
+ * the loopback <code>CalibrationServer</code> with every concurrency level, and the measured latency and errors
+ * are compared with the injected ones. The latency above the injected delay is the overhead of the engine
+ * (process start, pipes, parsing and the loopback network).
+ */
+class Calibration {
+
+    private static final DecimalFormat AVERAGE = new DecimalFormat("##.##");
+    private static final DecimalFormat TIME = new DecimalFormat("0.###");
+
+    private final double delay;
+    private final int size;
+    private final double errorRate;
+    // curl is calibrated only if its command is set
+    private final String curlCommand;
+    private final int count;
+    private final int[] concurrencyLevels;
+    private final List<Row> rows = new ArrayList<>();
+
+    /**
+     * Creates the calibration with the injected delay in milliseconds, body size in bytes and percent of errors,
+     * every engine executes the count of requests with every concurrency level
+     */
+    Calibration(double delay, int size, double errorRate, String curlCommand, int count, int... concurrencyLevels) {
+        this.delay = delay;
+        this.size = size;
+        this.errorRate = errorRate;
+        this.curlCommand = curlCommand;
+        this.count = count;
+        this.concurrencyLevels = concurrencyLevels;
+    }
+
+    /**
+     * Starts the server and executes the runs one after another, so they don't share the machine
+     */
+    List<Row> run() throws IOException {
+        rows.clear();
+        try (CalibrationServer server = new CalibrationServer(delay, size, errorRate)) {
+            for (RequestEngine.Type engine : RequestEngine.Type.values()) {
+                if (engine == RequestEngine.Type.CURL && curlCommand == null) {
+                    continue;
+                }
+                for (int concurrency : concurrencyLevels) {
+                    CurlCmd.Builder builder = new CurlCmd.Builder().setEngine(engine).setUrlToTest(server.getUrl())
+                            .setCount(count).setConcurrency(concurrency);
+                    if (curlCommand != null) {
+                        builder.setCurlCmd(curlCommand);
+                    }
+                    rows.add(new Row(engine, concurrency, builder.execute().getReport().getThen()));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Result of an engine with a concurrency level, times are in milliseconds
+     */
+    class Row {
+
+        final RequestEngine.Type engine;
+        final int concurrency;
+        final Report.Summary summary;
+
+        Row(RequestEngine.Type engine, int concurrency, Report.Summary summary) {
+            this.engine = engine;
+            this.concurrency = concurrency;
+            this.summary = summary;
+        }
+
+        // latency of the percentile above the injected delay
+        double getOverhead(double percentile) {
+            return summary.getTotal().getPercentile(percentile) - delay;
+        }
+
+        // percent of the requests that are failed or have the error http code
+        double getErrorsPercent() {
+            long requests = summary.getRequests();
+            long failed = summary.getErrors() + summary.getHttpCodes().getOrDefault(CalibrationServer.ERROR_CODE, 0L);
+            return requests > 0 ? failed * 100.0 / requests : 0;
+        }
+
+        // average size of the successful responses
+        double getAverageSize() {
+            long responses = summary.getSuccessful()
+                    - summary.getHttpCodes().getOrDefault(CalibrationServer.ERROR_CODE, 0L);
+            return responses > 0 ? (double) summary.getDownloaded() / responses : 0;
+        }
+    }
+
+    // Convert the rows to a table, the overhead is the measured latency minus the injected delay
+    @Override
+    public String toString() {
+        String row = "%8s %12s %10s %10s %8s %8s %13s %13s %10s %12s";
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add(format("Calibration: injected delay %s ms, size %d bytes, errors %s%%, %d requests per run:",
+                        TIME.format(delay), size, AVERAGE.format(errorRate), count))
+                .add(format(row, "engine", "concurrency", "requests", "per second", "p50", "p99", "overhead p50",
+                        "overhead p99", "errors, %", "size, bytes"));
+        for (Row r : rows) {
+            Report.Distribution total = r.summary.getTotal();
+            sj.add(format(row, r.engine.name().toLowerCase(), r.concurrency, r.summary.getRequests(),
+                    Double.isNaN(r.summary.getRequestsPerSecond()) ? "-"
+                            : AVERAGE.format(r.summary.getRequestsPerSecond()),
+                    TIME.format(total.getPercentile(50)), TIME.format(total.getPercentile(99)),
+                    TIME.format(r.getOverhead(50)), TIME.format(r.getOverhead(99)),
+                    AVERAGE.format(r.getErrorsPercent()), AVERAGE.format(r.getAverageSize())));
+        }
+        return sj.toString();
+    }
+}
@@ -0,0 +1,126 @@
+package curltool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loopback http server with the known latency, response size and error rate. The tool measures it like any other
+ * server, so the difference between the measured and the injected values is the overhead of the tool.
+ * Errors are spread evenly: the percent of every prefix of the requests is as close to the error rate as possible,
+ * an error is a response with http code 500 and without a body.
+ */
+class CalibrationServer implements AutoCloseable {
+
+    static final int ERROR_CODE = 500;
+
+    static {
+        // the headers and the body are written separately, so with Nagle's algorithm the body waits for the delayed
+        // ack of the client and every response is about 40 ms late, the property is read once by the first server
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final long delayNanos;
+    private final byte[] body;
+    private final double errorRate;
+    private final AtomicLong requests = new AtomicLong();
+
+    /**
+     * Starts the server with the delay of every response in milliseconds, the size of the response body in bytes
+     * and the percent of the failed responses
+     */
+    CalibrationServer(double delay, int size, double errorRate) throws IOException {
+        this(delay, size, errorRate, 0);
+    }
+
+    /**
+     * Starts the server which handles at most the count of requests at once, the rest ones wait in the queue,
+     * so the latency grows with the concurrency like the one of a saturated server. Zero is not limited.
+     */
+    CalibrationServer(double delay, int size, double errorRate, int threads) throws IOException {
+        if (delay < 0 || size < 0 || errorRate < 0 || errorRate > 100 || threads < 0) {
+            throw new IllegalArgumentException("Settings of the calibration server are wrong.");
+        }
+        delayNanos = (long) (delay * TimeUnit.MILLISECONDS.toNanos(1));
+        body = new byte[size];
+        Arrays.fill(body, (byte) 'x');
+        this.errorRate = errorRate;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1000);
+        server.createContext("/", this::handle);
+        // requests wait for their delay concurrently, so every request has its own thread if they are not limited
+        ThreadFactory factory = r -> {
+            Thread thread = new Thread(r, "calibration-server");
+            thread.setDaemon(true);
+            return thread;
+        };
+        handlers = threads > 0
+                ? Executors.newFixedThreadPool(threads, factory) : Executors.newCachedThreadPool(factory);
+        server.setExecutor(handlers);
+        server.start();
+    }
+
+    String getUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    // count of the requests that the server has received
+    long getRequests() {
+        return requests.get();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        long index = requests.incrementAndGet();
+        try (InputStream in = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            while (in.read(buffer) >= 0) {
+                // the request body is not needed, it is read to keep the connection
+            }
+        }
+        for (long left = delayNanos - (System.nanoTime() - start); left > 0;
+             left = delayNanos - (System.nanoTime() - start)) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(left);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if ((long) (index * errorRate / 100) > (long) ((index - 1) * errorRate / 100)) {
+            exchange.sendResponseHeaders(ERROR_CODE, -1);
+            exchange.close();
+            return;
+        }
+        if (body.length == 0) {
+            // the response without a body is completed by the exchange, closing its body stream as well sometimes
+            // drops the keep-alive connection, so the client sends the next request again and it is counted twice
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+            return;
+        }
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        handlers.shutdownNow();
+    }
+}
@@ -0,0 +1,117 @@
+package curltool;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * Coordinator of a distributed run. It waits for the agents on the port, tells every agent its index, the count
+ * of agents and the common start time, so the load windows of the agents overlap. After their runs the agents send
+ * their statistics back and the coordinator merges them to a single run, see <code>CurlCmd::merge</code>.
+ * Every agent is <code>CurlEntryPoint</code> with the same load arguments, it executes its share of the count
+ * and the rate (see <code>CurlCmd.Builder::setAgent</code>).
+ * Messages are written by <code>DataOutputStream</code>: the agent sends the magic number and the version,
+ * the coordinator answers with the same ones followed by the agent index, the count of agents and the start time
+ * in milliseconds since the epoch. The agent replies with true and its statistics, or false and the error message.
+ */
+class Coordinator implements AutoCloseable {
+
+    // "CTDC"
+    static final int MAGIC = 0x43544443;
+    static final int VERSION = 1;
+    // agents start this count of milliseconds after the last one has joined, so all of them get the start time
+    static final long START_DELAY = 1000;
+
+    private final ServerSocket server;
+    private final int agents;
+    private final PrintStream console;
+
+    Coordinator(int port, int agents, PrintStream console) throws IOException {
+        if (agents < 1) {
+            throw new IllegalArgumentException("Count of agents should be positive.");
+        }
+        server = new ServerSocket(port, agents);
+        this.agents = agents;
+        this.console = console;
+    }
+
+    // port that the agents connect to, it is chosen by the system if the port 0 is given
+    int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Waits for all the agents, starts them and merges their statistics when they are completed
+     */
+    CurlCmd run() throws IOException {
+        console.println(format("Waiting for %d agents on port %d", agents, getPort()));
+        List<Socket> sockets = new ArrayList<>();
+        try {
+            List<DataOutputStream> outputs = new ArrayList<>();
+            List<DataInput> inputs = new ArrayList<>();
+            while (sockets.size() < agents) {
+                Socket socket = server.accept();
+                sockets.add(socket);
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                readHandshake(in, socket);
+                inputs.add(in);
+                outputs.add(out);
+                console.println(format("Agent %d of %d joined from %s", sockets.size(), agents,
+                        socket.getRemoteSocketAddress()));
+            }
+
+            long start = System.currentTimeMillis() + START_DELAY;
+            for (int i = 0; i < agents; i++) {
+                DataOutputStream out = outputs.get(i);
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeInt(i);
+                out.writeInt(agents);
+                out.writeLong(start);
+                out.flush();
+            }
+
+            for (int i = 0; i < agents; i++) {
+                DataInput in = inputs.get(i);
+                if (!in.readBoolean()) {
+                    throw new IOException(format("Agent %d failed: %s", i + 1, in.readUTF()));
+                }
+            }
+            console.println("All the agents are completed");
+            return CurlCmd.merge(inputs);
+        } catch (EOFException e) {
+            throw new IOException("Agent has been disconnected.", e);
+        } finally {
+            for (Socket socket : sockets) {
+                socket.close();
+            }
+        }
+    }
+
+    private static void readHandshake(DataInput in, Socket socket) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(format("%s is not an agent.", socket.getRemoteSocketAddress()));
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException(format("Version %d of the agent is not supported.", version));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+    }
+}
@@ -0,0 +1,128 @@
+package curltool;
+
+import java.util.Locale;
+import java.util.StringJoiner;
+
+import static curltool.ReportRenderer.Format.NUMBER;
+import static java.lang.System.lineSeparator;
+
+/**
+ * Renders the report to csv lines 'scope,metric,value', ex 'then,total_p99,25'.
+ * Scopes are first, warmup, then, schedule, run, estimate, baseline, ramp, processes,
+ * 'endpoint:' followed by the endpoint name and 'step:' followed by the load of the ramp step.
+ * Metrics that are unknown are not written.
+ */
+class CsvReportRenderer implements ReportRenderer {
+
+    @Override
+    public String render(Report report) {
+        StringJoiner sj = new StringJoiner(lineSeparator(), "", lineSeparator()).add("scope,metric,value");
+        addSummary(sj, "first", report.getFirst());
+        if (report.getWarmup() != null) {
+            addSummary(sj, "warmup", report.getWarmup());
+        }
+        addSummary(sj, "then", report.getThen());
+        sj.add(line("run", "cancelled", String.valueOf(report.getCancelled())));
+        Report.Schedule schedule = report.getSchedule();
+        if (schedule != null) {
+            sj.add(line("schedule", "rate", NUMBER.format(schedule.getRate())));
+            addDistribution(sj, "schedule", "send_delay", schedule.getSendDelay());
+            addDistribution(sj, "schedule", "corrected", schedule.getCorrected());
+            sj.add(line("schedule", "late_threshold", NUMBER.format(schedule.getLateThreshold())));
+            sj.add(line("schedule", "late", String.valueOf(schedule.getLate())));
+        }
+        report.getEndpoints().forEach(endpoint -> addSummary(sj, "endpoint:" + endpoint.getName(), endpoint));
+        Report.Estimate estimate = report.getEstimate();
+        if (estimate != null) {
+            sj.add(line("estimate", estimate.getMetric(), NUMBER.format(estimate.getValue())))
+                    .add(line("estimate", "confidence", NUMBER.format(estimate.getConfidence())))
+                    .add(line("estimate", "count", String.valueOf(estimate.getCount())));
+            if (!Double.isNaN(estimate.getRelativeError())) {
+                sj.add(line("estimate", "lower", NUMBER.format(estimate.getLower())))
+                        .add(line("estimate", "upper", NUMBER.format(estimate.getUpper())))
+                        .add(line("estimate", "error_percent", NUMBER.format(estimate.getRelativeError())));
+            }
+            sj.add(line("estimate", "converged", estimate.isConverged() ? "1" : "0"));
+        }
+        Report.Ramp ramp = report.getRamp();
+        if (ramp != null) {
+            for (Report.Step step : ramp.getSteps()) {
+                String scope = "step:" + NUMBER.format(step.getLoad());
+                addSummary(sj, scope, step.getSummary());
+                addDistribution(sj, scope, "latency", step.getLatency());
+                sj.add(line(scope, "cancelled", String.valueOf(step.getCancelled())))
+                        .add(line(scope, "errors_percent", NUMBER.format(step.getErrorsPercent())))
+                        .add(line(scope, "passed", step.isPassed() ? "1" : "0"));
+            }
+            if (ramp.getKnee() != null) {
+                sj.add(line("ramp", "knee", NUMBER.format(ramp.getKnee().getLoad())));
+            }
+            sj.add(line("ramp", "breached", ramp.isBreached() ? "1" : "0"));
+        }
+        Report.Comparison comparison = report.getComparison();
+        if (comparison != null) {
+            addDistribution(sj, "baseline", "total", comparison.getBaseline());
+            comparison.getChanges().forEach((percentile, change) -> {
+                if (!Double.isInfinite(change)) {
+                    sj.add(line("baseline", "change_p" + NUMBER.format(percentile), NUMBER.format(change)));
+                }
+            });
+            if (!Double.isNaN(comparison.getPValue())) {
+                sj.add(line("baseline", "p_value", String.format(Locale.ROOT, "%.3g", comparison.getPValue())));
+            }
+            sj.add(line("baseline", "max_regression", NUMBER.format(comparison.getMaxRegression())));
+            sj.add(line("baseline", "regression", comparison.isRegression() ? "1" : "0"));
+        }
+        Report.Processes processes = report.getProcesses();
+        if (processes != null) {
+            sj.add(line("processes", "started", String.valueOf(processes.getStarted())))
+                    .add(line("processes", "killed", String.valueOf(processes.getKilled())))
+                    .add(line("processes", "max_alive", String.valueOf(processes.getMaxAlive())));
+            addDistribution(sj, "processes", "wall_time", processes.getWallTime());
+            if (!Double.isNaN(processes.getCpuTime())) {
+                sj.add(line("processes", "cpu_time", NUMBER.format(processes.getCpuTime())))
+                        .add(line("processes", "cpu_time_per_process", NUMBER.format(processes.getCpuTimePerProcess())));
+            }
+        }
+        return sj.toString();
+    }
+
+    private static void addSummary(StringJoiner sj, String scope, Report.Summary summary) {
+        sj.add(line(scope, "requests", String.valueOf(summary.getRequests())))
+                .add(line(scope, "successful", String.valueOf(summary.getSuccessful())))
+                .add(line(scope, "errors", String.valueOf(summary.getErrors())));
+        if (!Double.isNaN(summary.getRequestsPerSecond())) {
+            sj.add(line(scope, "requests_per_second", NUMBER.format(summary.getRequestsPerSecond())));
+        }
+        summary.getHttpCodes().forEach((code, count) -> sj.add(line(scope, "http_code_" + code, String.valueOf(count))));
+        summary.getExitCodes().forEach((code, count) -> sj.add(line(scope, "exit_code_" + code, String.valueOf(count))));
+        addDistribution(sj, scope, "total", summary.getTotal());
+        addDistribution(sj, scope, "calc", summary.getCalc());
+        addDistribution(sj, scope, "dns", summary.getDns());
+        addDistribution(sj, scope, "tcp", summary.getTcp());
+        addDistribution(sj, scope, "tls", summary.getTls());
+        addDistribution(sj, scope, "redirect", summary.getRedirect());
+        addDistribution(sj, scope, "transfer", summary.getTransfer());
+        sj.add(line(scope, "downloaded", String.valueOf(summary.getDownloaded())));
+        addDistribution(sj, scope, "speed", summary.getSpeed());
+    }
+
+    private static void addDistribution(StringJoiner sj, String scope, String name, Report.Distribution distribution) {
+        sj.add(line(scope, name + "_count", String.valueOf(distribution.getCount())))
+                .add(line(scope, name + "_min", NUMBER.format(distribution.getMin())))
+                .add(line(scope, name + "_max", NUMBER.format(distribution.getMax())))
+                .add(line(scope, name + "_mean", NUMBER.format(distribution.getMean())))
+                .add(line(scope, name + "_std_dev", NUMBER.format(distribution.getStdDeviation())));
+        distribution.getPercentiles().forEach((percentile, value) ->
+                sj.add(line(scope, name + "_p" + NUMBER.format(percentile), NUMBER.format(value))));
+    }
+
+    private static String line(String scope, String metric, String value) {
+        return quote(scope) + "," + metric + "," + value;
+    }
+
+    // scope could contain an endpoint name with commas or quotes
+    private static String quote(String value) {
+        return value.contains(",") || value.contains("\"") ? '"' + value.replace("\"", "\"\"") + '"' : value;
+    }
+}
@@ -1,17 +1,24 @@
 package curltool;
 
+import java.io.BufferedReader;
+import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.DecimalFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
-import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 import java.util.stream.Stream;
 
 import static java.lang.String.format;
@@ -27,33 +34,134 @@ import static java.lang.System.*;
  */
 public class CurlCmd {
 
-    private static final String TIME_PRETRANSFER = "time_pretransfer";
-    private static final String TIME_STARTTRANSFER = "time_starttransfer";
-    private static final String TIME_TOTAL = "time_total";
+    static final String EXIT_CODE = "exitcode";
+    static final String HTTP_CODE = "http_code";
+    static final String TIME_NAMELOOKUP = "time_namelookup";
+    static final String TIME_CONNECT = "time_connect";
+    static final String TIME_APPCONNECT = "time_appconnect";
+    static final String TIME_REDIRECT = "time_redirect";
+    static final String TIME_PRETRANSFER = "time_pretransfer";
+    static final String TIME_STARTTRANSFER = "time_starttransfer";
+    static final String SIZE_DOWNLOAD = "size_download";
+    static final String SPEED_DOWNLOAD = "speed_download";
+    static final String TIME_TOTAL = "time_total";
 
-    // this is a log template that we will write for every curl request an then process to culc a statistics
+    // this is a log template that curl writes for every request, it is parsed as it arrives to culc a statistics.
+    // exitcode should be the first and time_total should be the last value of the template
     private static final String CURL_OUT_TEMPLATE = "\n" +
-            "exitcode=%{exitcode}\n" +
+            EXIT_CODE + "=%{" + EXIT_CODE + "}\n" +
             "json=%{json}\n" +
             "stdout=%{stdout}\n" +
-            "time_pretransfer=%{" + TIME_PRETRANSFER + "}\n" +
-            "time_starttransfer=%{" + TIME_STARTTRANSFER + "}\n" +
-            "time_total=%{" + TIME_TOTAL + "}\n";
+            HTTP_CODE + "=%{" + HTTP_CODE + "}\n" +
+            TIME_NAMELOOKUP + "=%{" + TIME_NAMELOOKUP + "}\n" +
+            TIME_CONNECT + "=%{" + TIME_CONNECT + "}\n" +
+            TIME_APPCONNECT + "=%{" + TIME_APPCONNECT + "}\n" +
+            TIME_REDIRECT + "=%{" + TIME_REDIRECT + "}\n" +
+            TIME_PRETRANSFER + "=%{" + TIME_PRETRANSFER + "}\n" +
+            TIME_STARTTRANSFER + "=%{" + TIME_STARTTRANSFER + "}\n" +
+            SIZE_DOWNLOAD + "=%{" + SIZE_DOWNLOAD + "}\n" +
+            SPEED_DOWNLOAD + "=%{" + SPEED_DOWNLOAD + "}\n" +
+            TIME_TOTAL + "=%{" + TIME_TOTAL + "}\n";
 
     static final int DEFAULT_COUNT = 10;
+    static final int DEFAULT_CONCURRENCY = 1;
+    static final int DEFAULT_BATCH = 1;
     static final int DEFAULT_TIMEOUT = 10 * 1000;
     static final boolean DEFAULT_SILENT = true;
     static final boolean DEFAULT_DEL_LOGS = true;
+    static final RequestEngine.Type DEFAULT_ENGINE = RequestEngine.Type.CURL;
+    static final int DEFAULT_PRECISION = 3;
+    // allowed slowdown of the percentiles in percents when the run is compared to the baseline
+    static final double DEFAULT_MAX_REGRESSION = 10;
+    static final double DEFAULT_DRIFT = 20;
+    // ramp steps are stopped when p99 latency or the percent of errors of a step are above these ones
+    static final long DEFAULT_SLO_LATENCY = 1000;
+    static final double DEFAULT_SLO_ERRORS = 1;
+    // duration of a ramp step if the duration is not set
+    static final long DEFAULT_STEP_DURATION = 10 * 1000;
+    static final double DEFAULT_CONFIDENCE = 95;
+    // requests that are executed till the estimate converges if neither the count nor the duration is set
+    static final long DEFAULT_MAX_ADAPTIVE_COUNT = 100_000;
+    // the estimate is checked after this count of requests or after a tenth of the requests executed before
+    private static final long CONVERGENCE_CHECK = 50;
+    // times are counted in microseconds, times above this one are counted in histograms as this one
+    private static final long HIGHEST_TRACKABLE_TIME = TimeUnit.HOURS.toMicros(1);
+    private static final int STATISTICS_STRIPES = 2 * Runtime.getRuntime().availableProcessors();
+    // start time of the request which is not sent by the rate schedule
+    private static final long NOT_SCHEDULED = Long.MIN_VALUE;
+    // scheduled request which is sent later than this (in microseconds) is counted as late,
+    // so the client couldn't keep up with the rate
+    private static final long LATE_SEND_DELAY = 1000;
+    private static final long NO_DEADLINE = Long.MIN_VALUE;
+    // time in milliseconds to wait for the requests in flight in addition to their timeout before they are cancelled
+    private static final long DRAIN_MARGIN = 1000;
+    // curl writes the responses that are not needed to the null device instead of the output
+    private static final String NULL_SINK = File.separatorChar == '\\' ? "NUL" : "/dev/null";
+    // CRC32 values are unsigned 32-bit, so these ones couldn't be a checksum of a body
+    static final long NO_CHECKSUM = -1;
+    static final long CHECKSUM_OF_FIRST = -2;
+    static final int DEFAULT_WARMUP_COUNT = 1;
 
     private static final DecimalFormat AVERAGE = new DecimalFormat("##.##");
 
-    // These 2 fields should be filled
+    // These 2 fields should be filled, cmd is not needed by the http engine
     private String cmd = null;
     private String urlToTest = null;
 
     // in the most cases the default values will be used
     private String logFileName = "curl";
     private int count = DEFAULT_COUNT;
+    private boolean countSet = false;
+    // count of warm-up requests including the first one, or warm-up duration in milliseconds if it is positive
+    private int warmupCount = DEFAULT_WARMUP_COUNT;
+    private long warmupDuration = 0;
+    // if positive, requests are executed for this count of milliseconds after the warm-up
+    private long duration = 0;
+    private int concurrency = DEFAULT_CONCURRENCY;
+    private RequestEngine.Type engine = DEFAULT_ENGINE;
+    // count of requests executed by one worker call, curl executes them by one process
+    private int batch = DEFAULT_BATCH;
+    // if positive, curl executes the batch requests in parallel with up to parallelMax transfers at once
+    private int parallelMax = 0;
+    // if positive, the requests after the first one are sent at this rate per second (open loop)
+    private double rate = 0;
+    // count of significant decimal digits of the times in histograms
+    private int precision = DEFAULT_PRECISION;
+    // if positive, requests completed during every interval of this count of milliseconds are printed during the run
+    private long reportInterval = 0;
+    // if positive, the steady state is reported by windows of this count of milliseconds with the rolling statistics
+    private long soakWindow = 0;
+    private double drift = DEFAULT_DRIFT;
+    // if it is set, every sample is recorded to this binary file
+    private String samplesFile = null;
+    // settings and interval reports are printed to this stream, the final report is returned
+    private PrintStream console = out;
+    // total times of the baseline run to compare the run with
+    private String baselineFile = null;
+    private Histogram baseline = null;
+    private double maxRegression = DEFAULT_MAX_REGRESSION;
+    // rate or concurrency is stepped from the start to the max till the SLO is breached
+    private RampBy rampBy = null;
+    private double rampStart;
+    private double rampStep;
+    private double rampMax;
+    private long sloLatency = DEFAULT_SLO_LATENCY;
+    private double sloErrors = DEFAULT_SLO_ERRORS;
+    // steady state is stopped when the confidence interval of the mean (NaN) or the percentile is narrow enough
+    private double targetError = 0;
+    private double targetPercentile = Double.NaN;
+    private double confidence = DEFAULT_CONFIDENCE;
+    // if it is set, the run is a share of the distributed run of the coordinator 'host:port'
+    private String coordinator = null;
+    // if positive, count of curl processes alive at once is bounded by it instead of the concurrency
+    private int maxProcesses = 0;
+    // if it is set, the running counters are served in OpenMetrics format on this '[host:]port'
+    private String metricsAddress = null;
+    // if positive, responses with another http code are counted as errors
+    private int expectedStatus = 0;
+    // CRC32 of the expected response bodies, or the body of the first response is expected if it is CHECKSUM_OF_FIRST
+    private long bodyChecksum = NO_CHECKSUM;
+    private volatile long expectedChecksum = NO_CHECKSUM;
     private boolean deleteLogs = DEFAULT_DEL_LOGS;
     private String method = null;
     private long timeout = DEFAULT_TIMEOUT;
@@ -61,132 +169,806 @@ public class CurlCmd {
     private final Set<String> headers = new HashSet<>();
     private final Set<String> formArgs = new HashSet<>();
     private final Set<String> bodyArgs = new HashSet<>();
+    // placeholders of the bodies are substituted only if the templates are on, otherwise the bodies are sent as is
+    private boolean template = false;
+    // rows of the feed are substituted to the placeholders of the bodies, it is null if it is not set
+    private String feedFile = null;
+    private Feed feed = null;
+    // if it is set, requests are mixed from these endpoints instead of the single one configured by the settings above
+    private List<Endpoint> scenario = null;
 
-    private final List<File> logs = new LinkedList<>();
+    // raw logs are kept only if they shouldn't be deleted, workers add them concurrently
+    private final List<File> logs = Collections.synchronizedList(new LinkedList<>());
+    // statistics of the first (cold) request, of the next warm-up requests and of all the next requests
+    private Statistics first = null;
+    private Statistics warmup = null;
+    private Statistics then = null;
+    // endpoints of the run and their statistics of the steady state, all together they are the 'then' statistics
+    private List<Endpoint> endpoints = Collections.emptyList();
+    private Statistics[] endpointStatistics = new Statistics[0];
+    // count of requests that are cancelled after the deadline
+    private long cancelled = 0;
     private boolean verbose = false;
+    // wall time of all requests except the first one, used to count the achieved throughput
+    private long steadyNanos = 0;
+    private IntervalReporter reporter = null;
+    private SampleRecorder recorder = null;
+    private MetricsExporter metrics = null;
+    private final List<Report.Step> rampSteps = new ArrayList<>();
+    // tracks curl processes of the run, it is null if the run doesn't start them
+    private ProcessSupervisor supervisor = null;
 
     protected CurlCmd() {
     }
 
-    private String[] curlArgs() {
-        Stream.Builder<String> argsBuilder = Stream.<String>builder()
-                .add(cmd)
-                .add("-w").add(CURL_OUT_TEMPLATE)
-                .add("-k");
+    /**
+     * Parameter of the load that is stepped by the ramp
+     */
+    public enum RampBy {
+        // target rate of requests per second
+        RATE,
+        // count of requests executed at once
+        CONCURRENCY
+    }
+
+    private String[] curlArgs() throws IOException {
+        return curlArgs(1, new ArrayList<>());
+    }
+
+    // args of the default endpoint, package-private for the benchmarks
+    String[] curlArgs(int transfers, List<Path> bodyFiles) throws IOException {
+        Endpoint endpoint = defaultEndpoint();
+        return curlArgs(endpoint, RequestBody.curlArgs(endpoint.formArgs, endpoint.bodyArgs, template, feed),
+                transfers, bodyFiles);
+    }
+
+    // args to execute the given count of transfers by one curl process, every transfer is separated with '--next'.
+    // Files of the rendered bodies are added to the list, they should be deleted when the process ends
+    private String[] curlArgs(Endpoint endpoint, RequestBody.CurlArgs bodyArgs, int transfers, List<Path> bodyFiles)
+            throws IOException {
+        Stream.Builder<String> argsBuilder = Stream.<String>builder().add(cmd);
+        if (parallelMax > 0 && transfers > 1) {
+            argsBuilder.add("--parallel").add("--parallel-max").add(String.valueOf(parallelMax));
+            // parallel progress meter is not hidden by '-s'
+            if (silent) argsBuilder.accept("--no-progress-meter");
+        }
+        for (int i = 0; i < transfers; i++) {
+            if (i > 0) argsBuilder.accept("--next");
+            transferArgs(argsBuilder, endpoint, bodyArgs, bodyFiles);
+        }
+
+        return argsBuilder.build().toArray(String[]::new);
+    }
+
+    // args of a single transfer, '--next' resets them, so they are repeated for every transfer
+    private void transferArgs(Stream.Builder<String> argsBuilder, Endpoint endpoint, RequestBody.CurlArgs bodyArgs,
+                              List<Path> bodyFiles) throws IOException {
+        argsBuilder.add("-w").add(CURL_OUT_TEMPLATE)
+                .add("-k")
+                // curl output is read till the end, so curl shouldn't wait for the response longer than the timeout
+                .add("--max-time").add(format(Locale.ROOT, "%.3f", timeout / 1000.0));
         if (silent) argsBuilder.accept("-s");
         if (verbose) argsBuilder.add("-v");
-        if (method != null) argsBuilder.add("-X").accept(method);
-        headers.forEach(h -> argsBuilder.add("-H").accept(h));
-        formArgs.forEach(a -> argsBuilder.add("-F").accept("'" + a + "'"));
-        bodyArgs.forEach(a -> argsBuilder.add("-d").accept(a));
-        argsBuilder.accept(urlToTest);
+        // the body reaches the tool only if it is logged or hashed, its size is written out anyway
+        if (deleteLogs && bodyChecksum == NO_CHECKSUM) argsBuilder.add("-o").accept(NULL_SINK);
+        if (endpoint.method != null) argsBuilder.add("-X").accept(endpoint.method);
+        endpoint.headers.forEach(h -> argsBuilder.add("-H").accept(h));
+        bodyArgs.add(argsBuilder, bodyFiles);
+        argsBuilder.accept(endpoint.url);
+    }
 
-        return argsBuilder.build().toArray(String[]::new);
+    // the single endpoint of the run without a scenario
+    private Endpoint defaultEndpoint() {
+        return new Endpoint("default", urlToTest, method, headers, formArgs, bodyArgs, Endpoint.DEFAULT_WEIGHT, 0);
     }
 
     /**
-     * Executes http request n times and saves log files with the response and the result statistic.
+     * Executes http request n times and counts the result statistic. Log files with the responses are saved
+     * only if they shouldn't be deleted.
+     * The first request is executed alone, all next requests are executed by up to <code>concurrency</code> workers.
+     * The first request and the next warm-up requests are not counted in the steady state statistics.
+     * If the duration is set, requests are executed till the deadline (and till the count if it is set).
+     * Every worker call executes up to <code>batch</code> requests, their results are written to the same log file.
+     * If the rate is set, requests are sent by the fixed schedule which doesn't depend on the responses (open loop),
+     * and the latency is also counted from the time when the request should have been sent.
+     * If the scenario is set, requests of its endpoints are mixed by their weights, every worker call executes
+     * the requests of one endpoint, and the statistics are also counted for every endpoint.
+     * If the target error is set, the steady state is stopped as soon as the confidence interval of the target
+     * metric is narrow enough, the count and the duration are the limits.
+     * If the ramp is set, the steady state is executed by steps of the duration with the increasing load
+     * till the SLO is breached, the warm-up is executed with the load of the first step.
+     * If the coordinator is set, the run is started with the other agents and its statistics are sent
+     * to the coordinator.
      */
     protected void execute() throws Exception {
+        if (coordinator == null) {
+            executeLoad();
+            return;
+        }
+        try (Agent agent = new Agent(coordinator)) {
+            try {
+                share(agent.getIndex(), agent.getAgents());
+                agent.awaitStart();
+                executeLoad();
+            } catch (Exception e) {
+                agent.sendFailure(e);
+                throw e;
+            }
+            agent.sendResult(this);
+        }
+    }
+
+    // the agent executes its share of the count and the rate, the first agents execute the rest of the count
+    private void share(int index, int agents) {
+        if (rampBy != null || targetError > 0) {
+            throw new IllegalStateException("Ramp and target error couldn't be shared by the agents.");
+        }
+        count = count / agents + (index < count % agents ? 1 : 0);
+        rate /= agents;
+    }
+
+    private void executeLoad() throws Exception {
+        if (rampBy != null) {
+            setLoad(rampStart);
+        }
+        if (rate > 0 && batch > 1) {
+            throw new IllegalStateException("Requests of a batch couldn't be sent by the rate schedule.");
+        }
+        // requests that are counted as warm-up by the count of calls
+        int warmupRequests = warmupDuration > 0 ? 1 : warmupCount;
+        if (warmupRequests >= count && !isCountUnlimited()) {
+            throw new IllegalStateException("Count of calls should be more than the count of warm-up calls.");
+        }
         logs.clear();
+        expectedChecksum = bodyChecksum == CHECKSUM_OF_FIRST ? NO_CHECKSUM : bodyChecksum;
+        first = new Statistics(HIGHEST_TRACKABLE_TIME, precision);
+        warmup = first.copyLayout();
+        then = first.copyLayout();
+        cancelled = 0;
+        rampSteps.clear();
+        endpoints = scenario != null ? scenario : Collections.singletonList(defaultEndpoint());
+        endpointStatistics = new Statistics[endpoints.size()];
+        for (int i = 0; i < endpointStatistics.length; i++) {
+            endpointStatistics[i] = then.copyLayout();
+        }
 
-        String log = logFileName + ".%d.log";
-        Path tempDir = Files.createTempDirectory(Paths.get(""), "temp");
-        // if included files won't be deleted, this directory won't be deleted either
-        tempDir.toFile().deleteOnExit();
+        supervisor = engine == RequestEngine.Type.CURL ? new ProcessSupervisor(processesLimit(), first.getTotal()) : null;
+        RequestEngine[] engines = new RequestEngine[endpoints.size()];
+        for (int i = 0; i < engines.length; i++) {
+            engines[i] = createEngine(endpoints.get(i));
+        }
+        Execution execution = new Execution(engines,
+                deleteLogs ? null : Files.createTempDirectory(Paths.get(""), "temp"));
+        recorder = samplesFile != null ? new SampleRecorder(Paths.get(samplesFile), precision, rate) : null;
+        reporter = soakWindow > 0
+                ? new SoakReporter(soakWindow, drift, console, first.getTotal(), STATISTICS_STRIPES)
+                : reportInterval > 0
+                ? new IntervalReporter(reportInterval, console, first.getTotal(), STATISTICS_STRIPES) : null;
+        metrics = metricsAddress != null ? new MetricsExporter(metricsAddress) : null;
+        try {
+            execution.phase = SampleRecorder.PHASE_FIRST;
+            execution.executeAttempt(execution.nextEndpoint(), 1, first, NOT_SCHEDULED);
+            if (reporter != null && soakWindow == 0) {
+                reporter.start();
+            }
+            if (warmupDuration > 0 || warmupCount > 1) {
+                execution.phase = SampleRecorder.PHASE_WARMUP;
+                Statistics[] warmupStatistics = new Statistics[endpoints.size()];
+                for (int i = 0; i < warmupStatistics.length; i++) {
+                    warmupStatistics[i] = warmup.copyLayout();
+                }
+                if (warmupDuration > 0) {
+                    execution.executePhase(warmupStatistics, Long.MAX_VALUE,
+                            nanoTime() + TimeUnit.MILLISECONDS.toNanos(warmupDuration));
+                } else {
+                    execution.executePhase(warmupStatistics, warmupCount - 1, NO_DEADLINE);
+                }
+                for (Statistics statistics : warmupStatistics) {
+                    warmup.add(statistics);
+                }
+            }
 
-        String[] args = curlArgs();
-        for (int i = 0; i < count; i++) {
-            File logFile = tempDir.resolve(format(log, i)).toFile();
-            if (deleteLogs) {
-                logFile.deleteOnExit();
+            execution.phase = SampleRecorder.PHASE_STEADY;
+            // windows of the soak run are compared with the first one, so the warm-up is not reported
+            if (reporter != null && soakWindow > 0) {
+                reporter.start();
             }
+            long start = nanoTime();
+            long deadline = duration > 0 ? start + TimeUnit.MILLISECONDS.toNanos(duration) : NO_DEADLINE;
+            try {
+                if (rampBy != null) {
+                    executeRamp(execution);
+                } else {
+                    long requests = isCountUnlimited() ? Long.MAX_VALUE : count - warmupRequests;
+                    if (targetError > 0 && !countSet && duration == 0) {
+                        requests = DEFAULT_MAX_ADAPTIVE_COUNT;
+                    }
+                    execution.stopWhenConverged = targetError > 0;
+                    execution.executePhase(endpointStatistics, requests, deadline);
+                }
+            } finally {
+                for (Statistics statistics : endpointStatistics) {
+                    then.add(statistics);
+                }
+            }
+            steadyNanos = nanoTime() - start;
+        } finally {
+            execution.workers.shutdownNow();
+            for (RequestEngine requestEngine : engines) {
+                requestEngine.close();
+            }
+            if (supervisor != null) {
+                supervisor.close();
+            }
+            if (reporter != null) {
+                reporter.stop();
+            }
+            if (recorder != null) {
+                recorder.close();
+            }
+            if (metrics != null) {
+                metrics.close();
+            }
+        }
+    }
 
-            boolean normal = startProcessAndWaitForResult(args, logFile);
-            if (normal) {
-                logs.add(logFile);
-            } else {
-                err.println(i + " attempt has been timeouted.");
+    // executes the steps of the ramp till the SLO is breached or the max load is reached
+    private void executeRamp(Execution execution) throws Exception {
+        long stepDuration = duration > 0 ? duration : DEFAULT_STEP_DURATION;
+        // the load is counted from the index to not accumulate the rounding errors
+        for (int i = 0; rampStart + i * rampStep <= rampMax * (1 + 1e-9); i++) {
+            double load = rampStart + i * rampStep;
+            if (setLoad(load)) {
+                execution.resize();
+            }
+            Statistics[] stepStatistics = new Statistics[endpoints.size()];
+            for (int e = 0; e < stepStatistics.length; e++) {
+                stepStatistics[e] = then.copyLayout();
             }
+            Statistics step = then.copyLayout();
+            long cancelledBefore = cancelled;
+            long start = nanoTime();
+            try {
+                execution.executePhase(stepStatistics, Long.MAX_VALUE,
+                        start + TimeUnit.MILLISECONDS.toNanos(stepDuration));
+            } finally {
+                for (int e = 0; e < stepStatistics.length; e++) {
+                    endpointStatistics[e].add(stepStatistics[e]);
+                    step.add(stepStatistics[e]);
+                }
+            }
+            Report.Step result = new Report.Step(load, step, nanoTime() - start, cancelled - cancelledBefore,
+                    rate > 0, sloLatency, sloErrors);
+            rampSteps.add(result);
+            if (!result.isPassed()) {
+                break;
+            }
+        }
+    }
+
+    // every worker has a single process at once, so by default processes are bounded by the max concurrency
+    private int processesLimit() {
+        return maxProcesses > 0 ? maxProcesses : maxConcurrency();
+    }
+
+    // the concurrency, or the max one of the ramp
+    private int maxConcurrency() {
+        return rampBy == RampBy.CONCURRENCY ? (int) rampMax : concurrency;
+    }
+
+    // confidence interval of the target metric of the latency
+    private Report.Estimate estimate(Histogram latency) {
+        return new Report.Estimate(latency, targetPercentile, confidence, targetError);
+    }
+
+    // sets the rate or the concurrency of the ramp, returns true if the workers should be resized
+    private boolean setLoad(double load) {
+        if (rampBy == RampBy.RATE) {
+            rate = load;
+            return false;
         }
+        int previous = concurrency;
+        concurrency = (int) load;
+        return concurrency != previous;
     }
 
-    protected boolean startProcessAndWaitForResult(String[] args, File logFile) throws InterruptedException, IOException {
-        return new ProcessBuilder(args)
-                        .redirectErrorStream(true)
-                        .redirectOutput(logFile)
-                        .start()
-                        .waitFor(timeout, TimeUnit.MILLISECONDS);
+    // if only the duration is set, requests are executed till the deadline, ramp steps are executed by the duration
+    private boolean isCountUnlimited() {
+        return duration > 0 && !countSet || rampBy != null;
     }
 
     /**
-     * To the proper work before calling this method, <code>execute</code> method should be called.
+     * Holds the state of a single execution: all the phases are executed by the same engine and workers
      */
-    public String countStatistics() {
-        StringJoiner sj = new StringJoiner(lineSeparator());
-
-        // sum of all total times except the first one
-        AtomicLong totalSum = new AtomicLong();
-        // sum all calculation times except the first one
-        AtomicLong calcSum = new AtomicLong();
-
-        AtomicBoolean first = new AtomicBoolean(true);
-        logs.stream()
-                .map(CurlCmd::logToProps)
-                .map(props -> new Times(sToMs(props, TIME_TOTAL),
-                        sToMs(props, TIME_STARTTRANSFER) - sToMs(props, TIME_PRETRANSFER)))
-                .forEach(times -> {
-                    if (first.get()) {
-                        sj.add(statisticToStr("First", times.total, times.calc));
-                        first.set(false);
-                    } else {
-                        totalSum.set(totalSum.get() + times.total);
-                        calcSum.set(calcSum.get() + times.calc);
+    private class Execution {
+
+        // engine of every endpoint
+        private final RequestEngine[] engines;
+        // smooth weighted round robin: the endpoint with the highest current weight is the next one
+        private final double[] currentWeights;
+        private final double totalWeight;
+        private ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        // permits keep the next requests from being queued before one of the workers is free
+        private Semaphore permits = new Semaphore(concurrency);
+        private final Path logDir;
+        private final String log = logFileName + ".%d.log";
+        // index of the next attempt, it is used to name the logs
+        private int attempts = 0;
+        // phase of the run that is recorded with the samples
+        private volatile byte phase;
+        // the phase is stopped when the estimate of the latency converges
+        private boolean stopWhenConverged = false;
+        // requests are started by the engines without the workers, so the requests in flight are bounded by the permits only
+        private final boolean async;
+
+        Execution(RequestEngine[] engines, Path logDir) {
+            this.engines = engines;
+            this.logDir = logDir;
+            async = Arrays.stream(engines).allMatch(engine -> engine instanceof AsyncRequestEngine);
+            currentWeights = new double[engines.length];
+            totalWeight = endpoints.stream().mapToDouble(e -> e.weight).sum();
+        }
+
+        // replaces the idle workers and the permits when the concurrency is changed between the phases
+        void resize() {
+            workers.shutdown();
+            workers = Executors.newFixedThreadPool(concurrency);
+            permits = new Semaphore(concurrency);
+        }
+
+        // index of the endpoint of the next request, requests are interleaved in proportion to the weights
+        int nextEndpoint() {
+            int next = 0;
+            for (int i = 0; i < currentWeights.length; i++) {
+                currentWeights[i] += endpoints.get(i).weight;
+                if (currentWeights[i] > currentWeights[next]) {
+                    next = i;
+                }
+            }
+            currentWeights[next] -= totalWeight;
+            return next;
+        }
+
+        /**
+         * Executes the given count of requests by the workers till the deadline and waits for the requests in flight.
+         * If they are not completed in the timeout after the deadline, they are cancelled.
+         */
+        void executePhase(Statistics[] statistics, long requests, long deadline) throws Exception {
+            // workers record samples to the statistics stripe of their thread, so they rarely wait for each other.
+            // Every endpoint has its own stripes, the count of all the stripes is limited to bound the memory
+            int stripesCount = Math.max(1, Math.min(concurrency, STATISTICS_STRIPES) / statistics.length);
+            Statistics[][] stripes = new Statistics[statistics.length][stripesCount];
+            for (int e = 0; e < statistics.length; e++) {
+                for (int i = 0; i < stripesCount; i++) {
+                    stripes[e][i] = statistics[e].copyLayout();
+                }
+            }
+            AtomicReference<Exception> failure = new AtomicReference<>();
+
+            long start = nanoTime();
+            long nextCheck = CONVERGENCE_CHECK;
+            for (long i = 0; i < requests && failure.get() == null; i += batch) {
+                if (stopWhenConverged && i >= nextCheck) {
+                    if (isConverged(stripes)) {
+                        break;
+                    }
+                    nextCheck = i + Math.max(CONVERGENCE_CHECK, i / 10);
+                }
+                long scheduledAt = rate > 0 ? start + (long) (i * 1e9 / rate) : NOT_SCHEDULED;
+                if (rate > 0 && (isAfter(scheduledAt, deadline) || !sleepUntil(scheduledAt, deadline))) {
+                    break;
+                }
+                // if all the workers are busy, scheduled request is sent late, its latency includes this delay
+                if (!acquireUntil(deadline)) {
+                    break;
+                }
+                int transfers = (int) Math.min(batch, requests - i);
+                int endpoint = nextEndpoint();
+                if (async) {
+                    startAttempt(endpoint, transfers, stripes[endpoint][(int) (i / batch % stripesCount)],
+                            scheduledAt, failure);
+                    continue;
+                }
+                workers.execute(() -> {
+                    try {
+                        executeAttempt(endpoint, transfers,
+                                stripes[endpoint][(int) (Thread.currentThread().getId() % stripesCount)], scheduledAt);
+                    } catch (Exception e) {
+                        failure.compareAndSet(null, e);
+                    } finally {
+                        permits.release();
                     }
                 });
+            }
+
+            // all the permits are released when the requests in flight are completed
+            boolean drained = permits.tryAcquire(concurrency, timeout * batch + DRAIN_MARGIN, TimeUnit.MILLISECONDS);
+            // cancelled requests are interrupted, so their failures are not counted
+            Exception failed = failure.get();
+            if (drained) {
+                permits.release(concurrency);
+            } else {
+                // cancelled requests still hold the workers and the permits, so the next phase gets new ones
+                cancelled += concurrency - permits.availablePermits();
+                workers.shutdownNow();
+                workers = Executors.newFixedThreadPool(concurrency);
+                permits = new Semaphore(concurrency);
+            }
+            for (int e = 0; e < statistics.length; e++) {
+                for (Statistics stripe : stripes[e]) {
+                    synchronized (stripe) {
+                        statistics[e].add(stripe);
+                    }
+                }
+            }
+
+            if (failed != null) {
+                throw failed;
+            }
+        }
+
+        // merges the latency of the completed requests from the stripes and checks its estimate
+        private boolean isConverged(Statistics[][] stripes) {
+            Histogram latency = then.getTotal().copyLayout();
+            for (Statistics[] endpointStripes : stripes) {
+                for (Statistics stripe : endpointStripes) {
+                    synchronized (stripe) {
+                        latency.add(rate > 0 ? stripe.getCorrected() : stripe.getTotal());
+                    }
+                }
+            }
+            return estimate(latency).isConverged();
+        }
+
+        private boolean acquireUntil(long deadline) throws InterruptedException {
+            if (deadline == NO_DEADLINE) {
+                permits.acquire();
+                return true;
+            }
+            long left = deadline - nanoTime();
+            return left > 0 && permits.tryAcquire(left, TimeUnit.NANOSECONDS);
+        }
+
+        void executeAttempt(int endpoint, int transfers, Statistics statistics, long scheduledAt)
+                throws InterruptedException, IOException {
+            Attempt attempt = new Attempt(endpoint, transfers, statistics, scheduledAt);
+            attempt.complete(engines[endpoint].execute(transfers, attempt.logFile, attempt));
+        }
+
+        // starts the attempt by the asynchronous engine, its permit is released when it is completed
+        private void startAttempt(int endpoint, int transfers, Statistics statistics, long scheduledAt,
+                                  AtomicReference<Exception> failure) throws IOException {
+            // the permits are replaced if the attempt is cancelled, so it releases the permits it was started with
+            Semaphore attemptPermits = permits;
+            Attempt attempt = new Attempt(endpoint, transfers, statistics, scheduledAt);
+            AsyncRequestEngine asyncEngine = (AsyncRequestEngine) engines[endpoint];
+            asyncEngine.executeAsync(transfers, attempt.logFile, attempt).whenComplete((normal, e) -> {
+                if (e != null) {
+                    failure.compareAndSet(null, e instanceof Exception ? (Exception) e : new RuntimeException(e));
+                } else {
+                    attempt.complete(normal);
+                }
+                attemptPermits.release();
+            });
+        }
+
+        /**
+         * Requests of a single worker call: every sample is recorded to the statistics, the reporter and the recorder
+         */
+        private class Attempt implements Consumer<Sample> {
 
-        sj.add(statisticToStr("Then",
-                AVERAGE.format(totalSum.get() / (count - 1)),
-                AVERAGE.format(calcSum.get() / (count - 1))));
+            private final int index;
+            private final File logFile;
+            private final int endpoint;
+            private final Statistics statistics;
+            private final long scheduledAt;
+            private final long sendDelay;
+            private final byte samplePhase = phase;
 
-        return sj.toString();
+            Attempt(int endpoint, int transfers, Statistics statistics, long scheduledAt) {
+                synchronized (Execution.this) {
+                    index = attempts;
+                    attempts += transfers;
+                }
+                logFile = logDir == null ? null : logDir.resolve(format(log, index)).toFile();
+                this.endpoint = endpoint;
+                this.statistics = statistics;
+                this.scheduledAt = scheduledAt;
+                sendDelay = scheduledAt == NOT_SCHEDULED ? 0 : TimeUnit.NANOSECONDS.toMicros(nanoTime() - scheduledAt);
+            }
+
+            @Override
+            public void accept(Sample sample) {
+                check(sample);
+                if (recorder != null) {
+                    try {
+                        recorder.record(sample, endpoint, samplePhase, scheduledAt == NOT_SCHEDULED ? -1 : sendDelay);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+                if (reporter != null && (soakWindow == 0 || samplePhase == SampleRecorder.PHASE_STEADY)) {
+                    reporter.record(sample);
+                }
+                if (metrics != null) {
+                    metrics.record(sample, samplePhase);
+                }
+                synchronized (statistics) {
+                    if (scheduledAt == NOT_SCHEDULED) {
+                        statistics.add(sample);
+                    } else {
+                        statistics.add(sample, sendDelay);
+                    }
+                }
+            }
+
+            void complete(boolean normal) {
+                if (!normal) {
+                    err.println(index + " attempt has been timeouted.");
+                }
+                // the soak run could be endless, so its log files are not listed
+                if (logFile != null && soakWindow == 0) {
+                    logs.add(logFile);
+                }
+            }
+        }
     }
 
-    // Read the log file to a Properties
-    private static Properties logToProps(File log) {
-        try {
-            Properties props = new Properties();
-            try (Reader logReader = new FileReader(log)) {
-                props.load(logReader);
+    // the successful request with an unexpected response is failed like curl does with '--fail'
+    private void check(Sample sample) {
+        if (sample.isError()) {
+            return;
+        }
+        if (expectedStatus > 0 && sample.httpCode != expectedStatus) {
+            sample.exitCode = Sample.CURLE_HTTP_RETURNED_ERROR;
+        } else if (bodyChecksum != NO_CHECKSUM) {
+            if (expectedChecksum == NO_CHECKSUM) {
+                synchronized (this) {
+                    if (expectedChecksum == NO_CHECKSUM) {
+                        expectedChecksum = sample.checksum;
+                    }
+                }
+            }
+            if (sample.checksum != expectedChecksum) {
+                sample.exitCode = Sample.BODY_MISMATCH;
+            }
+        }
+    }
+
+    private static boolean isAfter(long time, long deadline) {
+        return deadline != NO_DEADLINE && time - deadline >= 0;
+    }
+
+    // returns false if the deadline comes first
+    private static boolean sleepUntil(long time, long deadline) throws InterruptedException {
+        for (long left = time - nanoTime(); left > 0; left = time - nanoTime()) {
+            LockSupport.parkNanos(left);
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+        }
+        return !isAfter(nanoTime(), deadline);
+    }
+
+    /**
+     * Counts the statistics of the samples recorded by a previous run, so its report could be made again offline.
+     * Endpoints are named by their indexes.
+     */
+    static CurlCmd replay(SampleFileReader reader) throws IOException {
+        CurlCmd curlCmd = new CurlCmd();
+        curlCmd.precision = reader.getPrecision();
+        curlCmd.rate = reader.getRate();
+        curlCmd.first = new Statistics(HIGHEST_TRACKABLE_TIME, curlCmd.precision);
+        curlCmd.warmup = curlCmd.first.copyLayout();
+        curlCmd.then = curlCmd.first.copyLayout();
+
+        List<Statistics> endpointStatistics = new ArrayList<>();
+        // start of the first steady request and completion of the last one
+        long[] steady = {Long.MAX_VALUE, Long.MIN_VALUE};
+        reader.read(record -> {
+            Statistics statistics;
+            if (record.phase == SampleRecorder.PHASE_FIRST) {
+                statistics = curlCmd.first;
+            } else if (record.phase == SampleRecorder.PHASE_WARMUP) {
+                statistics = curlCmd.warmup;
+            } else {
+                while (endpointStatistics.size() <= record.endpoint) {
+                    endpointStatistics.add(curlCmd.then.copyLayout());
+                }
+                statistics = endpointStatistics.get(record.endpoint);
+                steady[0] = Math.min(steady[0], record.timestamp - TimeUnit.MICROSECONDS.toNanos(record.sample.total));
+                steady[1] = Math.max(steady[1], record.timestamp);
+            }
+            if (record.sendDelay < 0) {
+                statistics.add(record.sample);
+            } else {
+                statistics.add(record.sample, record.sendDelay);
+            }
+        });
+
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (int i = 0; i < endpointStatistics.size(); i++) {
+            endpoints.add(new Endpoint(String.valueOf(i), "", null, Collections.emptySet(), Collections.emptySet(),
+                    Collections.emptySet(), Endpoint.DEFAULT_WEIGHT, 0));
+            curlCmd.then.add(endpointStatistics.get(i));
+        }
+        curlCmd.endpoints = endpoints;
+        curlCmd.endpointStatistics = endpointStatistics.toArray(new Statistics[0]);
+        curlCmd.steadyNanos = steady[1] > steady[0] ? steady[1] - steady[0] : 0;
+        return curlCmd;
+    }
+
+    // statistics of the run that the agent sends to the coordinator, the steady state is the sum of the endpoints
+    void writeResult(DataOutput out) throws IOException {
+        out.writeInt(precision);
+        out.writeDouble(rate);
+        out.writeLong(cancelled);
+        out.writeLong(steadyNanos);
+        first.write(out);
+        warmup.write(out);
+        out.writeInt(endpoints.size());
+        for (int i = 0; i < endpoints.size(); i++) {
+            out.writeUTF(endpoints.get(i).name);
+            endpointStatistics[i].write(out);
+        }
+    }
+
+    /**
+     * Merges the results of the agents written by <code>writeResult</code> to a single run.
+     * Agents execute the same endpoints at the same time, so their statistics are added, the rate is the sum
+     * of their rates and the steady state wall time is the longest one.
+     */
+    static CurlCmd merge(List<? extends DataInput> results) throws IOException {
+        CurlCmd curlCmd = new CurlCmd();
+        List<Statistics> endpointStatistics = new ArrayList<>();
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (DataInput in : results) {
+            int precision = in.readInt();
+            if (curlCmd.first == null) {
+                curlCmd.precision = precision;
+                curlCmd.first = new Statistics(HIGHEST_TRACKABLE_TIME, precision);
+                curlCmd.warmup = curlCmd.first.copyLayout();
+                curlCmd.then = curlCmd.first.copyLayout();
+            } else if (precision != curlCmd.precision) {
+                throw new IOException("Agents should have the same precision.");
+            }
+            curlCmd.rate += in.readDouble();
+            curlCmd.cancelled += in.readLong();
+            curlCmd.steadyNanos = Math.max(curlCmd.steadyNanos, in.readLong());
+            curlCmd.first.add(in);
+            curlCmd.warmup.add(in);
+            int endpointCount = in.readInt();
+            for (int i = 0; i < endpointCount; i++) {
+                String name = in.readUTF();
+                if (endpoints.size() <= i) {
+                    endpoints.add(new Endpoint(name, "", null, Collections.emptySet(), Collections.emptySet(),
+                            Collections.emptySet(), Endpoint.DEFAULT_WEIGHT, 0));
+                    endpointStatistics.add(curlCmd.then.copyLayout());
+                }
+                endpointStatistics.get(i).add(in);
             }
-            return props;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        }
+        if (curlCmd.first == null) {
+            throw new IOException("There are no results of the agents.");
+        }
+        endpointStatistics.forEach(curlCmd.then::add);
+        curlCmd.endpoints = endpoints;
+        curlCmd.endpointStatistics = endpointStatistics.toArray(new Statistics[0]);
+        return curlCmd;
+    }
+
+    protected RequestEngine createEngine(Endpoint endpoint) throws IOException {
+        switch (engine) {
+            case HTTP:
+                return new HttpClientEngine(endpoint.url, endpoint.method, endpoint.headers, endpoint.formArgs,
+                        endpoint.bodyArgs, template, feed, timeout, verbose, bodyChecksum != NO_CHECKSUM);
+            case NIO:
+                return new NioHttpEngine(endpoint.url, endpoint.method, endpoint.headers, endpoint.formArgs,
+                        endpoint.bodyArgs, template, feed, timeout, verbose, bodyChecksum != NO_CHECKSUM);
+            case CURL:
+            default:
+                RequestBody.CurlArgs bodyArgs = RequestBody.curlArgs(endpoint.formArgs, endpoint.bodyArgs, template,
+                        feed);
+                return new CurlProcessEngine(
+                        (transfers, bodyFiles) -> curlArgs(endpoint, bodyArgs, transfers, bodyFiles), timeout,
+                        parallelMax, supervisor, bodyChecksum != NO_CHECKSUM, bodyArgs.isTemplate());
         }
     }
 
-    // Convert statistic values to string
-    private static <T> String statisticToStr(String statisticTitle, T totalTime, T calcTime) {
-        StringJoiner sj = new StringJoiner(lineSeparator());
-        return sj.add(statisticTitle + ":")
-                .add("- total time - " + totalTime)
-                .add("- calculation time - " + calcTime).toString();
+    /**
+     * Returns the structured result of the run.
+     * To the proper work before calling this method, <code>execute</code> method should be called.
+     */
+    public Report getReport() {
+        List<Report.Summary> endpointSummaries = new ArrayList<>();
+        if (endpoints.size() > 1) {
+            for (int i = 0; i < endpoints.size(); i++) {
+                endpointSummaries.add(new Report.Summary(endpoints.get(i).name, endpointStatistics[i], steadyNanos));
+            }
+        }
+        return new Report(
+                new Report.Summary("first", first, 0),
+                warmup.getCount() + warmup.getErrors() > 0 ? new Report.Summary("warmup", warmup, 0) : null,
+                new Report.Summary("then", then, steadyNanos),
+                cancelled,
+                rate > 0 ? new Report.Schedule(rate, then, LATE_SEND_DELAY) : null,
+                endpointSummaries,
+                baseline != null ? new Report.Comparison(baseline, then.getTotal(), maxRegression) : null,
+                rampBy != null ? new Report.Ramp(rampBy.name().toLowerCase(), sloLatency, sloErrors, rampSteps) : null,
+                targetError > 0 && rampBy == null
+                        ? estimate(rate > 0 ? then.getCorrected() : then.getTotal()) : null,
+                supervisor != null && supervisor.getStarted() > 0
+                        ? new Report.Processes(supervisor.getStarted(), supervisor.getKilled(),
+                        supervisor.getMaxAlive(), supervisor.getWallTimes(), supervisor.getCpuTime()) : null);
     }
 
-    // Get property in seconds and convert it to long value in milliseconds
-    private static long sToMs(Properties props, String param) {
-        String val = props.getProperty(param).replaceAll(",", ".");
-        return (long) (Float.parseFloat(val) * 1000);
+    /**
+     * Saves the total times of the successful steady state requests, so the next runs could be compared with them.
+     * To the proper work before calling this method, <code>execute</code> method should be called.
+     */
+    public void saveBaseline(String baselineFile) throws IOException {
+        Baseline.write(Paths.get(baselineFile), then.getTotal());
+    }
+
+    /**
+     * Returns the result of the run as human readable text.
+     * To the proper work before calling this method, <code>execute</code> method should be called.
+     */
+    public String countStatistics() {
+        return ReportRenderer.of(ReportRenderer.Format.TEXT).render(getReport());
     }
 
     // print curl-tool settings that is needed to process the request
     private void printSettings() {
         StringJoiner sj = new StringJoiner(lineSeparator())
                 .add("Configuration")
+                .add("Engine: " + engine.name().toLowerCase())
                 .add("Curl: " + cmd)
-                .add("URL to test: " + urlToTest)
+                .add(scenario == null ? "URL to test: " + urlToTest : "Scenario: " + scenario)
                 .add("Count of calls: " + count)
-                .add("Remote request timeout: " + timeout);
+                .add("Concurrency: " + concurrency)
+                .add("Rate: " + (rate > 0 ? AVERAGE.format(rate) + " requests per second" : "as fast as possible"))
+                .add("Warm-up: " + (warmupDuration > 0 ? warmupDuration + " ms" : warmupCount + " calls"))
+                .add("Duration: " + (duration > 0 ? duration + " ms" : "till the count of calls"))
+                .add("Batch: " + batch + (parallelMax > 0 ? ", parallel max: " + parallelMax : ""))
+                .add("Remote request timeout: " + timeout)
+                .add("Max curl processes: " + (engine == RequestEngine.Type.CURL ? processesLimit() : "not used"))
+                .add("Histogram precision (significant digits): " + precision)
+                .add("Report interval: " + (soakWindow > 0 ? format("soak windows of %d ms, drift above %s%% of p%s",
+                        soakWindow, AVERAGE.format(drift), AVERAGE.format(SoakReporter.DRIFT_PERCENTILE))
+                        : reportInterval > 0 ? reportInterval + " ms" : "only at the end"));
+        if (samplesFile != null) {
+            sj.add("Samples file: " + samplesFile);
+        }
+        if (targetError > 0) {
+            sj.add(format("Stop when converged: %s within %s%% at %s%% confidence",
+                    Double.isNaN(targetPercentile) ? "mean" : "p" + AVERAGE.format(targetPercentile),
+                    AVERAGE.format(targetError), AVERAGE.format(confidence)));
+        }
+        if (rampBy != null) {
+            sj.add(format("Ramp: %s from %s to %s by %s, %d ms per step, SLO p%s <= %d ms and errors <= %s%%",
+                    rampBy.name().toLowerCase(), AVERAGE.format(rampStart), AVERAGE.format(rampMax),
+                    AVERAGE.format(rampStep), duration > 0 ? duration : DEFAULT_STEP_DURATION,
+                    AVERAGE.format(Report.Step.SLO_PERCENTILE), sloLatency, AVERAGE.format(sloErrors)));
+        }
+        if (expectedStatus > 0 || bodyChecksum != NO_CHECKSUM) {
+            sj.add("Expected responses: http code " + (expectedStatus > 0 ? expectedStatus : "any") + ", body checksum "
+                    + (bodyChecksum == NO_CHECKSUM ? "any" : bodyChecksum == CHECKSUM_OF_FIRST
+                    ? "of the first response" : format("%08x", bodyChecksum)));
+        }
+        if (metricsAddress != null) {
+            sj.add("Metrics: http://" + (metricsAddress.indexOf(':') > 0 ? metricsAddress : "localhost:" + metricsAddress)
+                    + MetricsExporter.PATH);
+        }
+        if (coordinator != null) {
+            sj.add("Agent of the coordinator: " + coordinator + ", the count and the rate are shared by the agents");
+        }
+        if (template) {
+            sj.add("Templates: on" + (feed != null ? ", feed: " + feedFile + ", " + feed.size() + " rows" : ""));
+        }
+        if (baselineFile != null) {
+            sj.add("Baseline: " + baselineFile + ", max regression: " + AVERAGE.format(maxRegression) + "%");
+        }
         if (!silent) {
             sj.add("Silent mode: " + silent)
                     .add("Log file name: " + logFileName)
@@ -200,20 +982,7 @@ public class CurlCmd {
             sj.add("Headers: " + headers);
         }
 
-        out.println(sj.add(""));
-    }
-
-    /**
-     * This class is for convenience. It is intended to easily work with statistics measurements.
-     */
-    private static class Times {
-        private final long total;
-        private final long calc;
-
-        Times(long total, long calc) {
-            this.total = total;
-            this.calc = calc;
-        }
+        console.println(sj.add(""));
     }
 
     /**
@@ -241,17 +1010,37 @@ public class CurlCmd {
             return curlCmd;
         }
 
+        // CurlCmd with the current settings, it is not executed
+        CurlCmd build() {
+            return curlCmd;
+        }
+
         // print CurlCmd instance settings that is needed to process the request
         public Builder printSettings() {
             curlCmd.printSettings();
             return this;
         }
 
+        /**
+         * Returns the max count of requests executed at once, it is the concurrency or the max one of the ramp
+         */
+        public int getMaxConcurrency() {
+            return curlCmd.maxConcurrency();
+        }
+
+        /**
+         * Returns true if the feed is set, but the templates that use it are off
+         */
+        public boolean isFeedWithoutTemplate() {
+            return curlCmd.feed != null && !curlCmd.template;
+        }
+
         /**
          * Returns true if required properties were set
          */
         public boolean isNotReady() {
-            return curlCmd.cmd == null || curlCmd.urlToTest == null;
+            return (curlCmd.cmd == null && curlCmd.engine == RequestEngine.Type.CURL)
+                    || (curlCmd.urlToTest == null && curlCmd.scenario == null);
         }
 
         public void setLogFileName(String logFileName) {
@@ -273,6 +1062,341 @@ public class CurlCmd {
                 throw new NumberFormatException();
             }
             curlCmd.count = count;
+            curlCmd.countSet = true;
+            return this;
+        }
+
+        /**
+         * Sets count of warm-up requests including the first one
+         */
+        public Builder setWarmupCount(int warmupCount) {
+            if (warmupCount < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.warmupCount = warmupCount;
+            curlCmd.warmupDuration = 0;
+            return this;
+        }
+
+        /**
+         * Sets warm-up duration in milliseconds, the first request is executed before it anyway
+         */
+        public Builder setWarmupDuration(long warmupDuration) {
+            if (warmupDuration < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.warmupDuration = warmupDuration;
+            return this;
+        }
+
+        /**
+         * Sets duration in milliseconds of the steady state. If count is not set, requests are executed till the end.
+         */
+        public Builder setDuration(long duration) {
+            if (duration < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.duration = duration;
+            return this;
+        }
+
+        /**
+         * Reads the endpoints of the scenario file, requests of the run are mixed from them.
+         * Headers are sent by all the endpoints, so they should be added before.
+         * If the endpoints have rates and the rate is not set, the run rate is their sum.
+         */
+        public Builder setScenario(String scenarioFile) throws IOException {
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(scenarioFile))) {
+                curlCmd.scenario = Endpoint.readScenario(reader, curlCmd.headers);
+            }
+            if (curlCmd.rate == 0 && Endpoint.totalRate(curlCmd.scenario) > 0) {
+                curlCmd.rate = Endpoint.totalRate(curlCmd.scenario);
+            }
+            return this;
+        }
+
+        public Builder setConcurrency(int concurrency) {
+            if (concurrency < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.concurrency = concurrency;
+            return this;
+        }
+
+        public Builder setBatch(int batch) {
+            if (batch < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.batch = batch;
+            return this;
+        }
+
+        public Builder setParallelMax(int parallelMax) {
+            if (parallelMax < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.parallelMax = parallelMax;
+            return this;
+        }
+
+        /**
+         * Sets the coordinator 'host:port' of the distributed run. The run is started when all the agents have joined
+         * the coordinator, every agent executes its share of the count and the rate, and the coordinator merges
+         * their statistics. The ramp and the target error are not shared.
+         */
+        public Builder setAgent(String coordinator) {
+            int colon = coordinator.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new NumberFormatException(coordinator);
+            }
+            int port = Integer.parseInt(coordinator.substring(colon + 1));
+            if (port < 1 || port > 65535) {
+                throw new NumberFormatException(coordinator);
+            }
+            curlCmd.coordinator = coordinator;
+            return this;
+        }
+
+        /**
+         * Sets window in milliseconds of the soak report. The steady state is reported by windows, every window line
+         * has the rolling 1, 5 and 15-minute statistics, only the last 15 minutes of the windows are kept in memory
+         */
+        public Builder setSoakWindow(long soakWindow) {
+            if (soakWindow < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.soakWindow = soakWindow;
+            return this;
+        }
+
+        /**
+         * Sets threshold in percents of the p99 growth compared with the first soak window, windows above it are drifted
+         */
+        public Builder setDrift(double drift) {
+            if (!(drift > 0) || Double.isInfinite(drift)) {
+                throw new NumberFormatException();
+            }
+            curlCmd.drift = drift;
+            return this;
+        }
+
+        /**
+         * Sets '[host:]port' to serve the running counters of the requests on in OpenMetrics format during the run,
+         * only the loopback interface is bound if there is no host
+         */
+        public Builder setMetrics(String address) {
+            MetricsExporter.address(address);
+            curlCmd.metricsAddress = address;
+            return this;
+        }
+
+        /**
+         * Sets count of curl processes alive at once, by default it is the concurrency (or the max one of the ramp)
+         */
+        public Builder setMaxProcesses(int maxProcesses) {
+            if (maxProcesses < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.maxProcesses = maxProcesses;
+            return this;
+        }
+
+        public Builder setRate(double rate) {
+            if (!(rate > 0) || Double.isInfinite(rate)) {
+                throw new NumberFormatException();
+            }
+            curlCmd.rate = rate;
+            return this;
+        }
+
+        public Builder setPrecision(int precision) {
+            if (precision < 1 || precision > 5) {
+                throw new NumberFormatException();
+            }
+            curlCmd.precision = precision;
+            return this;
+        }
+
+        /**
+         * Sets interval in milliseconds to print the requests completed during it while the requests are executed
+         */
+        public Builder setReportInterval(long reportInterval) {
+            if (reportInterval < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.reportInterval = reportInterval;
+            return this;
+        }
+
+        /**
+         * Sets binary file to record every sample, it could be read by <code>SampleFileReader</code>
+         */
+        public Builder setSamplesFile(String samplesFile) {
+            curlCmd.samplesFile = samplesFile;
+            return this;
+        }
+
+        /**
+         * Sets the ramp: the rate or the concurrency is increased from the start to the max by the step
+         * every duration (or <code>DEFAULT_STEP_DURATION</code>) till the SLO is breached.
+         * The count of calls is not used by the ramp.
+         */
+        public Builder setRamp(RampBy rampBy, double start, double step, double max) {
+            if (!(start > 0) || !(step > 0) || !(max >= start) || Double.isInfinite(max)) {
+                throw new NumberFormatException();
+            }
+            if (rampBy == RampBy.CONCURRENCY && (start % 1 != 0 || step % 1 != 0 || max % 1 != 0)) {
+                throw new NumberFormatException();
+            }
+            curlCmd.rampBy = rampBy;
+            curlCmd.rampStart = start;
+            curlCmd.rampStep = step;
+            curlCmd.rampMax = max;
+            return this;
+        }
+
+        /**
+         * Sets p99 latency in milliseconds that a ramp step shouldn't exceed
+         */
+        public Builder setSloLatency(long sloLatency) {
+            if (sloLatency < 1) {
+                throw new NumberFormatException();
+            }
+            curlCmd.sloLatency = sloLatency;
+            return this;
+        }
+
+        /**
+         * Sets percent of errors that a ramp step shouldn't exceed
+         */
+        public Builder setSloErrors(double sloErrors) {
+            if (!(sloErrors >= 0) || sloErrors > 100) {
+                throw new NumberFormatException();
+            }
+            curlCmd.sloErrors = sloErrors;
+            return this;
+        }
+
+        /**
+         * Sets target relative error of the latency estimate in percents. The steady state is stopped as soon as
+         * the half-width of the confidence interval is not more than this part of the estimate. The count
+         * and the duration are the limits, if neither is set, up to <code>DEFAULT_MAX_ADAPTIVE_COUNT</code>
+         * requests are executed. It is not used by the ramp.
+         */
+        public Builder setTargetError(double targetError) {
+            if (!(targetError > 0) || targetError >= 100) {
+                throw new NumberFormatException();
+            }
+            curlCmd.targetError = targetError;
+            return this;
+        }
+
+        /**
+         * Sets metric of the latency estimate - 'mean' (default) or percentile like 'p99'
+         */
+        public Builder setTargetMetric(String targetMetric) {
+            String metric = targetMetric.trim().toLowerCase();
+            if ("mean".equals(metric)) {
+                curlCmd.targetPercentile = Double.NaN;
+                return this;
+            }
+            double percentile = metric.startsWith("p") ? Double.parseDouble(metric.substring(1)) : Double.NaN;
+            if (!(percentile > 0 && percentile < 100)) {
+                throw new NumberFormatException(targetMetric);
+            }
+            curlCmd.targetPercentile = percentile;
+            return this;
+        }
+
+        /**
+         * Sets confidence level of the latency estimate in percents
+         */
+        public Builder setConfidence(double confidence) {
+            if (!(confidence > 0) || confidence >= 100) {
+                throw new NumberFormatException();
+            }
+            curlCmd.confidence = confidence;
+            return this;
+        }
+
+        /**
+         * Turns on the templates: placeholders of the bodies (see <code>Template</code>) are substituted for every
+         * request. Otherwise the bodies are sent as they are, even if they have '{{' and '}}'
+         */
+        public Builder setTemplate(boolean template) {
+            curlCmd.template = template;
+            return this;
+        }
+
+        /**
+         * Reads the CSV feed file, its rows are substituted to '{{feed:column}}' placeholders of the bodies
+         * one after another (see <code>Feed</code>), the templates should be on
+         */
+        public Builder setFeed(String feedFile) throws IOException {
+            curlCmd.feed = Feed.read(Paths.get(feedFile));
+            curlCmd.feedFile = feedFile;
+            return this;
+        }
+
+        /**
+         * Reads the baseline file saved by a previous run, the report of the run is compared with it
+         */
+        public Builder setBaseline(String baselineFile) throws IOException {
+            curlCmd.baseline = Baseline.read(Paths.get(baselineFile));
+            curlCmd.baselineFile = baselineFile;
+            return this;
+        }
+
+        /**
+         * Sets allowed slowdown of the percentiles in percents, it is a regression if the run is slower than the baseline
+         * by more than this
+         */
+        public Builder setMaxRegression(double maxRegression) {
+            if (!(maxRegression >= 0) || Double.isInfinite(maxRegression)) {
+                throw new NumberFormatException();
+            }
+            curlCmd.maxRegression = maxRegression;
+            return this;
+        }
+
+        /**
+         * Sets the http code of the responses, requests with other codes are counted as errors with curl exit code 22
+         */
+        public Builder setExpectedStatus(int expectedStatus) {
+            if (expectedStatus < 100 || expectedStatus > 999) {
+                throw new NumberFormatException();
+            }
+            curlCmd.expectedStatus = expectedStatus;
+            return this;
+        }
+
+        /**
+         * Sets CRC32 of the response bodies as hex or 'first' to expect the body of the first response.
+         * Bodies are hashed as they are read, requests with other bodies are counted as errors with exit code 122
+         */
+        public Builder setExpectedChecksum(String checksum) {
+            if ("first".equalsIgnoreCase(checksum)) {
+                curlCmd.bodyChecksum = CHECKSUM_OF_FIRST;
+                return this;
+            }
+            long value = Long.parseLong(checksum, 16);
+            if (value < 0 || value > 0xFFFFFFFFL) {
+                throw new NumberFormatException(checksum);
+            }
+            curlCmd.bodyChecksum = value;
+            return this;
+        }
+
+        /**
+         * Sets stream to print the settings and the interval reports, it is the standard output by default
+         */
+        public Builder setConsole(PrintStream console) {
+            curlCmd.console = console;
+            return this;
+        }
+
+        public Builder setEngine(RequestEngine.Type engine) {
+            curlCmd.engine = engine;
             return this;
         }
 
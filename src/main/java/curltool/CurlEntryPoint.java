@@ -1,8 +1,16 @@
 package curltool;
 
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Paths;
 import java.util.Objects;
 import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+import java.util.function.DoubleConsumer;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import static curltool.CurlEntryPoint.Argument.*;
 import static java.lang.String.format;
@@ -19,18 +27,53 @@ public class CurlEntryPoint {
     // curl tool args
     enum Argument {
         ARG_HELP("--help"),
+        ARG_AGENT("--agent"),
+        ARG_AGENTS("--agents"),
+        ARG_BASELINE("--baseline"),
+        ARG_BATCH("--batch"),
         ARG_BODY("-b"),
+        ARG_CALIBRATE("--calibrate"),
+        ARG_CONFIDENCE("--confidence"),
+        ARG_CONVERT("--convert"),
+        ARG_COORDINATOR("--coordinator"),
         ARG_CURL("-c"),
         ARG_DEL("-d"),
+        ARG_DRIFT("--drift"),
+        ARG_DURATION("--duration"),
+        ARG_ENGINE("-e"),
+        ARG_EXPECT_CHECKSUM("--expect-checksum"),
+        ARG_EXPECT_STATUS("--expect-status"),
+        ARG_FEED("--feed"),
         ARG_FORM_ARG("-f"),
+        ARG_FORMAT("--format"),
         ARG_HEADER("-h"),
         ARG_LOG("-l"),
+        ARG_MAX_PROCESSES("--max-processes"),
+        ARG_MAX_REGRESSION("--max-regression"),
+        ARG_METRICS("--metrics"),
         ARG_HTTP_METHOD("-m"),
         ARG_COUNT("-n"),
+        ARG_CONCURRENCY("-p"),
+        ARG_RAMP("--ramp"),
+        ARG_RATE("-r"),
+        ARG_READ_SAMPLES("--read-samples"),
+        ARG_SCENARIO("--scenario"),
+        ARG_REPORT_INTERVAL("--interval"),
+        ARG_PARALLEL_MAX("--parallel-max"),
+        ARG_PRECISION("--precision"),
+        ARG_SAMPLES("--samples"),
+        ARG_SAVE_BASELINE("--save-baseline"),
         ARG_TIMEOUT("-t"),
         ARG_SILENT("-s"),
+        ARG_SLO("--slo"),
+        ARG_SOAK("--soak"),
+        ARG_SLO_ERRORS("--slo-errors"),
+        ARG_TARGET_ERROR("--target-error"),
+        ARG_TARGET_METRIC("--target-metric"),
+        ARG_TEMPLATE("--template"),
         ARG_URL("-u"),
-        ARG_VERBOSE("-v")
+        ARG_VERBOSE("-v"),
+        ARG_WARMUP("--warmup")
         ;
 
         private final String str;
@@ -49,15 +92,113 @@ public class CurlEntryPoint {
         }
     }
 
+    // exit code of the run which is slower than the baseline
+    static final int EXIT_REGRESSION = 3;
+    static final int DEFAULT_AGENTS = 2;
+
     // Info that will be printed for user
     private static final String INFO = new StringJoiner(lineSeparator())
             .add("Required arguments:")
             .add(ARG_CURL.str + " - curl command")
             .add(ARG_URL.str + " - url to test")
             .add("Optional arguments:")
+            .add(ARG_SCENARIO.str + " - scenario file with the endpoints to test instead of the url. Every endpoint " +
+                    "starts with '[name]' line followed by 'url', 'method', 'header', 'form', 'body' and 'weight' " +
+                    "or 'rate' lines like 'key = value'. Requests are mixed by the weights, '" + ARG_HEADER.str +
+                    "' headers are sent by all the endpoints")
+            .add(ARG_ENGINE.str + " - request engine - curl (starts curl process for every call), " +
+                    "http (in-process http client, curl command is not needed) or nio (in-process client " +
+                    "multiplexing thousands of plain http keep-alive connections by a few threads, so " +
+                    ARG_CONCURRENCY.str + " could be in thousands) (default - " +
+                    CurlCmd.DEFAULT_ENGINE.name().toLowerCase() + ")")
             .add(ARG_COUNT.str + " - integer count of calls more then or equals to 2 (default - " + CurlCmd.DEFAULT_COUNT + ")")
-            .add(ARG_LOG.str + " - intermediate log file name (created for every curl call, marked with index)")
-            .add(ARG_DEL.str + " - boolean delete intermediate log files on exit (default - " + CurlCmd.DEFAULT_DEL_LOGS + ")")
+            .add(ARG_CONCURRENCY.str + " - integer count of requests executed at once after the first one (default - " + CurlCmd.DEFAULT_CONCURRENCY + ")")
+            .add(ARG_WARMUP.str + " - integer count of warm-up calls including the first one, or warm-up duration " +
+                    "after the first call, ex '30s', '5m'. Warm-up calls are not counted in the statistics " +
+                    "(default - " + CurlCmd.DEFAULT_WARMUP_COUNT + ")")
+            .add(ARG_DURATION.str + " - duration of calls after the warm-up, ex '90s', '10m', '1h' or seconds. " +
+                    "If the count of calls is not set, calls are made till the end")
+            .add(ARG_RATE.str + " - target rate of requests per second after the first one. Requests are sent " +
+                    "by the fixed schedule (not waiting for responses) by up to " + ARG_CONCURRENCY.str + " workers, " +
+                    "latency is also counted from the scheduled send time (default - as fast as possible)")
+            .add(ARG_TARGET_ERROR.str + " - target relative error of the latency in percents, ex '5'. Requests are " +
+                    "executed till the confidence interval of " + ARG_TARGET_METRIC.str + " is narrower than this, " +
+                    ARG_COUNT.str + " and " + ARG_DURATION.str + " are the limits (default - up to " +
+                    CurlCmd.DEFAULT_MAX_ADAPTIVE_COUNT + " requests)")
+            .add(ARG_TARGET_METRIC.str + " - metric of the latency estimate - mean or a percentile like p99 " +
+                    "(default - mean)")
+            .add(ARG_CONFIDENCE.str + " - confidence level of the latency estimate in percents (default - " +
+                    CurlCmd.DEFAULT_CONFIDENCE + ")")
+            .add(ARG_RAMP.str + " - capacity search - 'rate:start:step:max' or 'concurrency:start:step:max', ex " +
+                    "'rate:50:50:1000'. The load is increased by the step every " + ARG_DURATION.str + " (default - " +
+                    TimeUnit.MILLISECONDS.toSeconds(CurlCmd.DEFAULT_STEP_DURATION) + "s) till the SLO is breached, " +
+                    "the report has a table of the steps and the knee - the max load that met the SLO")
+            .add(ARG_SLO.str + " - p99 latency that a ramp step shouldn't exceed, ex '300ms', '1s' or milliseconds " +
+                    "(default - " + CurlCmd.DEFAULT_SLO_LATENCY + "ms). The latency of the rate ramp is counted " +
+                    "from the scheduled send time")
+            .add(ARG_SLO_ERRORS.str + " - percent of errors that a ramp step shouldn't exceed (default - " +
+                    CurlCmd.DEFAULT_SLO_ERRORS + ")")
+            .add(ARG_REPORT_INTERVAL.str + " - interval to print the count, throughput, errors and percentiles " +
+                    "of the requests completed during it, ex '1s', '10s' or seconds (default - only the final report)")
+            .add(ARG_METRICS.str + " - port or 'host:port' to serve the running counters, errors and latency buckets " +
+                    "of the requests on in OpenMetrics format during the run, ex '9400'. The metrics are served at " +
+                    MetricsExporter.PATH + " by the loopback interface only if the host is not set, " +
+                    "ex '0.0.0.0:9400' to be scraped by other machines")
+            .add(ARG_SOAK.str + " - window of a soak run, ex '1m'. The steady state is reported by windows instead of " +
+                    ARG_REPORT_INTERVAL.str + ", every line has the rolling 1, 5 and 15-minute throughput and " +
+                    "percentiles, and only the windows of the last 15 minutes are kept, so the memory doesn't grow " +
+                    "with " + ARG_DURATION.str)
+            .add(ARG_DRIFT.str + " - growth of the p99 of a soak window compared with the first window in percents " +
+                    "that is highlighted as a drift (default - " + CurlCmd.DEFAULT_DRIFT + ")")
+            .add(ARG_BATCH.str + " - integer count of requests executed by one curl process one after another " +
+                    "reusing connections (default - " + CurlCmd.DEFAULT_BATCH + ")")
+            .add(ARG_PARALLEL_MAX.str + " - integer count of batch requests executed by one curl process at once. " +
+                    "cUrl equivalent: '--parallel --parallel-max'")
+            .add(ARG_MAX_PROCESSES.str + " - integer count of curl processes alive at once. A process that is not " +
+                    "completed in the timeout is killed and its requests are counted as errors with exit code " +
+                    Sample.CURLE_OPERATION_TIMEDOUT + " (default - " + ARG_CONCURRENCY.str + ")")
+            .add(ARG_PRECISION.str + " - integer count of significant digits (from 1 to 5) of the times counted " +
+                    "for percentiles (default - " + CurlCmd.DEFAULT_PRECISION + ")")
+            .add(ARG_FORMAT.str + " - format of the report - text, json or csv ('scope,metric,value' lines) " +
+                    "(default - text). Settings and interval reports are printed to stderr if it is not text")
+            .add(ARG_SAMPLES.str + " - binary file to record every sample of the run (timestamp, times, http code, " +
+                    "size and exit code). It could be read later by " + ARG_READ_SAMPLES.str)
+            .add(ARG_READ_SAMPLES.str + " - binary samples file of a previous run. The statistics of the run are " +
+                    "counted again, no requests are executed and other arguments except " + ARG_CONVERT.str +
+                    " are ignored")
+            .add(ARG_CONVERT.str + " - csv or json - with " + ARG_READ_SAMPLES.str +
+                    " prints every sample in this format instead of the statistics")
+            .add(ARG_COORDINATOR.str + " - port to coordinate a distributed run on. The coordinator waits for " +
+                    ARG_AGENTS.str + " agents, starts them at the same time and prints the combined report of their " +
+                    "runs, no requests are executed and other arguments except " + ARG_FORMAT.str + " and " +
+                    ARG_SAVE_BASELINE.str + " are ignored")
+            .add(ARG_AGENTS.str + " - integer count of agents of the coordinator (default - " + DEFAULT_AGENTS + ")")
+            .add(ARG_AGENT.str + " - coordinator 'host:port' to run as its agent. Every agent is run with the same " +
+                    "arguments and executes its share of " + ARG_COUNT.str + " and " + ARG_RATE.str + " (" +
+                    ARG_RAMP.str + " and " + ARG_TARGET_ERROR.str + " are not supported)")
+            .add(ARG_CALIBRATE.str + " - 'delay:size:errors' of a loopback server to calibrate the tool on, ex " +
+                    "'20:1024:1' - delay of the responses in milliseconds, size of their bodies in bytes and percent " +
+                    "of responses with http code " + CalibrationServer.ERROR_CODE + ". Every engine (curl only if " +
+                    ARG_CURL.str + " is set) executes " + ARG_COUNT.str + " requests with the concurrency 1 and " +
+                    ARG_CONCURRENCY.str + ", and the table of the measured latency, errors and sizes compared with " +
+                    "the injected ones is printed, other arguments are ignored")
+            .add(ARG_SAVE_BASELINE.str + " - file to save the distribution of the total times of the run to, " +
+                    "next runs could be compared with it by " + ARG_BASELINE.str)
+            .add(ARG_BASELINE.str + " - baseline file saved by a previous run. The total times are compared with it " +
+                    "by the Mann-Whitney U test and the percentiles. If the run is significantly slower and p50, p90 " +
+                    "or p99 is slower by more than " + ARG_MAX_REGRESSION.str + ", the program exits with code " +
+                    EXIT_REGRESSION)
+            .add(ARG_MAX_REGRESSION.str + " - allowed slowdown of the percentiles compared with the baseline " +
+                    "in percents (default - " + CurlCmd.DEFAULT_MAX_REGRESSION + ")")
+            .add(ARG_LOG.str + " - log file name (created for every curl call if logs are kept, marked with index)")
+            .add(ARG_DEL.str + " - boolean don't keep log files (default - " + CurlCmd.DEFAULT_DEL_LOGS + "). " +
+                    "If false, responses and curl write-outs are saved to log files. If true, responses are " +
+                    "discarded as they arrive (curl writes them to the null device), only their sizes are counted")
+            .add(ARG_EXPECT_STATUS.str + " - http code of the responses, requests with other codes are counted as " +
+                    "errors with exit code " + Sample.CURLE_HTTP_RETURNED_ERROR + " like curl '--fail' does")
+            .add(ARG_EXPECT_CHECKSUM.str + " - CRC32 of the response bodies in hex or 'first' - the body of the first " +
+                    "response. Bodies are hashed as they arrive, requests with other bodies are counted as errors " +
+                    "with exit code " + Sample.BODY_MISMATCH)
             .add(ARG_HTTP_METHOD.str + " - request method - GET, POST, PUT, etc (default - GET). " +
                     "It is up to user to make sure the provided value is a correct method")
             .add(ARG_TIMEOUT.str + " - timeout to wait for remote host response in milliseconds (default - " + CurlCmd.DEFAULT_TIMEOUT + ")")
@@ -65,9 +206,19 @@ public class CurlEntryPoint {
             .add(ARG_HEADER.str + " - header for the request (default - empty), could be repeated several times")
             .add(ARG_FORM_ARG.str + " - form argument to be send in the requests body. cUrl equivalent: '-F, --form'")
             .add(ARG_BODY.str + " - raw body data, ex json. cUrl equivalent: '-d, --data'")
+            .add(ARG_TEMPLATE.str + " - boolean, if true, bodies (" + ARG_BODY.str + ", '@file' contents and " +
+                    ARG_FORM_ARG.str + " values) could have placeholders that are substituted for every request: " +
+                    "{{seq}} - sequence number of the request, {{uuid}}, {{random}} or {{random:N}} - from 0 " +
+                    "to N - 1, {{feed:column}} - value of the next row of " + ARG_FEED.str + " (default - false, " +
+                    "bodies are sent as they are)")
+            .add(ARG_FEED.str + " - CSV file of the templates with the names of the columns in the first line, " +
+                    "its rows are taken one after another by the requests and start over after the last one")
             .add(ARG_VERBOSE.str + " - verbose - print all debug info to curl log. cUrl equivalent: '-v, --verbose'")
             .toString();
 
+    private static final Pattern CALIBRATION = Pattern.compile("(\\d+(?:\\.\\d+)?):(\\d+):(\\d+(?:\\.\\d+)?)");
+    private static final Pattern DURATION = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|s|m|h|)");
+
     // form help message with an additional message as a first line
     private static Function<String, String> errorMessage = m -> new StringJoiner(lineSeparator())
             .add(m)
@@ -75,24 +226,197 @@ public class CurlEntryPoint {
             .toString();
 
     public static void main(String[] args) {
-        CurlCmd.Builder curl = processArguments(args).printSettings();
-        out.println(curl.execute().countStatistics());
+        ReportRenderer renderer = ReportRenderer.of(parseFormat(findArg(args, ARG_FORMAT)));
+        String samplesFile = findArg(args, ARG_READ_SAMPLES);
+        if (samplesFile != null) {
+            readSamples(samplesFile, findArg(args, ARG_CONVERT), renderer);
+            return;
+        }
+        String calibration = findArg(args, ARG_CALIBRATE);
+        if (calibration != null) {
+            calibrate(calibration, findArg(args, ARG_CURL), findArg(args, ARG_COUNT), findArg(args, ARG_CONCURRENCY));
+            return;
+        }
+        String coordinatorPort = findArg(args, ARG_COORDINATOR);
+        CurlCmd curlCmd;
+        if (coordinatorPort != null) {
+            curlCmd = coordinate(coordinatorPort, findArg(args, ARG_AGENTS));
+        } else {
+            CurlCmd.Builder curl = processArguments(args);
+            if (!(renderer instanceof TextReportRenderer)) {
+                // only the report is printed to the standard output, so it could be parsed
+                curl.setConsole(err);
+            }
+            // every worker could keep its connection of the http engine
+            HttpClientEngine.setMaxConnections(curl.getMaxConcurrency());
+            curl.printSettings();
+            curlCmd = curl.execute();
+        }
+        Report report = curlCmd.getReport();
+        out.println(renderer.render(report));
+        String baselineFile = findArg(args, ARG_SAVE_BASELINE);
+        if (baselineFile != null) {
+            saveBaseline(curlCmd, baselineFile);
+        }
+        if (report.getComparison() != null && report.getComparison().isRegression()) {
+            exit(EXIT_REGRESSION);
+        }
+    }
+
+    // waits for the agents and merges their runs, messages are printed to stderr, so only the report is in stdout
+    private static CurlCmd coordinate(String portStr, String agentsStr) {
+        int[] port = {0};
+        int[] agents = {DEFAULT_AGENTS};
+        setInt(p -> {
+            if (p < 0 || p > 65535) {
+                throw new NumberFormatException();
+            }
+            port[0] = p;
+        }, portStr, "Coordinator argument should have a port from 0 to 65535");
+        if (agentsStr != null) {
+            setInt(a -> {
+                if (a < 1) {
+                    throw new NumberFormatException();
+                }
+                agents[0] = a;
+            }, agentsStr, "Agents argument should have an integer value >= 1");
+        }
+        try (Coordinator coordinator = new Coordinator(port[0], agents[0], err)) {
+            return coordinator.run();
+        } catch (IOException e) {
+            err.println(format("Distributed run failed: %s", e.getMessage()));
+            exit(2);
+            return null;
+        }
+    }
+
+    // runs every engine against the loopback server with the injected delay, size and errors
+    private static void calibrate(String calibrationStr, String curlCommand, String countStr, String concurrencyStr) {
+        Matcher matcher = CALIBRATION.matcher(calibrationStr);
+        double errorRate = matcher.matches() ? Double.parseDouble(matcher.group(3)) : -1;
+        if (errorRate < 0 || errorRate > 100) {
+            err.println(errorMessage.apply(format("Calibrate argument should be 'delay:size:errors' with delay " +
+                    "in milliseconds, size in bytes and percent of errors, ex '20:1024:1'. But it has a value: %s",
+                    calibrationStr)));
+            exit(2);
+            return;
+        }
+        double delay = Double.parseDouble(matcher.group(1));
+        int[] size = {0};
+        setInt(s -> size[0] = s, matcher.group(2), "Calibrate argument should have an integer size of the body");
+        int[] count = {CurlCmd.DEFAULT_COUNT};
+        if (countStr != null) {
+            setInt(c -> {
+                if (c < 2) {
+                    throw new NumberFormatException();
+                }
+                count[0] = c;
+            }, countStr, "Count argument should have an integer value >= 2");
+        }
+        int[] concurrency = {CurlCmd.DEFAULT_CONCURRENCY};
+        if (concurrencyStr != null) {
+            setInt(c -> {
+                if (c < 1) {
+                    throw new NumberFormatException();
+                }
+                concurrency[0] = c;
+            }, concurrencyStr, "Concurrency argument should have an integer value >= 1");
+        }
+        Calibration calibration = new Calibration(delay, size[0], errorRate, curlCommand, count[0],
+                concurrency[0] > 1 ? new int[]{1, concurrency[0]} : new int[]{1});
+        HttpClientEngine.setMaxConnections(concurrency[0]);
+        try {
+            calibration.run();
+        } catch (IOException e) {
+            err.println(format("Calibration failed: %s", e.getMessage()));
+            exit(2);
+        }
+        out.println(calibration);
+    }
+
+    private static void saveBaseline(CurlCmd curlCmd, String baselineFile) {
+        try {
+            curlCmd.saveBaseline(baselineFile);
+        } catch (IOException e) {
+            err.println(format("Baseline %s couldn't be saved: %s", baselineFile, e.getMessage()));
+            exit(2);
+        }
+    }
+
+    private static ReportRenderer.Format parseFormat(String formatStr) {
+        if (formatStr == null) {
+            return ReportRenderer.Format.TEXT;
+        }
+        try {
+            return ReportRenderer.Format.valueOf(formatStr.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            err.println(errorMessage.apply(format(
+                    "Format argument should be one of text, json, csv. But it has a value: %s", formatStr)));
+            exit(2);
+            return null;
+        }
+    }
+
+    // value of the argument or null if it is not set
+    private static String findArg(String[] args, Argument arg) {
+        for (int i = 0; i < args.length - 1; i++) {
+            if (arg.str.equals(args[i])) {
+                return args[i + 1];
+            }
+        }
+        return null;
+    }
+
+    // prints the statistics or the samples of a previous run
+    private static void readSamples(String samplesFile, String convert, ReportRenderer renderer) {
+        try {
+            SampleFileReader reader = new SampleFileReader(Paths.get(samplesFile));
+            PrintWriter writer = new PrintWriter(out);
+            if (convert == null) {
+                out.println(renderer.render(CurlCmd.replay(reader).getReport()));
+            } else if ("csv".equalsIgnoreCase(convert)) {
+                reader.writeCsv(writer);
+            } else if ("json".equalsIgnoreCase(convert)) {
+                reader.writeJson(writer);
+            } else {
+                err.println(errorMessage.apply(format(
+                        "Convert argument should be one of csv, json. But it has a value: %s", convert)));
+                exit(2);
+            }
+        } catch (IOException e) {
+            err.println(format("Samples file %s couldn't be read: %s", samplesFile, e.getMessage()));
+            exit(2);
+        }
     }
 
     private static CurlCmd.Builder processArguments(String[] args) {
         CurlCmd.Builder curlBuilder = new CurlCmd.Builder();
 
+        String scenarioFile = null;
         for (int i = 0; i < args.length; i++) {
             if (i == 0 && Objects.equals(ARG_HELP, args[i])) {
                 printHelpAndExit();
             }
+            if (ARG_SCENARIO.str.equals(args[i])) {
+                scenarioFile = getArg(args, ++i);
+                continue;
+            }
             i = processArg(curlBuilder, args, i);
         }
+        // scenario is read after all the other args, so the headers and the rate are already set
+        if (scenarioFile != null) {
+            setScenario(curlBuilder, scenarioFile);
+        }
 
         if (curlBuilder.isNotReady()) {
             err.println(errorMessage.apply("One or several required arguments were not set."));
             exit(1);
         }
+        if (curlBuilder.isFeedWithoutTemplate()) {
+            err.println(errorMessage.apply(format("Feed is used only by the templates, turn them on by '%s true'.",
+                    ARG_TEMPLATE.str)));
+            exit(2);
+        }
         return curlBuilder;
     }
 
@@ -114,6 +438,97 @@ public class CurlEntryPoint {
             case ARG_COUNT:
                 setTriesCount(curlBuilder, getArg(args, i));
                 break;
+            case ARG_CONCURRENCY:
+                setInt(curlBuilder::setConcurrency, getArg(args, i),
+                        "Concurrency argument should have an integer value >= 1");
+                break;
+            case ARG_WARMUP:
+                setWarmup(curlBuilder, getArg(args, i));
+                break;
+            case ARG_DURATION:
+                setDuration(curlBuilder, getArg(args, i));
+                break;
+            case ARG_RATE:
+                setRate(curlBuilder, getArg(args, i));
+                break;
+            case ARG_TARGET_ERROR:
+                setDouble(curlBuilder::setTargetError, getArg(args, i),
+                        "Target error argument should have a number of percents more than 0 and less than 100");
+                break;
+            case ARG_TARGET_METRIC:
+                setTargetMetric(curlBuilder, getArg(args, i));
+                break;
+            case ARG_CONFIDENCE:
+                setDouble(curlBuilder::setConfidence, getArg(args, i),
+                        "Confidence argument should have a number of percents more than 0 and less than 100");
+                break;
+            case ARG_RAMP:
+                setRamp(curlBuilder, getArg(args, i));
+                break;
+            case ARG_SLO:
+                setSloLatency(curlBuilder, getArg(args, i));
+                break;
+            case ARG_SLO_ERRORS:
+                setSloErrors(curlBuilder, getArg(args, i));
+                break;
+            case ARG_REPORT_INTERVAL:
+                setReportInterval(curlBuilder, getArg(args, i));
+                break;
+            case ARG_SOAK:
+                setSoakWindow(curlBuilder, getArg(args, i));
+                break;
+            case ARG_DRIFT:
+                setDouble(curlBuilder::setDrift, getArg(args, i), "Drift argument should have a positive value");
+                break;
+            case ARG_FORMAT:
+                // it is processed before the other args
+                getArg(args, i);
+                break;
+            case ARG_SAMPLES:
+                curlBuilder.setSamplesFile(getArg(args, i));
+                break;
+            case ARG_BASELINE:
+                setBaseline(curlBuilder, getArg(args, i));
+                break;
+            case ARG_SAVE_BASELINE:
+                // the baseline is saved after the run
+                getArg(args, i);
+                break;
+            case ARG_MAX_REGRESSION:
+                setMaxRegression(curlBuilder, getArg(args, i));
+                break;
+            case ARG_BATCH:
+                setInt(curlBuilder::setBatch, getArg(args, i),
+                        "Batch argument should have an integer value >= 1");
+                break;
+            case ARG_PARALLEL_MAX:
+                setInt(curlBuilder::setParallelMax, getArg(args, i),
+                        "Parallel max argument should have an integer value >= 1");
+                break;
+            case ARG_AGENT:
+                setAgent(curlBuilder, getArg(args, i));
+                break;
+            case ARG_METRICS:
+                setMetrics(curlBuilder, getArg(args, i));
+                break;
+            case ARG_EXPECT_STATUS:
+                setInt(curlBuilder::setExpectedStatus, getArg(args, i),
+                        "Expected status argument should have an http code from 100 to 999");
+                break;
+            case ARG_EXPECT_CHECKSUM:
+                setExpectedChecksum(curlBuilder, getArg(args, i));
+                break;
+            case ARG_MAX_PROCESSES:
+                setInt(curlBuilder::setMaxProcesses, getArg(args, i),
+                        "Max processes argument should have an integer value >= 1");
+                break;
+            case ARG_PRECISION:
+                setInt(curlBuilder::setPrecision, getArg(args, i),
+                        "Precision argument should have an integer value from 1 to 5");
+                break;
+            case ARG_ENGINE:
+                setEngine(curlBuilder, getArg(args, i));
+                break;
             case ARG_DEL:
                 curlBuilder.setDeleteLogs(Boolean.parseBoolean(getArg(args, i)));
                 break;
@@ -135,6 +550,12 @@ public class CurlEntryPoint {
             case ARG_BODY:
                 curlBuilder.addBodyArg(getArg(args, i));
                 break;
+            case ARG_TEMPLATE:
+                curlBuilder.setTemplate(Boolean.parseBoolean(getArg(args, i)));
+                break;
+            case ARG_FEED:
+                setFeed(curlBuilder, getArg(args, i));
+                break;
             case ARG_VERBOSE:
                 curlBuilder.setVerbose(Boolean.parseBoolean(getArg(args, i)));
                 break;
@@ -162,6 +583,224 @@ public class CurlEntryPoint {
         }
     }
 
+    private static void setInt(IntConsumer setter, String valueStr, String requirement) {
+        try {
+            setter.accept(Integer.parseInt(valueStr));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format("%s. But it has a value: %s", requirement, valueStr)));
+            exit(2);
+        }
+    }
+
+    private static void setDouble(DoubleConsumer setter, String valueStr, String requirement) {
+        try {
+            setter.accept(Double.parseDouble(valueStr));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format("%s. But it has a value: %s", requirement, valueStr)));
+            exit(2);
+        }
+    }
+
+    private static void setTargetMetric(CurlCmd.Builder curlBuilder, String metricStr) {
+        try {
+            curlBuilder.setTargetMetric(metricStr);
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Target metric argument should be mean or a percentile like p99. But it has a value: %s",
+                    metricStr)));
+            exit(2);
+        }
+    }
+
+    private static void setWarmup(CurlCmd.Builder curlBuilder, String warmupStr) {
+        try {
+            if (warmupStr.chars().allMatch(Character::isDigit)) {
+                curlBuilder.setWarmupCount(Integer.parseInt(warmupStr));
+            } else {
+                curlBuilder.setWarmupDuration(parseDuration(warmupStr, TimeUnit.SECONDS));
+            }
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Warm-up argument should have an integer count >= 1 or a duration like '30s'. " +
+                            "But it has a value: %s", warmupStr)));
+            exit(2);
+        }
+    }
+
+    private static void setDuration(CurlCmd.Builder curlBuilder, String durationStr) {
+        try {
+            curlBuilder.setDuration(parseDuration(durationStr, TimeUnit.SECONDS));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Duration argument should have a positive duration like '90s', '10m', '1h'. " +
+                            "But it has a value: %s", durationStr)));
+            exit(2);
+        }
+    }
+
+    private static void setSoakWindow(CurlCmd.Builder curlBuilder, String windowStr) {
+        try {
+            curlBuilder.setSoakWindow(parseDuration(windowStr, TimeUnit.SECONDS));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Soak argument should have a positive duration like '1m', '30s'. But it has a value: %s", windowStr)));
+            exit(2);
+        }
+    }
+
+    private static void setReportInterval(CurlCmd.Builder curlBuilder, String intervalStr) {
+        try {
+            curlBuilder.setReportInterval(parseDuration(intervalStr, TimeUnit.SECONDS));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Interval argument should have a positive duration like '1s', '500ms'. " +
+                            "But it has a value: %s", intervalStr)));
+            exit(2);
+        }
+    }
+
+    private static void setRamp(CurlCmd.Builder curlBuilder, String rampStr) {
+        try {
+            String[] parts = rampStr.split(":");
+            if (parts.length != 4) {
+                throw new NumberFormatException(rampStr);
+            }
+            curlBuilder.setRamp(CurlCmd.RampBy.valueOf(parts[0].trim().toUpperCase()), Double.parseDouble(parts[1]),
+                    Double.parseDouble(parts[2]), Double.parseDouble(parts[3]));
+        } catch (IllegalArgumentException e) {
+            err.println(errorMessage.apply(format(
+                    "Ramp argument should be like 'rate:50:50:1000' or 'concurrency:1:1:32' with positive numbers " +
+                            "and integer concurrency. But it has a value: %s", rampStr)));
+            exit(2);
+        }
+    }
+
+    private static void setSloLatency(CurlCmd.Builder curlBuilder, String sloStr) {
+        try {
+            curlBuilder.setSloLatency(parseDuration(sloStr, TimeUnit.MILLISECONDS));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "SLO argument should have a positive duration like '300ms', '1s'. But it has a value: %s",
+                    sloStr)));
+            exit(2);
+        }
+    }
+
+    private static void setSloErrors(CurlCmd.Builder curlBuilder, String sloErrorsStr) {
+        try {
+            curlBuilder.setSloErrors(Double.parseDouble(sloErrorsStr));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "SLO errors argument should have a number of percents from 0 to 100. But it has a value: %s",
+                    sloErrorsStr)));
+            exit(2);
+        }
+    }
+
+    // parse duration like '500ms', '30s', '5m', '1h' to milliseconds, the number without unit is in the default unit
+    static long parseDuration(String durationStr, TimeUnit defaultUnit) {
+        Matcher matcher = DURATION.matcher(durationStr.trim());
+        if (!matcher.matches()) {
+            throw new NumberFormatException(durationStr);
+        }
+        double value = Double.parseDouble(matcher.group(1));
+        String unit = matcher.group(2);
+        long unitMillis = unit.isEmpty() ? defaultUnit.toMillis(1)
+                : "ms".equals(unit) ? 1
+                : "s".equals(unit) ? TimeUnit.SECONDS.toMillis(1)
+                : "m".equals(unit) ? TimeUnit.MINUTES.toMillis(1)
+                : TimeUnit.HOURS.toMillis(1);
+        return (long) (value * unitMillis);
+    }
+
+    private static void setScenario(CurlCmd.Builder curlBuilder, String scenarioFile) {
+        try {
+            curlBuilder.setScenario(scenarioFile);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println(errorMessage.apply(format("Scenario %s couldn't be read: %s", scenarioFile, e.getMessage())));
+            exit(2);
+        }
+    }
+
+    private static void setFeed(CurlCmd.Builder curlBuilder, String feedFile) {
+        try {
+            curlBuilder.setFeed(feedFile);
+        } catch (IOException | IllegalArgumentException e) {
+            err.println(errorMessage.apply(format("Feed %s couldn't be read: %s", feedFile, e.getMessage())));
+            exit(2);
+        }
+    }
+
+    private static void setBaseline(CurlCmd.Builder curlBuilder, String baselineFile) {
+        try {
+            curlBuilder.setBaseline(baselineFile);
+        } catch (IOException e) {
+            err.println(errorMessage.apply(format("Baseline %s couldn't be read: %s", baselineFile, e.getMessage())));
+            exit(2);
+        }
+    }
+
+    private static void setMaxRegression(CurlCmd.Builder curlBuilder, String maxRegressionStr) {
+        try {
+            curlBuilder.setMaxRegression(Double.parseDouble(maxRegressionStr));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Max regression argument should have a non-negative number of percents. But it has a value: %s",
+                    maxRegressionStr)));
+            exit(2);
+        }
+    }
+
+    private static void setRate(CurlCmd.Builder curlBuilder, String rateStr) {
+        try {
+            curlBuilder.setRate(Double.parseDouble(rateStr));
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Rate argument should have a positive number value. But it has a value: %s", rateStr)));
+            exit(2);
+        }
+    }
+
+    private static void setMetrics(CurlCmd.Builder curlBuilder, String address) {
+        try {
+            curlBuilder.setMetrics(address);
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Metrics argument should have a port or 'host:port'. But it has a value: %s", address)));
+            exit(2);
+        }
+    }
+
+    private static void setExpectedChecksum(CurlCmd.Builder curlBuilder, String checksum) {
+        try {
+            curlBuilder.setExpectedChecksum(checksum);
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Expected checksum argument should have CRC32 in hex or 'first'. But it has a value: %s", checksum)));
+            exit(2);
+        }
+    }
+
+    private static void setAgent(CurlCmd.Builder curlBuilder, String coordinator) {
+        try {
+            curlBuilder.setAgent(coordinator);
+        } catch (NumberFormatException e) {
+            err.println(errorMessage.apply(format(
+                    "Agent argument should have a coordinator like 'host:port'. But it has a value: %s", coordinator)));
+            exit(2);
+        }
+    }
+
+    private static void setEngine(CurlCmd.Builder curlBuilder, String engineStr) {
+        try {
+            curlBuilder.setEngine(RequestEngine.Type.valueOf(engineStr.toUpperCase()));
+        } catch (IllegalArgumentException e) {
+            err.println(errorMessage.apply(format(
+                    "Engine argument should be one of curl, http, nio. But it has a value: %s", engineStr)));
+            exit(2);
+        }
+    }
+
     private static void printHelpAndExit() {
         out.println(errorMessage.apply(format(
                 "Usage: java -jar curl_tools.jar %s $CURL %s $URL [%s $CALLS_COUNT] " +
@@ -0,0 +1,98 @@
+package curltool;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * Starts a curl process for every batch of requests. Curl output is read through a pipe and every write-out block
+ * is passed to the consumer as it arrives. All the requests of the batch are executed by the same process,
+ * so they reuse connections. Processes are started and killed on timeout by the supervisor, requests
+ * of a killed process that are not written out are passed as timeouted ones.
+ * If the checksum is asked for, curl args should send the bodies to the output to be hashed.
+ * Args are made once for a count of transfers, unless they are templated - then every process has its own,
+ * and the rendered bodies are passed to curl by the files that are deleted when the process ends.
+ */
+class CurlProcessEngine implements RequestEngine {
+
+    // curl args by the count of transfers, there are only the batch size and the size of the last batch
+    private final Map<Integer, String[]> args = new ConcurrentHashMap<>();
+    private final ArgsFactory argsFactory;
+    private final long timeout;
+    private final int parallelMax;
+    private final ProcessSupervisor supervisor;
+    private final boolean checksum;
+    private final boolean templated;
+
+    CurlProcessEngine(ArgsFactory argsFactory, long timeout, int parallelMax, ProcessSupervisor supervisor,
+                      boolean checksum, boolean templated) {
+        this.argsFactory = argsFactory;
+        this.timeout = timeout;
+        this.parallelMax = parallelMax;
+        this.supervisor = supervisor;
+        this.checksum = checksum;
+        this.templated = templated;
+    }
+
+    /**
+     * Makes curl args of the count of transfers, the files of the rendered bodies the args refer to are added
+     * to the list
+     */
+    interface ArgsFactory {
+        String[] apply(int transfers, List<Path> bodyFiles) throws IOException;
+    }
+
+    @Override
+    public boolean execute(int transfers, File logFile, Consumer<Sample> consumer) throws InterruptedException, IOException {
+        List<Path> bodyFiles = new ArrayList<>();
+        try {
+            String[] processArgs = templated ? null : args.get(transfers);
+            if (processArgs == null) {
+                processArgs = argsFactory.apply(transfers, bodyFiles);
+                if (!templated) {
+                    args.put(transfers, processArgs);
+                }
+            }
+            return execute(processArgs, transfers, logFile, consumer);
+        } finally {
+            for (Path file : bodyFiles) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    private boolean execute(String[] processArgs, int transfers, File logFile, Consumer<Sample> consumer)
+            throws InterruptedException, IOException {
+        // timeout is given for a single request, parallel requests are waited for together
+        int sequential = parallelMax > 0 ? (transfers + parallelMax - 1) / parallelMax : transfers;
+        ProcessSupervisor.Child child = supervisor.start(
+                new ProcessBuilder(processArgs).redirectErrorStream(true), timeout * sequential);
+        int[] received = {0};
+        boolean completed;
+        try (InputStream output = child.process.getInputStream();
+             OutputStream log = logFile == null ? null : new BufferedOutputStream(new FileOutputStream(logFile))) {
+            WriteOutReader.read(output, log, checksum, sample -> {
+                received[0]++;
+                consumer.accept(sample);
+            });
+        } finally {
+            completed = supervisor.finish(child);
+        }
+
+        if (!completed) {
+            Sample timeouted = new Sample();
+            for (int i = received[0]; i < transfers; i++) {
+                timeouted.clear();
+                timeouted.exitCode = Sample.CURLE_OPERATION_TIMEDOUT;
+                timeouted.total = child.getWallTime();
+                consumer.accept(timeouted);
+            }
+        }
+        return completed;
+    }
+}
@@ -0,0 +1,187 @@
+package curltool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.String.format;
+
+/**
+ * Named request of the load: url, method, headers, body and its share of all the requests.
+ * A run without a scenario has a single endpoint configured by <code>CurlCmd</code> settings.
+ * Scenario file defines many endpoints, every one starts with its name in square brackets:
+ * <pre>
+ * # comment
+ * [search]
+ * url = https://host/search?q=1
+ * header = Accept: application/json
+ * weight = 5
+ *
+ * [login]
+ * url = https://host/login
+ * method = POST
+ * body = {"user":"name"}
+ * rate = 2.5
+ * </pre>
+ * Keys 'header', 'form' and 'body' could be repeated, they are the same as '-h', '-f' and '-b' arguments.
+ * Requests are mixed by the weights (1 by default). If the rates are set (for all the endpoints),
+ * they are used as the weights and their sum is the target rate of the scenario.
+ */
+class Endpoint {
+
+    static final double DEFAULT_WEIGHT = 1;
+
+    final String name;
+    final String url;
+    final String method;
+    final Set<String> headers;
+    final Set<String> formArgs;
+    final Set<String> bodyArgs;
+    final double weight;
+    // requests per second of the endpoint, or 0 if it is not set
+    final double rate;
+
+    Endpoint(String name, String url, String method, Set<String> headers, Set<String> formArgs, Set<String> bodyArgs,
+             double weight, double rate) {
+        this.name = name;
+        this.url = url;
+        this.method = method;
+        this.headers = Collections.unmodifiableSet(headers);
+        this.formArgs = Collections.unmodifiableSet(formArgs);
+        this.bodyArgs = Collections.unmodifiableSet(bodyArgs);
+        this.weight = weight;
+        this.rate = rate;
+    }
+
+    /**
+     * Reads the endpoints of the scenario. Common headers are sent by all the endpoints in addition to their own.
+     * Throws <code>IllegalArgumentException</code> if the scenario is not valid.
+     */
+    static List<Endpoint> readScenario(BufferedReader reader, Set<String> commonHeaders) throws IOException {
+        List<Endpoint> endpoints = new ArrayList<>();
+        Builder builder = null;
+        int lineNumber = 0;
+        for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+            lineNumber++;
+            String trimmed = line.trim();
+            if (trimmed.isEmpty() || trimmed.startsWith("#")) {
+                continue;
+            }
+            if (trimmed.startsWith("[") && trimmed.endsWith("]")) {
+                if (builder != null) {
+                    endpoints.add(builder.build());
+                }
+                builder = new Builder(trimmed.substring(1, trimmed.length() - 1).trim(), commonHeaders);
+                continue;
+            }
+            int eq = trimmed.indexOf('=');
+            if (builder == null || eq < 1) {
+                throw new IllegalArgumentException(format(
+                        "Line %d of the scenario should be '[name]' or 'key = value': %s", lineNumber, line));
+            }
+            builder.set(trimmed.substring(0, eq).trim(), trimmed.substring(eq + 1).trim(), lineNumber);
+        }
+        if (builder != null) {
+            endpoints.add(builder.build());
+        }
+
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("Scenario doesn't have any endpoint.");
+        }
+        long withRate = endpoints.stream().filter(e -> e.rate > 0).count();
+        if (withRate > 0 && withRate < endpoints.size()) {
+            throw new IllegalArgumentException("Rate should be set for all the endpoints of the scenario or for none.");
+        }
+        Set<String> names = new LinkedHashSet<>();
+        for (Endpoint endpoint : endpoints) {
+            if (!names.add(endpoint.name)) {
+                throw new IllegalArgumentException(format("Endpoint name '%s' is not unique.", endpoint.name));
+            }
+        }
+        return endpoints;
+    }
+
+    // sum of the endpoint rates, or 0 if they are not set
+    static double totalRate(List<Endpoint> endpoints) {
+        return endpoints.stream().mapToDouble(e -> e.rate).sum();
+    }
+
+    @Override
+    public String toString() {
+        return name + " - " + (method != null ? method + " " : "") + url;
+    }
+
+    private static class Builder {
+
+        private final String name;
+        private String url = null;
+        private String method = null;
+        private final Set<String> headers;
+        private final Set<String> formArgs = new LinkedHashSet<>();
+        private final Set<String> bodyArgs = new LinkedHashSet<>();
+        private double weight = DEFAULT_WEIGHT;
+        private double rate = 0;
+
+        Builder(String name, Set<String> commonHeaders) {
+            if (name.isEmpty()) {
+                throw new IllegalArgumentException("Endpoint name shouldn't be empty.");
+            }
+            this.name = name;
+            headers = new LinkedHashSet<>(commonHeaders);
+        }
+
+        void set(String key, String value, int lineNumber) {
+            switch (key) {
+                case "url":
+                    url = value.replace(" ", "%20");
+                    break;
+                case "method":
+                    method = value;
+                    break;
+                case "header":
+                    headers.add(value);
+                    break;
+                case "form":
+                    formArgs.add(value);
+                    break;
+                case "body":
+                    bodyArgs.add(value);
+                    break;
+                case "weight":
+                    weight = positive(value, key, lineNumber);
+                    break;
+                case "rate":
+                    rate = positive(value, key, lineNumber);
+                    weight = rate;
+                    break;
+                default:
+                    throw new IllegalArgumentException(format(
+                            "Unknown key '%s' at line %d of the scenario.", key, lineNumber));
+            }
+        }
+
+        private static double positive(String value, String key, int lineNumber) {
+            try {
+                double number = Double.parseDouble(value);
+                if (number > 0 && !Double.isInfinite(number)) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(format(
+                    "'%s' should be a positive number at line %d of the scenario: %s", key, lineNumber, value));
+        }
+
+        Endpoint build() {
+            if (url == null) {
+                throw new IllegalArgumentException(format("Endpoint '%s' doesn't have url.", name));
+            }
+            return new Endpoint(name, url, method, headers, formArgs, bodyArgs, weight, rate);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package curltool;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.lang.String.format;
+
+/**
+ * CSV data feed of the request templates: the first line has the names of the columns, every next line is a row.
+ * Values are encoded once when the feed is read, so a request only copies the bytes of its row.
+ * Rows are taken one after another by the sequence number of the request and start over after the last one.
+ * Fields could be quoted with '"', a quote inside a quoted field is doubled.
+ */
+class Feed {
+
+    private final List<String> columns;
+    // values by the row and the column
+    private final byte[][][] rows;
+
+    private Feed(List<String> columns, byte[][][] rows) {
+        this.columns = columns;
+        this.rows = rows;
+    }
+
+    /**
+     * Reads the feed file. Throws <code>IllegalArgumentException</code> if it has no rows or a row doesn't have
+     * a value of every column.
+     */
+    static Feed read(Path file) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) {
+                throw new IllegalArgumentException(format("Feed %s is empty.", file));
+            }
+            List<String> columns = parseLine(header);
+            List<byte[][]> rows = new ArrayList<>();
+            int lineNumber = 1;
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                lineNumber++;
+                if (line.isEmpty()) {
+                    continue;
+                }
+                List<String> values = parseLine(line);
+                if (values.size() != columns.size()) {
+                    throw new IllegalArgumentException(format("Line %d of the feed %s should have %d values: %s",
+                            lineNumber, file, columns.size(), line));
+                }
+                byte[][] row = new byte[values.size()][];
+                for (int i = 0; i < row.length; i++) {
+                    row[i] = values.get(i).getBytes(StandardCharsets.UTF_8);
+                }
+                rows.add(row);
+            }
+            if (rows.isEmpty()) {
+                throw new IllegalArgumentException(format("Feed %s doesn't have any row.", file));
+            }
+            return new Feed(columns, rows.toArray(new byte[0][][]));
+        }
+    }
+
+    // values of the line separated by commas, quoted values could have commas and quotes
+    private static List<String> parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    value.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    /**
+     * Returns the index of the column. Throws <code>IllegalArgumentException</code> if there is no such column.
+     */
+    int column(String name) {
+        int column = columns.indexOf(name);
+        if (column < 0) {
+            throw new IllegalArgumentException(format("Feed doesn't have column '%s', its columns are %s.",
+                    name, Arrays.toString(columns.toArray())));
+        }
+        return column;
+    }
+
+    // value of the column in the row of the request with the sequence number from 1
+    byte[] value(long sequence, int column) {
+        return rows[(int) ((sequence - 1) % rows.length)][column];
+    }
+
+    int size() {
+        return rows.length;
+    }
+}
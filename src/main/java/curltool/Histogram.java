@@ -0,0 +1,255 @@
+package curltool;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Histogram of non-negative long values with a fixed memory footprint.
+ * Values are counted in log-linear buckets: every power of two range is divided into sub-buckets,
+ * so the relative error of a reported value is bounded by the given count of significant decimal digits.
+ * Recording doesn't allocate, histograms of the same layout could be merged.
+ * The class isn't thread safe, every worker should record to its own histogram.
+ */
+class Histogram {
+
+    private final long highestTrackableValue;
+    private final int significantDigits;
+
+    private final int subBucketHalfCountMagnitude;
+    private final int subBucketHalfCount;
+    private final long subBucketMask;
+    private final int leadingZeroCountBase;
+    private final long[] counts;
+
+    private long totalCount = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+    // exact sums are kept to count mean and standard deviation without the bucket error
+    private double sum = 0;
+    private double sumOfSquares = 0;
+
+    /**
+     * Creates a histogram that tracks values from 0 to highestTrackableValue (bigger values are counted as the highest)
+     * with the precision of significantDigits (from 1 to 5) decimal digits.
+     */
+    Histogram(long highestTrackableValue, int significantDigits) {
+        if (highestTrackableValue < 2) {
+            throw new IllegalArgumentException("Highest trackable value should be >= 2.");
+        }
+        if (significantDigits < 1 || significantDigits > 5) {
+            throw new IllegalArgumentException("Significant digits should be from 1 to 5.");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.significantDigits = significantDigits;
+
+        // values below this one are counted with the unit resolution
+        long largestValueWithSingleUnitResolution = 2 * (long) Math.pow(10, significantDigits);
+        int subBucketCountMagnitude = (int) Math.ceil(Math.log(largestValueWithSingleUnitResolution) / Math.log(2));
+        subBucketHalfCountMagnitude = subBucketCountMagnitude - 1;
+        int subBucketCount = 1 << subBucketCountMagnitude;
+        subBucketHalfCount = subBucketCount / 2;
+        subBucketMask = subBucketCount - 1;
+        leadingZeroCountBase = 64 - subBucketHalfCountMagnitude - 1;
+
+        int bucketCount = 1;
+        for (long smallestUntrackableValue = subBucketCount; smallestUntrackableValue <= highestTrackableValue;
+             smallestUntrackableValue <<= 1) {
+            bucketCount++;
+            if (smallestUntrackableValue > Long.MAX_VALUE / 2) {
+                break;
+            }
+        }
+        counts = new long[(bucketCount + 1) * subBucketHalfCount];
+    }
+
+    /**
+     * Creates an empty histogram with the same layout
+     */
+    Histogram copyLayout() {
+        return new Histogram(highestTrackableValue, significantDigits);
+    }
+
+    void record(long value) {
+        long v = value < 0 ? 0 : Math.min(value, highestTrackableValue);
+        counts[countsIndex(v)]++;
+        totalCount++;
+        min = Math.min(min, v);
+        max = Math.max(max, v);
+        sum += v;
+        sumOfSquares += (double) v * v;
+    }
+
+    /**
+     * Adds all the values of the other histogram, it should have the same layout.
+     */
+    void add(Histogram other) {
+        if (other.counts.length != counts.length || other.significantDigits != significantDigits) {
+            throw new IllegalArgumentException("Histograms of different layouts couldn't be merged.");
+        }
+        if (other.totalCount == 0) {
+            return;
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        totalCount += other.totalCount;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        sum += other.sum;
+        sumOfSquares += other.sumOfSquares;
+    }
+
+    void reset() {
+        Arrays.fill(counts, 0);
+        totalCount = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+        sum = 0;
+        sumOfSquares = 0;
+    }
+
+    long getTotalCount() {
+        return totalCount;
+    }
+
+    long getMin() {
+        return totalCount == 0 ? 0 : min;
+    }
+
+    long getMax() {
+        return max;
+    }
+
+    double getMean() {
+        return totalCount == 0 ? 0 : sum / totalCount;
+    }
+
+    double getStdDeviation() {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double mean = getMean();
+        return Math.sqrt(Math.max(0, sumOfSquares / totalCount - mean * mean));
+    }
+
+    /**
+     * Returns the value that the given percent (from 0 to 100) of all the values are less than or equal to.
+     * The value is the highest value of its bucket, but not more than the max recorded value.
+     */
+    long getValueAtPercentile(double percentile) {
+        if (totalCount == 0) {
+            return 0;
+        }
+        double p = Math.min(Math.max(percentile, 0), 100);
+        long countAtPercentile = Math.max(1, (long) Math.ceil(p / 100 * totalCount));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            if (cumulative >= countAtPercentile) {
+                return Math.max(getMin(), Math.min(max, highestEquivalentValue(i)));
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Returns the count of values which are more than the given one (with the precision of the histogram).
+     */
+    long getCountAbove(long value) {
+        if (value >= max) {
+            return 0;
+        }
+        long count = 0;
+        for (int i = countsIndex(Math.max(0, Math.min(value, highestTrackableValue))) + 1; i < counts.length; i++) {
+            count += counts[i];
+        }
+        return count;
+    }
+
+    /**
+     * Passes every bucket with values to the consumer in the ascending order of the values.
+     * The value of a bucket is its highest equivalent value, it is not clamped to the recorded min and max,
+     * so the same bucket of two histograms with the same layout has the same value.
+     */
+    void forEachBucket(BucketConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                consumer.accept(highestEquivalentValue(i), counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Writes the layout and all the counts, only the buckets with values are written
+     */
+    void write(DataOutput out) throws IOException {
+        out.writeLong(highestTrackableValue);
+        out.writeInt(significantDigits);
+        out.writeLong(totalCount);
+        out.writeLong(min);
+        out.writeLong(max);
+        out.writeDouble(sum);
+        out.writeDouble(sumOfSquares);
+        int buckets = (int) Arrays.stream(counts).filter(c -> c > 0).count();
+        out.writeInt(buckets);
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                out.writeInt(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    /**
+     * Reads the histogram written by <code>write</code>
+     */
+    static Histogram read(DataInput in) throws IOException {
+        Histogram histogram;
+        try {
+            histogram = new Histogram(in.readLong(), in.readInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Invalid histogram layout: " + e.getMessage());
+        }
+        histogram.totalCount = in.readLong();
+        histogram.min = in.readLong();
+        histogram.max = in.readLong();
+        histogram.sum = in.readDouble();
+        histogram.sumOfSquares = in.readDouble();
+        int buckets = in.readInt();
+        for (int b = 0; b < buckets; b++) {
+            int i = in.readInt();
+            if (i < 0 || i >= histogram.counts.length) {
+                throw new IOException("Invalid histogram bucket: " + i);
+            }
+            histogram.counts[i] = in.readLong();
+        }
+        return histogram;
+    }
+
+    private int countsIndex(long value) {
+        int bucketIndex = leadingZeroCountBase - Long.numberOfLeadingZeros(value | subBucketMask);
+        int subBucketIndex = (int) (value >>> bucketIndex);
+        return ((bucketIndex + 1) << subBucketHalfCountMagnitude) + (subBucketIndex - subBucketHalfCount);
+    }
+
+    // the highest value that is counted in the same bucket as the values of the given index
+    private long highestEquivalentValue(int index) {
+        int bucketIndex = (index >> subBucketHalfCountMagnitude) - 1;
+        int subBucketIndex = (index & (subBucketHalfCount - 1)) + subBucketHalfCount;
+        if (bucketIndex < 0) {
+            subBucketIndex -= subBucketHalfCount;
+            bucketIndex = 0;
+        }
+        long lowestValue = (long) subBucketIndex << bucketIndex;
+        return lowestValue + (1L << bucketIndex) - 1;
+    }
+
+    /**
+     * Receives the value and the count of a bucket
+     */
+    interface BucketConsumer {
+        void accept(long value, long count);
+    }
+}
@@ -0,0 +1,257 @@
+package curltool;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSocketFactory;
+import javax.net.ssl.TrustManager;
+import javax.net.ssl.X509TrustManager;
+import java.io.*;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.cert.X509Certificate;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static curltool.CurlCmd.*;
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+
+/**
+ * Executes requests in-process via <code>HttpURLConnection</code>, so no process is forked for a request
+ * and the connections are reused by the JVM keep-alive cache. The size of the cache is process-wide and is read
+ * once, so it is configured by <code>setMaxConnections</code> before the first connection of the process.
+ * Like curl with '-k' argument it doesn't verify https certificates.
+ * If the logs are kept, the response and the curl-like write-out are written to the log file. Otherwise the response
+ * is only counted (and hashed if the checksum is asked for) through the reused buffer.
+ * A templated body is rendered before the request is started, so its time is not counted in the latency.
+ */
+class HttpClientEngine implements RequestEngine {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // methods that HttpURLConnection is able to send
+    private static final Set<String> METHODS = new HashSet<>(Arrays.asList(
+            "GET", "POST", "HEAD", "OPTIONS", "PUT", "DELETE", "TRACE"));
+
+    private static final SSLSocketFactory INSECURE_SOCKET_FACTORY = insecureSocketFactory();
+
+    private final URL url;
+    private final String method;
+    private final List<String[]> headers = new ArrayList<>();
+    private final int timeout;
+    private final boolean verbose;
+    private final boolean checksum;
+    // the request body is prepared once and is sent by every request, or it is rendered for every request
+    private final RequestBody requestBody;
+    private final byte[] body;
+    private final String contentType;
+
+    HttpClientEngine(String urlToTest, String method, Set<String> headers, Set<String> formArgs, Set<String> bodyArgs,
+                     boolean template, Feed feed, long timeout, boolean verbose, boolean checksum) throws IOException {
+        this.url = new URL(urlToTest.contains("://") ? urlToTest : "http://" + urlToTest);
+        this.timeout = (int) Math.min(timeout, Integer.MAX_VALUE);
+        this.verbose = verbose;
+        this.checksum = checksum;
+        headers.forEach(h -> {
+            int colon = h.indexOf(':');
+            if (colon > 0) {
+                this.headers.add(new String[]{h.substring(0, colon).trim(), h.substring(colon + 1).trim()});
+            }
+        });
+
+        requestBody = RequestBody.of(formArgs, bodyArgs, template, feed);
+        body = requestBody == null ? null : requestBody.content;
+        contentType = requestBody == null ? null : requestBody.contentType;
+
+        String requestMethod = method != null ? method.toUpperCase(Locale.ROOT) : requestBody != null ? "POST" : "GET";
+        if (!METHODS.contains(requestMethod)) {
+            throw new IllegalArgumentException(format("Method %s is not supported by the http engine.", method));
+        }
+        this.method = requestMethod;
+    }
+
+    /**
+     * Sets the count of idle connections to a host kept by the JVM keep-alive cache (5 by default), unless it is
+     * already set by 'http.maxConnections' property. The property is process-wide and is read when the cache
+     * is initialized, so it should be set at the start before any connection is made
+     */
+    static void setMaxConnections(int maxConnections) {
+        if (System.getProperty("http.maxConnections") == null) {
+            System.setProperty("http.maxConnections", String.valueOf(maxConnections));
+        }
+    }
+
+    @Override
+    public boolean execute(int transfers, File logFile, Consumer<Sample> consumer) throws IOException {
+        Sample sample = new Sample();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        CRC32 crc = checksum ? new CRC32() : null;
+        Template.Output rendered = requestBody != null && requestBody.isTemplate() ? new Template.Output() : null;
+        try (OutputStream log = logFile == null ? null : new BufferedOutputStream(new FileOutputStream(logFile))) {
+            for (int i = 0; i < transfers; i++) {
+                if (rendered != null) {
+                    requestBody.render(rendered);
+                }
+                execute(sample, buffer, crc, rendered, log);
+                consumer.accept(sample);
+            }
+        }
+        return true;
+    }
+
+    // executes the request once with the static or the rendered body, the response is read through the buffer
+    // and written to the log if it is kept.
+    // DNS lookup, connection and SSL handshake couldn't be separated, so they are all counted as the connection time
+    private void execute(Sample sample, byte[] buffer, CRC32 crc, Template.Output rendered, OutputStream log)
+            throws IOException {
+        sample.clear();
+        if (crc != null) {
+            crc.reset();
+        }
+        long start = nanoTime();
+        try {
+            HttpURLConnection connection = openConnection(rendered != null ? rendered.length
+                    : body != null ? body.length : -1);
+            connection.connect();
+            sample.pretransfer = nsToUs(nanoTime() - start);
+            sample.connect = sample.pretransfer;
+            if (connection instanceof HttpsURLConnection) {
+                sample.appconnect = sample.pretransfer;
+            }
+            if (rendered != null) {
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(rendered.bytes, 0, rendered.length);
+                }
+            } else if (body != null) {
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+
+            int responseCode = connection.getResponseCode();
+            sample.httpCode = responseCode;
+            sample.starttransfer = nsToUs(nanoTime() - start);
+            if (verbose && log != null) {
+                writeResponseHeaders(connection, log);
+            }
+
+            InputStream response = responseCode >= 400 ? connection.getErrorStream() : connection.getInputStream();
+            if (response != null) {
+                // the response should be fully read to return the connection to the keep-alive cache
+                try (InputStream in = response) {
+                    for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                        sample.sizeDownload += n;
+                        if (crc != null) {
+                            crc.update(buffer, 0, n);
+                        }
+                        if (log != null) {
+                            log.write(buffer, 0, n);
+                        }
+                    }
+                }
+            }
+        } catch (SocketTimeoutException e) {
+            sample.exitCode = Sample.CURLE_OPERATION_TIMEDOUT;
+        } catch (UnknownHostException e) {
+            sample.exitCode = Sample.CURLE_COULDNT_RESOLVE_HOST;
+        } catch (ConnectException e) {
+            sample.exitCode = Sample.CURLE_COULDNT_CONNECT;
+        } catch (IOException e) {
+            sample.exitCode = Sample.CURLE_RECV_ERROR;
+        }
+        long total = nanoTime() - start;
+        sample.total = nsToUs(total);
+        sample.speedDownload = total > 0 ? (long) (sample.sizeDownload * 1e9 / total) : 0;
+        if (crc != null) {
+            sample.checksum = crc.getValue();
+        }
+        if (log != null) {
+            writeOut(log, sample);
+        }
+    }
+
+    // connection of the request with the body of the length, or without a body if it is negative
+    private HttpURLConnection openConnection(int bodyLength) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        if (connection instanceof HttpsURLConnection) {
+            ((HttpsURLConnection) connection).setSSLSocketFactory(INSECURE_SOCKET_FACTORY);
+            ((HttpsURLConnection) connection).setHostnameVerifier((host, session) -> true);
+        }
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeout);
+        connection.setReadTimeout(timeout);
+        connection.setInstanceFollowRedirects(false);
+        if (contentType != null) {
+            connection.setRequestProperty("Content-Type", contentType);
+        }
+        headers.forEach(h -> connection.setRequestProperty(h[0], h[1]));
+        if (bodyLength >= 0) {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(bodyLength);
+        }
+        return connection;
+    }
+
+    private static void writeResponseHeaders(HttpURLConnection connection, OutputStream log) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        connection.getHeaderFields().forEach((name, values) ->
+                values.forEach(v -> sb.append("< ").append(name == null ? "" : name + ": ").append(v).append('\n')));
+        log.write(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    // writes the same keys that curl writes with CurlCmd.CURL_OUT_TEMPLATE, times are in seconds
+    static void writeOut(OutputStream log, Sample sample) throws IOException {
+        String writeOut = new StringJoiner("\n", "\n", "\n")
+                .add(EXIT_CODE + "=" + sample.exitCode)
+                .add(HTTP_CODE + "=" + sample.httpCode)
+                .add(TIME_NAMELOOKUP + "=" + usToS(sample.namelookup))
+                .add(TIME_CONNECT + "=" + usToS(sample.connect))
+                .add(TIME_APPCONNECT + "=" + usToS(sample.appconnect))
+                .add(TIME_REDIRECT + "=" + usToS(sample.redirect))
+                .add(TIME_PRETRANSFER + "=" + usToS(sample.pretransfer))
+                .add(TIME_STARTTRANSFER + "=" + usToS(sample.starttransfer))
+                .add(SIZE_DOWNLOAD + "=" + sample.sizeDownload)
+                .add(SPEED_DOWNLOAD + "=" + sample.speedDownload)
+                .add(TIME_TOTAL + "=" + usToS(sample.total))
+                .toString();
+        log.write(writeOut.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long nsToUs(long nanos) {
+        return TimeUnit.NANOSECONDS.toMicros(nanos);
+    }
+
+    // curl writes times in seconds with microsecond precision
+    private static String usToS(long micros) {
+        return format(Locale.ROOT, "%.6f", micros / 1e6);
+    }
+
+    private static SSLSocketFactory insecureSocketFactory() {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, new TrustManager[]{new X509TrustManager() {
+                @Override
+                public void checkClientTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public void checkServerTrusted(X509Certificate[] chain, String authType) {
+                }
+
+                @Override
+                public X509Certificate[] getAcceptedIssuers() {
+                    return new X509Certificate[0];
+                }
+            }}, null);
+            return context.getSocketFactory();
+        } catch (GeneralSecurityException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package curltool;
+
+import java.io.PrintStream;
+import java.text.DecimalFormat;
+import java.util.StringJoiner;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+
+/**
+ * Prints a line with the requests completed during every interval of the run: their count, throughput,
+ * errors and latency percentiles.
+ * Workers count requests by lock-free adders and record times to the histogram stripe of their thread,
+ * the reporter takes the stripes away once per interval, so it doesn't slow down the measurement.
+ */
+class IntervalReporter {
+
+    private static final double[] PERCENTILES = {50, 90, 99};
+    static final DecimalFormat AVERAGE = new DecimalFormat("##.##");
+    // times are recorded in microseconds and printed in milliseconds
+    static final DecimalFormat TIME = new DecimalFormat("0.###");
+    static final double MICROS_IN_MILLI = 1000;
+
+    final long interval;
+    final PrintStream out;
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final Histogram[] stripes;
+    // times of the current interval collected from all the stripes, it is used by the reporter thread only
+    final Histogram times;
+    private ScheduledExecutorService timer;
+
+    long start;
+    long lastReport;
+    private long lastCompleted = 0;
+    private long lastErrors = 0;
+
+    /**
+     * Creates a reporter that prints a line every interval (in milliseconds) to the given stream.
+     * Times are recorded to histograms of the given layout.
+     */
+    IntervalReporter(long interval, PrintStream out, Histogram layout, int stripes) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("Interval should be positive.");
+        }
+        this.interval = interval;
+        this.out = out;
+        this.stripes = new Histogram[Math.max(1, stripes)];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = layout.copyLayout();
+        }
+        times = layout.copyLayout();
+    }
+
+    /**
+     * Counts the completed request, it could be called by any thread
+     */
+    void record(Sample sample) {
+        if (sample.isError()) {
+            errors.increment();
+        } else {
+            Histogram stripe = stripes[(int) (Thread.currentThread().getId() % stripes.length)];
+            synchronized (stripe) {
+                stripe.record(sample.total);
+            }
+        }
+        completed.increment();
+    }
+
+    void start() {
+        start = nanoTime();
+        lastReport = start;
+        timer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "interval-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleAtFixedRate(this::report, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stops the reporter and prints the last (partial) interval if there are requests completed in it
+     */
+    void stop() throws InterruptedException {
+        if (timer == null) {
+            return;
+        }
+        timer.shutdown();
+        timer.awaitTermination(interval, TimeUnit.MILLISECONDS);
+        timer = null;
+        if (completed.sum() > lastCompleted) {
+            report();
+        }
+    }
+
+    /**
+     * Prints the requests completed since the previous report and starts the next interval
+     */
+    synchronized void report() {
+        long now = nanoTime();
+        long completedNow = completed.sum();
+        long errorsNow = errors.sum();
+        times.reset();
+        for (Histogram stripe : stripes) {
+            synchronized (stripe) {
+                times.add(stripe);
+                stripe.reset();
+            }
+        }
+        out.println(intervalToStr(now, completedNow - lastCompleted, errorsNow - lastErrors));
+        lastReport = now;
+        lastCompleted = completedNow;
+        lastErrors = errorsNow;
+    }
+
+    // Convert the interval counts and times to a single line
+    String intervalToStr(long now, long requests, long intervalErrors) {
+        double seconds = (now - lastReport) / 1e9;
+        StringJoiner sj = new StringJoiner(", ", format("[%7.1fs] ", (now - start) / 1e9), "")
+                .add("requests " + requests)
+                .add("per second " + AVERAGE.format(seconds > 0 ? requests / seconds : 0))
+                .add("errors " + intervalErrors);
+        if (times.getTotalCount() > 0) {
+            for (double percentile : PERCENTILES) {
+                sj.add("p" + AVERAGE.format(percentile) + " "
+                        + TIME.format(times.getValueAtPercentile(percentile) / MICROS_IN_MILLI));
+            }
+            sj.add("max " + TIME.format(times.getMax() / MICROS_IN_MILLI));
+        }
+        return sj.toString();
+    }
+}
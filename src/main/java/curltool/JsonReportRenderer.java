@@ -0,0 +1,176 @@
+package curltool;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.StringJoiner;
+
+import static curltool.ReportRenderer.Format.NUMBER;
+
+/**
+ * Renders the report to a json object. Distributions are objects with count, min, max, mean, std_dev and
+ * percentiles like 'p99.9', absent sections are null.
+ */
+class JsonReportRenderer implements ReportRenderer {
+
+    @Override
+    public String render(Report report) {
+        StringJoiner endpoints = new StringJoiner(",", "[", "]");
+        report.getEndpoints().forEach(endpoint -> endpoints.add(summaryToJson(endpoint)));
+        return new StringJoiner(",", "{", "}")
+                .add(field("first", summaryToJson(report.getFirst())))
+                .add(field("warmup", report.getWarmup() == null ? "null" : summaryToJson(report.getWarmup())))
+                .add(field("then", summaryToJson(report.getThen())))
+                .add(field("cancelled", String.valueOf(report.getCancelled())))
+                .add(field("schedule", report.getSchedule() == null ? "null" : scheduleToJson(report.getSchedule())))
+                .add(field("endpoints", endpoints.toString()))
+                .add(field("comparison",
+                        report.getComparison() == null ? "null" : comparisonToJson(report.getComparison())))
+                .add(field("ramp", report.getRamp() == null ? "null" : rampToJson(report.getRamp())))
+                .add(field("estimate", report.getEstimate() == null ? "null" : estimateToJson(report.getEstimate())))
+                .add(field("processes",
+                        report.getProcesses() == null ? "null" : processesToJson(report.getProcesses())))
+                .toString();
+    }
+
+    private static String summaryToJson(Report.Summary summary) {
+        return new StringJoiner(",", "{", "}")
+                .add(field("name", string(summary.getName())))
+                .add(field("requests", String.valueOf(summary.getRequests())))
+                .add(field("successful", String.valueOf(summary.getSuccessful())))
+                .add(field("errors", String.valueOf(summary.getErrors())))
+                .add(field("requests_per_second", number(summary.getRequestsPerSecond())))
+                .add(field("http_codes", countsToJson(summary.getHttpCodes())))
+                .add(field("exit_codes", countsToJson(summary.getExitCodes())))
+                .add(field("total", distributionToJson(summary.getTotal())))
+                .add(field("calc", distributionToJson(summary.getCalc())))
+                .add(field("dns", distributionToJson(summary.getDns())))
+                .add(field("tcp", distributionToJson(summary.getTcp())))
+                .add(field("tls", distributionToJson(summary.getTls())))
+                .add(field("redirect", distributionToJson(summary.getRedirect())))
+                .add(field("transfer", distributionToJson(summary.getTransfer())))
+                .add(field("downloaded", String.valueOf(summary.getDownloaded())))
+                .add(field("speed", distributionToJson(summary.getSpeed())))
+                .toString();
+    }
+
+    private static String scheduleToJson(Report.Schedule schedule) {
+        return new StringJoiner(",", "{", "}")
+                .add(field("rate", number(schedule.getRate())))
+                .add(field("send_delay", distributionToJson(schedule.getSendDelay())))
+                .add(field("corrected", distributionToJson(schedule.getCorrected())))
+                .add(field("late_threshold", number(schedule.getLateThreshold())))
+                .add(field("late", String.valueOf(schedule.getLate())))
+                .toString();
+    }
+
+    private static String estimateToJson(Report.Estimate estimate) {
+        return new StringJoiner(",", "{", "}")
+                .add(field("metric", string(estimate.getMetric())))
+                .add(field("confidence", number(estimate.getConfidence())))
+                .add(field("target_error_percent", number(estimate.getTargetError())))
+                .add(field("count", String.valueOf(estimate.getCount())))
+                .add(field("value", number(estimate.getValue())))
+                .add(field("lower", number(estimate.getLower())))
+                .add(field("upper", number(estimate.getUpper())))
+                .add(field("error_percent", number(estimate.getRelativeError())))
+                .add(field("converged", String.valueOf(estimate.isConverged())))
+                .toString();
+    }
+
+    private static String processesToJson(Report.Processes processes) {
+        return new StringJoiner(",", "{", "}")
+                .add(field("started", String.valueOf(processes.getStarted())))
+                .add(field("killed", String.valueOf(processes.getKilled())))
+                .add(field("max_alive", String.valueOf(processes.getMaxAlive())))
+                .add(field("wall_time", distributionToJson(processes.getWallTime())))
+                .add(field("cpu_time", number(processes.getCpuTime())))
+                .add(field("cpu_time_per_process", number(processes.getCpuTimePerProcess())))
+                .toString();
+    }
+
+    private static String rampToJson(Report.Ramp ramp) {
+        StringJoiner steps = new StringJoiner(",", "[", "]");
+        for (Report.Step step : ramp.getSteps()) {
+            steps.add(new StringJoiner(",", "{", "}")
+                    .add(field("load", number(step.getLoad())))
+                    .add(field("passed", String.valueOf(step.isPassed())))
+                    .add(field("errors_percent", number(step.getErrorsPercent())))
+                    .add(field("cancelled", String.valueOf(step.getCancelled())))
+                    .add(field("latency", distributionToJson(step.getLatency())))
+                    .add(field("summary", summaryToJson(step.getSummary())))
+                    .toString());
+        }
+        Report.Step knee = ramp.getKnee();
+        return new StringJoiner(",", "{", "}")
+                .add(field("ramp_by", string(ramp.getRampBy())))
+                .add(field("slo_percentile", number(Report.Step.SLO_PERCENTILE)))
+                .add(field("slo_latency", number(ramp.getSloLatency())))
+                .add(field("slo_errors_percent", number(ramp.getSloErrors())))
+                .add(field("steps", steps.toString()))
+                .add(field("knee", knee == null ? "null" : number(knee.getLoad())))
+                .add(field("breached", String.valueOf(ramp.isBreached())))
+                .toString();
+    }
+
+    private static String comparisonToJson(Report.Comparison comparison) {
+        StringJoiner changes = new StringJoiner(",", "{", "}");
+        comparison.getChanges().forEach((percentile, change) ->
+                changes.add(field("p" + NUMBER.format(percentile), number(change))));
+        StringJoiner regressed = new StringJoiner(",", "[", "]");
+        comparison.getRegressed().forEach(percentile -> regressed.add(string("p" + NUMBER.format(percentile))));
+        return new StringJoiner(",", "{", "}")
+                .add(field("baseline", distributionToJson(comparison.getBaseline())))
+                .add(field("change_percent", changes.toString()))
+                .add(field("p_value", probability(comparison.getPValue())))
+                .add(field("significance", number(comparison.getSignificance())))
+                .add(field("max_regression_percent", number(comparison.getMaxRegression())))
+                .add(field("regressed", regressed.toString()))
+                .add(field("regression", String.valueOf(comparison.isRegression())))
+                .toString();
+    }
+
+    private static String distributionToJson(Report.Distribution distribution) {
+        StringJoiner sj = new StringJoiner(",", "{", "}")
+                .add(field("count", String.valueOf(distribution.getCount())))
+                .add(field("min", number(distribution.getMin())))
+                .add(field("max", number(distribution.getMax())))
+                .add(field("mean", number(distribution.getMean())))
+                .add(field("std_dev", number(distribution.getStdDeviation())));
+        distribution.getPercentiles().forEach((percentile, value) ->
+                sj.add(field("p" + NUMBER.format(percentile), number(value))));
+        return sj.toString();
+    }
+
+    private static String countsToJson(Map<Integer, Long> counts) {
+        StringJoiner sj = new StringJoiner(",", "{", "}");
+        counts.forEach((code, count) -> sj.add(field(String.valueOf(code), String.valueOf(count))));
+        return sj.toString();
+    }
+
+    private static String field(String name, String value) {
+        return string(name) + ":" + value;
+    }
+
+    private static String number(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value) ? "null" : NUMBER.format(value);
+    }
+
+    // small probabilities are written with the exponent
+    private static String probability(double value) {
+        return Double.isNaN(value) ? "null" : String.format(Locale.ROOT, "%.3g", value);
+    }
+
+    private static String string(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
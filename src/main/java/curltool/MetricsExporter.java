@@ -0,0 +1,180 @@
+package curltool;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.String.format;
+
+/**
+ * Serves the running counters of the requests in OpenMetrics text format by the JVM built-in http server,
+ * so a long run could be scraped by the same monitoring as the service under test.
+ * Every metric is labeled by the phase of the run (first, warmup or steady). Workers count requests by lock-free
+ * adders and fixed latency buckets, and the server thread only reads them, so a scrape never blocks the workers.
+ */
+class MetricsExporter implements AutoCloseable {
+
+    static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+    static final String PATH = "/metrics";
+    // upper bounds of the latency buckets in microseconds, the last bucket is +Inf
+    private static final long[] BUCKETS = {1_000, 2_500, 5_000, 10_000, 25_000, 50_000, 100_000, 250_000, 500_000,
+            1_000_000, 2_500_000, 5_000_000, 10_000_000};
+    private static final String[] PHASES = {"first", "warmup", "steady"};
+    // the highest http code and curl exit code that are counted separately like in the statistics
+    private static final int MAX_HTTP_CODE = 999;
+    private static final int MAX_EXIT_CODE = 127;
+
+    private final HttpServer server;
+    private final Counters[] phases = new Counters[PHASES.length];
+
+    /**
+     * Starts the server on the port of the loopback interface, or of the given host if it is 'host:port',
+     * so the counters are exposed to the other machines only if the host is set explicitly
+     */
+    MetricsExporter(String address) throws IOException {
+        for (int i = 0; i < phases.length; i++) {
+            phases[i] = new Counters();
+        }
+        server = HttpServer.create(address(address), 0);
+        server.createContext(PATH, this::handle);
+        // requests are served by the server thread
+        server.setExecutor(null);
+        server.start();
+    }
+
+    /**
+     * Returns the address of '[host:]port' to serve the metrics on, it is the loopback one if there is no host.
+     * Throws <code>NumberFormatException</code> if the port is wrong
+     */
+    static InetSocketAddress address(String address) {
+        int colon = address.lastIndexOf(':');
+        int port = Integer.parseInt(address.substring(colon + 1));
+        if (port < 0 || port > 65535 || colon == 0) {
+            throw new NumberFormatException(address);
+        }
+        return colon > 0 ? new InetSocketAddress(address.substring(0, colon), port)
+                : new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+    }
+
+    // port the metrics are served on, it is chosen by the system if the port 0 is given
+    int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Counts the completed request of the phase (see <code>SampleRecorder</code> phases), it could be called by any thread
+     */
+    void record(Sample sample, byte phase) {
+        Counters counters = phases[Math.min(Math.max(phase - SampleRecorder.PHASE_FIRST, 0), PHASES.length - 1)];
+        if (sample.isError()) {
+            counters.exitCodes.incrementAndGet(Math.min(Math.max(sample.exitCode, 0), MAX_EXIT_CODE));
+            return;
+        }
+        counters.httpCodes.incrementAndGet(Math.min(Math.max(sample.httpCode, 0), MAX_HTTP_CODE));
+        int bucket = 0;
+        while (bucket < BUCKETS.length && sample.total > BUCKETS[bucket]) {
+            bucket++;
+        }
+        counters.buckets[bucket].increment();
+        counters.latencySum.add(sample.total);
+        counters.downloaded.add(sample.sizeDownload);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        byte[] body = scrape().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream os = exchange.getResponseBody()) {
+            os.write(body);
+        }
+    }
+
+    /**
+     * Returns all the metrics in OpenMetrics text format, counters are read without stopping the workers,
+     * so the values of a scrape could be a few requests apart
+     */
+    String scrape() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("# TYPE curltool_responses counter\n")
+                .append("# HELP curltool_responses Successful requests by http code.\n");
+        for (int p = 0; p < PHASES.length; p++) {
+            AtomicLongArray codes = phases[p].httpCodes;
+            for (int code = 0; code < codes.length(); code++) {
+                long count = codes.get(code);
+                if (count > 0) {
+                    sb.append(format("curltool_responses_total{phase=\"%s\",code=\"%d\"} %d\n", PHASES[p], code, count));
+                }
+            }
+        }
+        sb.append("# TYPE curltool_errors counter\n")
+                .append("# HELP curltool_errors Failed requests by curl exit code.\n");
+        for (int p = 0; p < PHASES.length; p++) {
+            AtomicLongArray codes = phases[p].exitCodes;
+            for (int code = 0; code < codes.length(); code++) {
+                long count = codes.get(code);
+                if (count > 0) {
+                    sb.append(format("curltool_errors_total{phase=\"%s\",exit_code=\"%d\"} %d\n",
+                            PHASES[p], code, count));
+                }
+            }
+        }
+        sb.append("# TYPE curltool_downloaded_bytes counter\n")
+                .append("# UNIT curltool_downloaded_bytes bytes\n")
+                .append("# HELP curltool_downloaded_bytes Downloaded bytes of the successful requests.\n");
+        for (int p = 0; p < PHASES.length; p++) {
+            sb.append(format("curltool_downloaded_bytes_total{phase=\"%s\"} %d\n", PHASES[p], phases[p].downloaded.sum()));
+        }
+        sb.append("# TYPE curltool_latency_seconds histogram\n")
+                .append("# UNIT curltool_latency_seconds seconds\n")
+                .append("# HELP curltool_latency_seconds Total time of the successful requests.\n");
+        for (int p = 0; p < PHASES.length; p++) {
+            Counters counters = phases[p];
+            // buckets are cumulative, the sum is read after them, so it is not behind the count
+            long cumulative = 0;
+            for (int b = 0; b <= BUCKETS.length; b++) {
+                cumulative += counters.buckets[b].sum();
+                sb.append(format("curltool_latency_seconds_bucket{phase=\"%s\",le=\"%s\"} %d\n", PHASES[p],
+                        b < BUCKETS.length ? seconds(BUCKETS[b]) : "+Inf", cumulative));
+            }
+            sb.append(format("curltool_latency_seconds_count{phase=\"%s\"} %d\n", PHASES[p], cumulative))
+                    .append(format("curltool_latency_seconds_sum{phase=\"%s\"} %s\n", PHASES[p],
+                            seconds(counters.latencySum.sum())));
+        }
+        return sb.append("# EOF\n").toString();
+    }
+
+    private static String seconds(long micros) {
+        return format(Locale.ROOT, "%.6f", micros / 1e6).replaceAll("\\.?0+$", "");
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    /**
+     * Counters of a phase, they are only increased
+     */
+    private static class Counters {
+
+        private final AtomicLongArray httpCodes = new AtomicLongArray(MAX_HTTP_CODE + 1);
+        private final AtomicLongArray exitCodes = new AtomicLongArray(MAX_EXIT_CODE + 1);
+        private final LongAdder[] buckets = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder latencySum = new LongAdder();
+        private final LongAdder downloaded = new LongAdder();
+
+        Counters() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+    }
+}
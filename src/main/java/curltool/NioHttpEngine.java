@@ -0,0 +1,720 @@
+package curltool;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+import static java.lang.String.format;
+import static java.lang.System.nanoTime;
+
+/**
+ * Executes requests in-process by a few IO threads, every thread multiplexes its non-blocking HTTP/1.1 keep-alive
+ * connections by a selector. So thousands of requests could be in flight at once without a thread or a process
+ * per request: requests are started by <code>executeAsync</code> and their results are passed to the consumer
+ * by the IO threads. The requests of a call are executed one after another by the same connection, an idle
+ * connection is reused by the next call of the same thread.
+ * The same times as curl write-out ones are counted: DNS lookup and connection of a new connection, the time
+ * when the request is about to be sent, the first response byte and the end of the response. The host is resolved
+ * once when the engine is created, so a slow DNS server doesn't block the IO threads and the DNS lookup time
+ * of a request is close to 0 like a lookup from the curl DNS cache.
+ * Only plain http is supported. If the logs are kept, the response body and the curl-like write-out are written
+ * to the log file. Otherwise the body is only counted (and hashed if the checksum is asked for) in the read buffer.
+ * A templated body is rendered with the request head to the reused buffer of the call before the request is started.
+ */
+class NioHttpEngine implements AsyncRequestEngine {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_LOOPS = 4;
+    // selectors wake up at least so often (in milliseconds) to check the timeouts
+    private static final long TIMEOUT_CHECK = 10;
+    private static final int MAX_HEAD_SIZE = 64 * 1024;
+    private static final String CRLF = "\r\n";
+    private static final byte[] END_OF_HEAD = (CRLF + CRLF).getBytes(StandardCharsets.ISO_8859_1);
+
+    // states of the response
+    private static final int HEAD = 0;
+    private static final int BODY = 1;
+    private static final int CHUNK_SIZE = 2;
+    private static final int CHUNK_DATA = 3;
+    private static final int CHUNK_END = 4;
+    private static final int TRAILER = 5;
+    private static final int UNTIL_CLOSE = 6;
+
+    private final String host;
+    private final int port;
+    // resolved once, it is unresolved if the host is not found
+    private final InetSocketAddress address;
+    // request bytes are prepared once, every request sends a duplicate of the buffer
+    private final ByteBuffer request;
+    // templated body and the head of its requests without the content length, they are null if the body is static
+    private final RequestBody templateBody;
+    private final byte[] templateHead;
+    // responses of HEAD requests have no body
+    private final boolean headRequest;
+    private final long timeout;
+    private final boolean verbose;
+    private final boolean checksum;
+    private final Loop[] loops;
+    private final AtomicInteger nextLoop = new AtomicInteger();
+    private volatile boolean closed = false;
+
+    NioHttpEngine(String urlToTest, String method, Set<String> headers, Set<String> formArgs, Set<String> bodyArgs,
+                  boolean template, Feed feed, long timeout, boolean verbose, boolean checksum) throws IOException {
+        URL url = new URL(urlToTest.contains("://") ? urlToTest : "http://" + urlToTest);
+        if (!"http".equalsIgnoreCase(url.getProtocol())) {
+            throw new IllegalArgumentException(format("Protocol %s is not supported by the nio engine.",
+                    url.getProtocol()));
+        }
+        host = url.getHost();
+        port = url.getPort() > 0 ? url.getPort() : url.getDefaultPort();
+        address = new InetSocketAddress(host, port);
+        this.timeout = TimeUnit.MILLISECONDS.toNanos(timeout);
+        this.verbose = verbose;
+        this.checksum = checksum;
+
+        RequestBody body = RequestBody.of(formArgs, bodyArgs, template, feed);
+        String requestMethod = method != null ? method.toUpperCase(Locale.ROOT) : body != null ? "POST" : "GET";
+        headRequest = "HEAD".equals(requestMethod);
+        templateBody = body != null && body.isTemplate() ? body : null;
+        templateHead = templateBody != null ? request(requestMethod, url, headers, body) : null;
+        request = ByteBuffer.wrap(templateBody != null ? new byte[0] : request(requestMethod, url, headers, body))
+                .asReadOnlyBuffer();
+
+        loops = new Loop[Math.max(1, Math.min(MAX_LOOPS, Runtime.getRuntime().availableProcessors()))];
+        for (int i = 0; i < loops.length; i++) {
+            loops[i] = new Loop(i);
+        }
+    }
+
+    // request line, headers and body, headers set by the user replace the default ones.
+    // The head of a templated body ends before the content length, it is added with the body for every request
+    private byte[] request(String method, URL url, Set<String> headers, RequestBody body) {
+        Map<String, String> requestHeaders = new LinkedHashMap<>();
+        requestHeaders.put("host", "Host: " + (url.getPort() > 0 ? host + ":" + port : host));
+        requestHeaders.put("user-agent", "User-Agent: curl-tool");
+        requestHeaders.put("accept", "Accept: */*");
+        if (body != null) {
+            requestHeaders.put("content-type", "Content-Type: " + body.contentType);
+            if (!body.isTemplate()) {
+                requestHeaders.put("content-length", "Content-Length: " + body.content.length);
+            }
+        }
+        for (String header : headers) {
+            int colon = header.indexOf(':');
+            if (colon > 0) {
+                requestHeaders.put(header.substring(0, colon).trim().toLowerCase(Locale.ROOT),
+                        header.substring(0, colon).trim() + ": " + header.substring(colon + 1).trim());
+            }
+        }
+        if (body != null && body.isTemplate()) {
+            requestHeaders.remove("content-length");
+        }
+        StringBuilder sb = new StringBuilder(method).append(' ')
+                .append(url.getFile().isEmpty() ? "/" : url.getFile()).append(" HTTP/1.1").append(CRLF);
+        requestHeaders.values().forEach(h -> sb.append(h).append(CRLF));
+        if (body != null && body.isTemplate()) {
+            return sb.append("Content-Length: ").toString().getBytes(StandardCharsets.ISO_8859_1);
+        }
+        byte[] requestHead = sb.append(CRLF).toString().getBytes(StandardCharsets.ISO_8859_1);
+        if (body == null) {
+            return requestHead;
+        }
+        byte[] bytes = Arrays.copyOf(requestHead, requestHead.length + body.content.length);
+        System.arraycopy(body.content, 0, bytes, requestHead.length, body.content.length);
+        return bytes;
+    }
+
+    @Override
+    public boolean execute(int transfers, File logFile, Consumer<Sample> consumer) throws InterruptedException, IOException {
+        try {
+            return executeAsync(transfers, logFile, consumer).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IOException(e.getCause());
+        }
+    }
+
+    @Override
+    public CompletableFuture<Boolean> executeAsync(int transfers, File logFile, Consumer<Sample> consumer)
+            throws IOException {
+        if (closed) {
+            throw new IllegalStateException("The engine is closed.");
+        }
+        OutputStream log = logFile == null ? null : new BufferedOutputStream(new FileOutputStream(logFile));
+        Exchange exchange = new Exchange(transfers, log, checksum ? new CRC32() : null, consumer);
+        loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)].start(exchange);
+        return exchange.result;
+    }
+
+    /**
+     * Closes the connections, the requests in flight are failed
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Loop loop : loops) {
+            loop.selector.wakeup();
+        }
+    }
+
+    /**
+     * Requests of a single call and the state of the current one
+     */
+    private static class Exchange {
+
+        private final int transfers;
+        private final OutputStream log;
+        // checksum of the current response body, null if the bodies are not hashed
+        private final CRC32 checksum;
+        private final Consumer<Sample> consumer;
+        private final CompletableFuture<Boolean> result = new CompletableFuture<>();
+        private final Sample sample = new Sample();
+        private int completed = 0;
+        private Connection connection;
+        private long start;
+        private long deadline;
+        private ByteBuffer request;
+        // rendered request of a templated body and the buffers it is rendered to
+        private ByteBuffer rendered;
+        private Template.Output body;
+        private Template.Output renderedRequest;
+
+        // response state
+        private int state;
+        private boolean received;
+        private byte[] head = new byte[256];
+        private int headLength;
+        private long remaining;
+        private boolean chunkExtension;
+        private int lineLength;
+        private boolean keepAlive;
+
+        Exchange(int transfers, OutputStream log, CRC32 checksum, Consumer<Sample> consumer) {
+            this.transfers = transfers;
+            this.log = log;
+            this.checksum = checksum;
+            this.consumer = consumer;
+        }
+    }
+
+    /**
+     * Connection of an IO thread, it is attached to the exchange that uses it
+     */
+    private static class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        // the connection has been used by a previous request, so the server could have closed it since then
+        private final boolean reused;
+
+        Connection(SocketChannel channel, SelectionKey key, boolean reused) {
+            this.channel = channel;
+            this.key = key;
+            this.reused = reused;
+        }
+
+        void close() {
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // the connection is not used anymore
+            }
+        }
+    }
+
+    /**
+     * IO thread with its selector, connections and exchanges. All the state is changed by the thread only,
+     * other threads pass the new exchanges through the queue.
+     */
+    private class Loop implements Runnable {
+
+        private final Selector selector;
+        private final Queue<Exchange> started = new ConcurrentLinkedQueue<>();
+        private final Deque<SocketChannel> idle = new ArrayDeque<>();
+        private final Set<Exchange> active = new HashSet<>();
+        private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        // the thread has exited on close or on an unexpected failure, the new exchanges are failed at once
+        private volatile boolean stopped = false;
+
+        Loop(int index) throws IOException {
+            selector = Selector.open();
+            Thread thread = new Thread(this, "nio-engine-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void start(Exchange exchange) {
+            started.add(exchange);
+            selector.wakeup();
+            // the exchange could be added after the loop has drained the queue on close or on its failure
+            if ((closed || stopped) && started.remove(exchange)) {
+                exchange.result.completeExceptionally(stoppedException());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!closed) {
+                    selector.select(TIMEOUT_CHECK);
+                    for (Exchange exchange = started.poll(); exchange != null; exchange = started.poll()) {
+                        active.add(exchange);
+                        begin(exchange);
+                    }
+                    Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        Exchange exchange = (Exchange) key.attachment();
+                        if (exchange != null && key.isValid()) {
+                            handle(exchange, key);
+                        }
+                    }
+                    checkTimeouts();
+                }
+            } catch (IOException | ClosedSelectorException e) {
+                // the exchanges in flight are failed below
+            } finally {
+                stopped = true;
+                IOException closedException = stoppedException();
+                for (Exchange exchange = started.poll(); exchange != null; exchange = started.poll()) {
+                    active.add(exchange);
+                }
+                new ArrayList<>(active).forEach(exchange -> fail(exchange, closedException));
+                idle.forEach(channel -> {
+                    try {
+                        channel.close();
+                    } catch (IOException e) {
+                        // the engine is closed anyway
+                    }
+                });
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    // the engine is closed anyway
+                }
+            }
+        }
+
+        private IOException stoppedException() {
+            return new IOException(closed ? "The engine is closed." : "The IO thread of the engine has failed.");
+        }
+
+        // starts the next request of the exchange by an idle connection or a new one
+        private void begin(Exchange exchange) {
+            if (templateBody != null) {
+                render(exchange);
+            }
+            Sample sample = exchange.sample;
+            sample.clear();
+            if (exchange.checksum != null) {
+                exchange.checksum.reset();
+            }
+            exchange.start = nanoTime();
+            exchange.deadline = exchange.start + timeout;
+            exchange.state = HEAD;
+            exchange.received = false;
+            exchange.headLength = 0;
+            exchange.request = null;
+            for (SocketChannel channel = idle.pollLast(); channel != null; channel = idle.pollLast()) {
+                SelectionKey key = channel.keyFor(selector);
+                if (key != null && key.isValid()) {
+                    key.attach(exchange);
+                    key.interestOps(SelectionKey.OP_WRITE);
+                    exchange.connection = new Connection(channel, key, true);
+                    return;
+                }
+            }
+            open(exchange);
+        }
+
+        // head, content length and body of the next request with the templated body
+        private void render(Exchange exchange) {
+            if (exchange.body == null) {
+                exchange.body = new Template.Output();
+                exchange.renderedRequest = new Template.Output();
+            }
+            Template.Output body = exchange.body;
+            Template.Output out = exchange.renderedRequest;
+            templateBody.render(body);
+            out.reset();
+            out.append(templateHead);
+            out.appendLong(body.length);
+            out.append(END_OF_HEAD);
+            out.append(body.bytes, body.length);
+            exchange.rendered = ByteBuffer.wrap(out.bytes, 0, out.length);
+        }
+
+        private void open(Exchange exchange) {
+            exchange.connection = null;
+            exchange.sample.namelookup = micros(exchange);
+            if (address.isUnresolved()) {
+                complete(exchange, Sample.CURLE_COULDNT_RESOLVE_HOST, false);
+                return;
+            }
+            SocketChannel channel = null;
+            try {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                boolean connected = channel.connect(address);
+                SelectionKey key = channel.register(selector,
+                        connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT, exchange);
+                exchange.connection = new Connection(channel, key, false);
+                if (connected) {
+                    exchange.sample.connect = micros(exchange);
+                }
+            } catch (IOException e) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException closeException) {
+                        e.addSuppressed(closeException);
+                    }
+                }
+                complete(exchange, Sample.CURLE_COULDNT_CONNECT, false);
+            }
+        }
+
+        private void handle(Exchange exchange, SelectionKey key) {
+            try {
+                if (key.isConnectable()) {
+                    try {
+                        exchange.connection.channel.finishConnect();
+                    } catch (IOException e) {
+                        complete(exchange, Sample.CURLE_COULDNT_CONNECT, false);
+                        return;
+                    }
+                    exchange.sample.connect = micros(exchange);
+                    key.interestOps(SelectionKey.OP_WRITE);
+                } else if (key.isWritable()) {
+                    write(exchange, key);
+                } else if (key.isReadable()) {
+                    read(exchange);
+                }
+            } catch (IOException e) {
+                failRequest(exchange);
+            } catch (RuntimeException e) {
+                fail(exchange, e);
+            }
+        }
+
+        private void write(Exchange exchange, SelectionKey key) throws IOException {
+            if (exchange.request == null) {
+                exchange.sample.pretransfer = micros(exchange);
+                exchange.request = exchange.rendered != null ? exchange.rendered.duplicate() : request.duplicate();
+            }
+            exchange.connection.channel.write(exchange.request);
+            if (!exchange.request.hasRemaining()) {
+                key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+
+        private void read(Exchange exchange) throws IOException {
+            buffer.clear();
+            int n = exchange.connection.channel.read(buffer);
+            if (n < 0) {
+                if (exchange.state == UNTIL_CLOSE) {
+                    complete(exchange, 0, false);
+                } else {
+                    failRequest(exchange);
+                }
+                return;
+            }
+            if (n > 0 && !exchange.received) {
+                exchange.received = true;
+                exchange.sample.starttransfer = micros(exchange);
+            }
+            buffer.flip();
+            if (parse(exchange, buffer)) {
+                complete(exchange, 0, exchange.keepAlive);
+            }
+        }
+
+        // the request is failed by the connection: the idle connection closed by the server is replaced by a new one
+        private void failRequest(Exchange exchange) {
+            if (exchange.connection != null && exchange.connection.reused && !exchange.received) {
+                exchange.connection.close();
+                exchange.request = null;
+                open(exchange);
+                return;
+            }
+            complete(exchange, exchange.received ? Sample.CURLE_RECV_ERROR : Sample.CURLE_GOT_NOTHING, false);
+        }
+
+        private void checkTimeouts() {
+            long now = nanoTime();
+            for (Exchange exchange : new ArrayList<>(active)) {
+                if (now - exchange.deadline >= 0) {
+                    complete(exchange, Sample.CURLE_OPERATION_TIMEDOUT, false);
+                }
+            }
+        }
+
+        // completes the current request, the connection is kept for the next requests if the response allows it
+        private void complete(Exchange exchange, int exitCode, boolean keepConnection) {
+            Sample sample = exchange.sample;
+            sample.exitCode = exitCode;
+            long total = nanoTime() - exchange.start;
+            sample.total = TimeUnit.NANOSECONDS.toMicros(total);
+            sample.speedDownload = total > 0 ? (long) (sample.sizeDownload * 1e9 / total) : 0;
+            if (exchange.checksum != null) {
+                sample.checksum = exchange.checksum.getValue();
+            }
+            Connection connection = exchange.connection;
+            exchange.connection = null;
+            if (connection != null) {
+                if (keepConnection) {
+                    connection.key.attach(null);
+                    connection.key.interestOps(0);
+                    idle.add(connection.channel);
+                } else {
+                    connection.close();
+                }
+            }
+            try {
+                if (exchange.log != null) {
+                    HttpClientEngine.writeOut(exchange.log, sample);
+                }
+                exchange.consumer.accept(sample);
+            } catch (IOException | RuntimeException e) {
+                fail(exchange, e);
+                return;
+            }
+            exchange.completed++;
+            if (exchange.completed < exchange.transfers) {
+                // the next request is started by the loop, since the failed requests are completed by begin
+                // at once and a long batch of them would recurse too deep. The exchange waits without a deadline
+                active.remove(exchange);
+                started.add(exchange);
+                selector.wakeup();
+                return;
+            }
+            active.remove(exchange);
+            try {
+                closeLog(exchange);
+                exchange.result.complete(true);
+            } catch (IOException e) {
+                exchange.result.completeExceptionally(e);
+            }
+        }
+
+        private void fail(Exchange exchange, Throwable failure) {
+            active.remove(exchange);
+            if (exchange.connection != null) {
+                exchange.connection.close();
+                exchange.connection = null;
+            }
+            try {
+                closeLog(exchange);
+            } catch (IOException e) {
+                failure.addSuppressed(e);
+            }
+            exchange.result.completeExceptionally(failure);
+        }
+    }
+
+    private static void closeLog(Exchange exchange) throws IOException {
+        if (exchange.log != null) {
+            exchange.log.close();
+        }
+    }
+
+    // time since the start of the current request in microseconds
+    private static long micros(Exchange exchange) {
+        return TimeUnit.NANOSECONDS.toMicros(nanoTime() - exchange.start);
+    }
+
+    // parses the response bytes, returns true when the response is completed
+    private boolean parse(Exchange exchange, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            switch (exchange.state) {
+                case HEAD:
+                    if (readHead(exchange, bytes)) {
+                        return true;
+                    }
+                    break;
+                case BODY:
+                case CHUNK_DATA:
+                case UNTIL_CLOSE:
+                    int n = exchange.state == UNTIL_CLOSE
+                            ? bytes.remaining() : (int) Math.min(exchange.remaining, bytes.remaining());
+                    body(exchange, bytes, n);
+                    exchange.remaining -= n;
+                    if (exchange.state == BODY && exchange.remaining == 0) {
+                        return true;
+                    }
+                    if (exchange.state == CHUNK_DATA && exchange.remaining == 0) {
+                        exchange.state = CHUNK_END;
+                    }
+                    break;
+                case CHUNK_SIZE:
+                    byte b = bytes.get();
+                    if (b == '\n') {
+                        exchange.chunkExtension = false;
+                        if (exchange.remaining == 0) {
+                            exchange.state = TRAILER;
+                            exchange.lineLength = 0;
+                        } else {
+                            exchange.state = CHUNK_DATA;
+                        }
+                    } else if (b == ';') {
+                        exchange.chunkExtension = true;
+                    } else if (!exchange.chunkExtension && Character.digit(b, 16) >= 0) {
+                        exchange.remaining = exchange.remaining * 16 + Character.digit(b, 16);
+                    }
+                    break;
+                case CHUNK_END:
+                    if (bytes.get() == '\n') {
+                        exchange.state = CHUNK_SIZE;
+                        exchange.remaining = 0;
+                    }
+                    break;
+                case TRAILER:
+                default:
+                    byte t = bytes.get();
+                    if (t == '\n') {
+                        if (exchange.lineLength == 0) {
+                            return true;
+                        }
+                        exchange.lineLength = 0;
+                    } else if (t != '\r') {
+                        exchange.lineLength++;
+                    }
+                    break;
+            }
+        }
+        return false;
+    }
+
+    // reads the status line and the headers till the empty line, returns true if the response has no body
+    private boolean readHead(Exchange exchange, ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            byte b = bytes.get();
+            if (exchange.headLength == exchange.head.length) {
+                if (exchange.headLength == MAX_HEAD_SIZE) {
+                    throw new IOException("Response headers are too long.");
+                }
+                exchange.head = Arrays.copyOf(exchange.head, Math.min(MAX_HEAD_SIZE, exchange.headLength * 2));
+            }
+            exchange.head[exchange.headLength++] = b;
+            if (b == '\n' && isHeadEnd(exchange.head, exchange.headLength)) {
+                return startBody(exchange);
+            }
+        }
+        return false;
+    }
+
+    // the head ends with an empty line, lines end with CRLF or LF
+    private static boolean isHeadEnd(byte[] head, int length) {
+        return length >= 2 && head[length - 2] == '\n'
+                || length >= 4 && head[length - 2] == '\r' && head[length - 3] == '\n';
+    }
+
+    // parses the head and chooses how the body is read, returns true if the response has no body
+    private boolean startBody(Exchange exchange) throws IOException {
+        String[] lines = new String(exchange.head, 0, exchange.headLength, StandardCharsets.ISO_8859_1).split("\r?\n");
+        String[] status = lines[0].split(" ", 3);
+        if (status.length < 2 || !status[0].startsWith("HTTP/")) {
+            throw new IOException("Response is not http.");
+        }
+        int code;
+        try {
+            code = Integer.parseInt(status[1]);
+        } catch (NumberFormatException e) {
+            throw new IOException("Response is not http.", e);
+        }
+        exchange.headLength = 0;
+        if (code >= 100 && code < 200) {
+            // interim response, the final one follows it
+            return false;
+        }
+        if (verbose && exchange.log != null) {
+            for (String line : lines) {
+                exchange.log.write(("< " + line + "\n").getBytes(StandardCharsets.ISO_8859_1));
+            }
+        }
+        exchange.sample.httpCode = code;
+
+        long contentLength = -1;
+        boolean chunked = false;
+        String connection = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon <= 0) {
+                continue;
+            }
+            String name = lines[i].substring(0, colon).trim();
+            String value = lines[i].substring(colon + 1).trim();
+            if ("Content-Length".equalsIgnoreCase(name)) {
+                try {
+                    contentLength = Long.parseLong(value);
+                } catch (NumberFormatException e) {
+                    throw new IOException("Content length is not a number.", e);
+                }
+            } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+                chunked = value.toLowerCase(Locale.ROOT).contains("chunked");
+            } else if ("Connection".equalsIgnoreCase(name)) {
+                connection = value.toLowerCase(Locale.ROOT);
+            }
+        }
+        exchange.keepAlive = status[0].equals("HTTP/1.0")
+                ? connection != null && connection.contains("keep-alive")
+                : connection == null || !connection.contains("close");
+
+        if (headRequest || code == 204 || code == 304) {
+            return true;
+        }
+        exchange.remaining = 0;
+        if (chunked) {
+            exchange.state = CHUNK_SIZE;
+            exchange.chunkExtension = false;
+            return false;
+        }
+        if (contentLength >= 0) {
+            exchange.state = BODY;
+            exchange.remaining = contentLength;
+            return contentLength == 0;
+        }
+        // the body ends when the server closes the connection
+        exchange.state = UNTIL_CLOSE;
+        exchange.keepAlive = false;
+        return false;
+    }
+
+    private static void body(Exchange exchange, ByteBuffer bytes, int n) throws IOException {
+        exchange.sample.sizeDownload += n;
+        if (exchange.checksum != null) {
+            exchange.checksum.update(bytes.array(), bytes.arrayOffset() + bytes.position(), n);
+        }
+        if (exchange.log != null) {
+            exchange.log.write(bytes.array(), bytes.arrayOffset() + bytes.position(), n);
+        }
+        bytes.position(bytes.position() + n);
+    }
+}
@@ -0,0 +1,191 @@
+package curltool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Tracks every curl process started by the run. The count of processes alive at once is bounded, a process
+ * that is not completed in time is killed, so its output is closed and the worker reading it is released.
+ * A worker waits for the exit of its process, so no process outlives its request, and the rest are killed
+ * when the supervisor is closed.
+ * Wall time of every process is recorded. CPU time of the processes is known on Linux only: it is the time
+ * of all the completed children of the JVM, so it is reported as a total and as a mean per process.
+ */
+class ProcessSupervisor implements AutoCloseable {
+
+    // curl is stopped by its own '--max-time', it is killed if it is still alive after this margin
+    static final long KILL_MARGIN = 500;
+    // clock ticks per second of the CPU times in /proc, it is 100 on all the common Linux platforms
+    private static final double CLOCK_TICKS_PER_MILLI = 0.1;
+    private static final String SELF_STAT = "/proc/self/stat";
+
+    private final Semaphore permits;
+    private final Set<Child> children = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService killer;
+    private final LongAdder started = new LongAdder();
+    private final LongAdder killed = new LongAdder();
+    private final AtomicInteger alive = new AtomicInteger();
+    private final AtomicInteger maxAlive = new AtomicInteger();
+    // wall times of the processes in microseconds
+    private final Histogram wallTimes;
+    private final long startCpuTicks;
+
+    ProcessSupervisor(int maxProcesses, Histogram layout) {
+        if (maxProcesses < 1) {
+            throw new IllegalArgumentException("Max processes should be positive.");
+        }
+        permits = new Semaphore(maxProcesses);
+        wallTimes = layout.copyLayout();
+        killer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "process-supervisor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        startCpuTicks = childrenCpuTicks();
+    }
+
+    /**
+     * A process started by the supervisor
+     */
+    static class Child {
+
+        final Process process;
+        private final long start;
+        private ScheduledFuture<?> kill;
+        private volatile boolean killed = false;
+        private volatile long wallTime = -1;
+
+        private Child(Process process, long start) {
+            this.process = process;
+            this.start = start;
+        }
+
+        // wall time in microseconds from the start till the exit, or till now if the exit is not waited for yet
+        long getWallTime() {
+            long time = wallTime;
+            return time >= 0 ? time : TimeUnit.NANOSECONDS.toMicros(nanoTime() - start);
+        }
+    }
+
+    /**
+     * Starts the process when the count of processes alive is less than the max, the process is killed
+     * if it is not completed in the timeout (in milliseconds) and the margin.
+     * <code>finish</code> should be called when the output of the process is read.
+     */
+    Child start(ProcessBuilder builder, long timeout) throws IOException, InterruptedException {
+        permits.acquire();
+        Child child;
+        // wall time includes the start of the process
+        long start = nanoTime();
+        try {
+            child = new Child(builder.start(), start);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+        children.add(child);
+        started.increment();
+        maxAlive.accumulateAndGet(alive.incrementAndGet(), Math::max);
+        child.kill = killer.schedule(() -> kill(child), timeout + KILL_MARGIN, TimeUnit.MILLISECONDS);
+        return child;
+    }
+
+    /**
+     * Waits for the exit of the process and releases its place. Returns false if the process has been killed.
+     * If the waiting thread is interrupted, the process is killed.
+     */
+    boolean finish(Child child) throws InterruptedException {
+        try {
+            child.process.waitFor();
+        } catch (InterruptedException e) {
+            kill(child);
+            throw e;
+        } finally {
+            child.kill.cancel(false);
+            child.wallTime = child.getWallTime();
+            synchronized (wallTimes) {
+                wallTimes.record(child.wallTime);
+            }
+            if (children.remove(child)) {
+                alive.decrementAndGet();
+                permits.release();
+            }
+        }
+        return !child.killed;
+    }
+
+    private void kill(Child child) {
+        synchronized (child) {
+            if (child.killed || !child.process.isAlive()) {
+                return;
+            }
+            child.killed = true;
+            killed.increment();
+            child.process.destroyForcibly();
+        }
+    }
+
+    long getStarted() {
+        return started.sum();
+    }
+
+    long getKilled() {
+        return killed.sum();
+    }
+
+    int getMaxAlive() {
+        return maxAlive.get();
+    }
+
+    // copy of the wall times of the completed processes
+    Histogram getWallTimes() {
+        Histogram copy = wallTimes.copyLayout();
+        synchronized (wallTimes) {
+            copy.add(wallTimes);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns CPU time in milliseconds of the processes completed since the start of the supervisor,
+     * or -1 if it is unknown
+     */
+    double getCpuTime() {
+        long ticks = childrenCpuTicks();
+        return ticks < 0 || startCpuTicks < 0 ? -1 : (ticks - startCpuTicks) / CLOCK_TICKS_PER_MILLI;
+    }
+
+    /**
+     * Kills the processes that are still alive
+     */
+    @Override
+    public void close() {
+        killer.shutdownNow();
+        children.forEach(this::kill);
+    }
+
+    // user and system time of the completed children of the JVM (cutime and cstime of /proc/self/stat)
+    private static long childrenCpuTicks() {
+        try {
+            String stat = new String(Files.readAllBytes(Paths.get(SELF_STAT)), "US-ASCII");
+            // the command name in brackets could have spaces, fields are counted after it
+            String[] fields = stat.substring(stat.lastIndexOf(')') + 2).trim().split(" ");
+            // cutime and cstime are the 16th and the 17th fields, the state is the 3rd one
+            return Long.parseLong(fields[13]) + Long.parseLong(fields[14]);
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,681 @@
+package curltool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static curltool.ReportRenderer.Format.NUMBER;
+
+/**
+ * Result of the run: the statistics of its phases, endpoints and schedule.
+ * Times are in milliseconds with microsecond precision.
+ * It is returned by <code>CurlCmd::getReport</code> and could be rendered by <code>ReportRenderer</code>
+ * to text, json or csv.
+ */
+public class Report {
+
+    // percentiles that are counted for every distribution
+    static final double[] PERCENTILES = {50, 90, 99, 99.9};
+    // times are recorded in microseconds and reported in milliseconds
+    private static final double MICROS_IN_MILLI = 1000;
+
+    private final Summary first;
+    private final Summary warmup;
+    private final Summary then;
+    private final long cancelled;
+    private final Schedule schedule;
+    private final List<Summary> endpoints;
+    private final Comparison comparison;
+    private final Ramp ramp;
+    private final Estimate estimate;
+    private final Processes processes;
+
+    Report(Summary first, Summary warmup, Summary then, long cancelled, Schedule schedule, List<Summary> endpoints,
+           Comparison comparison, Ramp ramp, Estimate estimate, Processes processes) {
+        this.first = first;
+        this.warmup = warmup;
+        this.then = then;
+        this.cancelled = cancelled;
+        this.schedule = schedule;
+        this.endpoints = Collections.unmodifiableList(endpoints);
+        this.comparison = comparison;
+        this.ramp = ramp;
+        this.estimate = estimate;
+        this.processes = processes;
+    }
+
+    /**
+     * Statistics of the first (cold) request
+     */
+    public Summary getFirst() {
+        return first;
+    }
+
+    /**
+     * Statistics of the warm-up requests after the first one, or null if there were no such requests
+     */
+    public Summary getWarmup() {
+        return warmup;
+    }
+
+    /**
+     * Statistics of all the steady state requests
+     */
+    public Summary getThen() {
+        return then;
+    }
+
+    /**
+     * Count of requests in flight that were not completed in time after the deadline
+     */
+    public long getCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Statistics of the schedule, or null if the requests were not sent by the rate schedule
+     */
+    public Schedule getSchedule() {
+        return schedule;
+    }
+
+    /**
+     * Steady state statistics of every endpoint of the scenario, empty if there is a single endpoint
+     */
+    public List<Summary> getEndpoints() {
+        return endpoints;
+    }
+
+    /**
+     * Comparison of the steady state total times with the baseline, or null if there is no baseline
+     */
+    public Comparison getComparison() {
+        return comparison;
+    }
+
+    /**
+     * Steps of the capacity search, or null if the load was not ramped
+     */
+    public Ramp getRamp() {
+        return ramp;
+    }
+
+    /**
+     * Confidence interval of the target latency metric, or null if the run was not stopped by its convergence
+     */
+    public Estimate getEstimate() {
+        return estimate;
+    }
+
+    /**
+     * Statistics of the curl processes, or null if the requests were not executed by curl processes
+     */
+    public Processes getProcesses() {
+        return processes;
+    }
+
+    /**
+     * Statistics of a group of requests
+     */
+    public static class Summary {
+
+        private final String name;
+        private final long successful;
+        private final long errors;
+        private final double requestsPerSecond;
+        private final Map<Integer, Long> httpCodes = new LinkedHashMap<>();
+        private final Map<Integer, Long> exitCodes = new LinkedHashMap<>();
+        private final Distribution total;
+        private final Distribution calc;
+        private final Distribution dns;
+        private final Distribution tcp;
+        private final Distribution tls;
+        private final Distribution redirect;
+        private final Distribution transfer;
+        private final long downloaded;
+        private final Distribution speed;
+
+        // wall time is used to count the throughput, it is unknown if it isn't positive
+        Summary(String name, Statistics statistics, long wallNanos) {
+            this.name = name;
+            successful = statistics.getCount();
+            errors = statistics.getErrors();
+            requestsPerSecond = wallNanos > 0 ? (successful + errors) * 1e9 / wallNanos : Double.NaN;
+            statistics.forEachHttpCode(code -> httpCodes.put(code, statistics.getHttpCodeCount(code)));
+            statistics.forEachExitCode(code -> exitCodes.put(code, statistics.getExitCodeCount(code)));
+            total = new Distribution(statistics.getTotal(), MICROS_IN_MILLI);
+            calc = new Distribution(statistics.getCalc(), MICROS_IN_MILLI);
+            dns = new Distribution(statistics.getDns(), MICROS_IN_MILLI);
+            tcp = new Distribution(statistics.getTcp(), MICROS_IN_MILLI);
+            tls = new Distribution(statistics.getTls(), MICROS_IN_MILLI);
+            redirect = new Distribution(statistics.getRedirect(), MICROS_IN_MILLI);
+            transfer = new Distribution(statistics.getTransfer(), MICROS_IN_MILLI);
+            downloaded = statistics.getDownloaded();
+            speed = new Distribution(statistics.getSpeed(), 1);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        // count of all the requests
+        public long getRequests() {
+            return successful + errors;
+        }
+
+        public long getSuccessful() {
+            return successful;
+        }
+
+        // count of requests failed with non-zero curl exit code
+        public long getErrors() {
+            return errors;
+        }
+
+        // NaN if the wall time of the requests is unknown
+        public double getRequestsPerSecond() {
+            return requestsPerSecond;
+        }
+
+        // count of successful requests by http code
+        public Map<Integer, Long> getHttpCodes() {
+            return Collections.unmodifiableMap(httpCodes);
+        }
+
+        // count of failed requests by curl exit code
+        public Map<Integer, Long> getExitCodes() {
+            return Collections.unmodifiableMap(exitCodes);
+        }
+
+        public Distribution getTotal() {
+            return total;
+        }
+
+        // total time without the connection and the redirects
+        public Distribution getCalc() {
+            return calc;
+        }
+
+        public Distribution getDns() {
+            return dns;
+        }
+
+        public Distribution getTcp() {
+            return tcp;
+        }
+
+        public Distribution getTls() {
+            return tls;
+        }
+
+        public Distribution getRedirect() {
+            return redirect;
+        }
+
+        public Distribution getTransfer() {
+            return transfer;
+        }
+
+        // total count of downloaded bytes
+        public long getDownloaded() {
+            return downloaded;
+        }
+
+        // download speed in bytes per second
+        public Distribution getSpeed() {
+            return speed;
+        }
+    }
+
+    /**
+     * Statistics of the open loop: delays of the sends and the latencies counted from the scheduled send time
+     */
+    public static class Schedule {
+
+        private final double rate;
+        private final Distribution sendDelay;
+        private final Distribution corrected;
+        private final double lateThreshold;
+        private final long late;
+
+        // late threshold is in microseconds like the recorded times
+        Schedule(double rate, Statistics statistics, long lateThreshold) {
+            this.rate = rate;
+            sendDelay = new Distribution(statistics.getSendDelay(), MICROS_IN_MILLI);
+            corrected = new Distribution(statistics.getCorrected(), MICROS_IN_MILLI);
+            this.lateThreshold = lateThreshold / MICROS_IN_MILLI;
+            late = statistics.getSendDelay().getCountAbove(lateThreshold);
+        }
+
+        // target rate of requests per second
+        public double getRate() {
+            return rate;
+        }
+
+        public Distribution getSendDelay() {
+            return sendDelay;
+        }
+
+        // total time counted from the scheduled send time
+        public Distribution getCorrected() {
+            return corrected;
+        }
+
+        // requests sent later than this are counted as late
+        public double getLateThreshold() {
+            return lateThreshold;
+        }
+
+        // count of requests that were sent late, so the client couldn't keep up with the rate
+        public long getLate() {
+            return late;
+        }
+    }
+
+    /**
+     * Comparison of the total times of the successful steady state requests with the baseline run.
+     * It is a regression if the times are significantly slower by the Mann-Whitney U test and any of the gated
+     * percentiles is slower than the baseline by more than the allowed percent.
+     */
+    public static class Comparison {
+
+        // significance level of the test
+        static final double SIGNIFICANCE = 0.05;
+        // the higher percentiles are too noisy to fail the run
+        static final double[] GATED_PERCENTILES = {50, 90, 99};
+
+        private final Distribution baseline;
+        private final Map<Double, Double> changes = new LinkedHashMap<>();
+        private final double pValue;
+        private final double maxRegression;
+        private final List<Double> regressed = new ArrayList<>();
+
+        // allowed regression is in percents
+        Comparison(Histogram baseline, Histogram current, double maxRegression) {
+            this.baseline = new Distribution(baseline, MICROS_IN_MILLI);
+            this.maxRegression = maxRegression;
+            pValue = Baseline.slowerPValue(baseline, current);
+            for (double percentile : PERCENTILES) {
+                long was = baseline.getValueAtPercentile(percentile);
+                long is = current.getValueAtPercentile(percentile);
+                changes.put(percentile, was > 0 ? (is - was) * 100.0 / was : is > 0 ? Double.POSITIVE_INFINITY : 0);
+            }
+            if (pValue < SIGNIFICANCE) {
+                for (double percentile : GATED_PERCENTILES) {
+                    if (changes.get(percentile) > maxRegression) {
+                        regressed.add(percentile);
+                    }
+                }
+            }
+        }
+
+        // total times of the baseline run
+        public Distribution getBaseline() {
+            return baseline;
+        }
+
+        // change of the value in percents by percentile, positive if the current run is slower
+        public Map<Double, Double> getChanges() {
+            return Collections.unmodifiableMap(changes);
+        }
+
+        // p-value of the hypothesis that the current times are not slower, NaN if any run has no successful requests
+        public double getPValue() {
+            return pValue;
+        }
+
+        public double getSignificance() {
+            return SIGNIFICANCE;
+        }
+
+        // allowed slowdown of the gated percentiles in percents
+        public double getMaxRegression() {
+            return maxRegression;
+        }
+
+        // percentiles that are slower by more than allowed, empty if the slowdown is not significant
+        public List<Double> getRegressed() {
+            return Collections.unmodifiableList(regressed);
+        }
+
+        public boolean isRegression() {
+            return !regressed.isEmpty();
+        }
+    }
+
+    /**
+     * Capacity search: steps of the increasing load and the knee - the last step that met the SLO
+     */
+    public static class Ramp {
+
+        private final String rampBy;
+        private final double sloLatency;
+        private final double sloErrors;
+        private final List<Step> steps;
+
+        // SLO latency is in milliseconds
+        Ramp(String rampBy, long sloLatency, double sloErrors, List<Step> steps) {
+            this.rampBy = rampBy;
+            this.sloLatency = sloLatency;
+            this.sloErrors = sloErrors;
+            this.steps = Collections.unmodifiableList(new ArrayList<>(steps));
+        }
+
+        // rate or concurrency
+        public String getRampBy() {
+            return rampBy;
+        }
+
+        // max p99 latency of a step
+        public double getSloLatency() {
+            return sloLatency;
+        }
+
+        // max percent of errors of a step
+        public double getSloErrors() {
+            return sloErrors;
+        }
+
+        public List<Step> getSteps() {
+            return steps;
+        }
+
+        /**
+         * The last step that met the SLO, or null if the first step breached it
+         */
+        public Step getKnee() {
+            Step knee = null;
+            for (Step step : steps) {
+                if (!step.isPassed()) {
+                    break;
+                }
+                knee = step;
+            }
+            return knee;
+        }
+
+        // false if the SLO was met by all the steps till the max load
+        public boolean isBreached() {
+            return !steps.isEmpty() && !steps.get(steps.size() - 1).isPassed();
+        }
+    }
+
+    /**
+     * Statistics of a ramp step and whether it met the SLO. The latency of the open loop is counted
+     * from the scheduled send time, cancelled requests are counted as errors.
+     */
+    public static class Step {
+
+        // percentile of the latency that is checked by the SLO
+        static final double SLO_PERCENTILE = 99;
+
+        private final double load;
+        private final Summary summary;
+        private final Distribution latency;
+        private final long cancelled;
+        private final double errorsPercent;
+        private final boolean passed;
+
+        // SLO latency is in milliseconds
+        Step(double load, Statistics statistics, long wallNanos, long cancelled, boolean scheduled,
+             long sloLatency, double sloErrors) {
+            this.load = load;
+            summary = new Summary("step " + NUMBER.format(load), statistics, wallNanos);
+            latency = new Distribution(scheduled ? statistics.getCorrected() : statistics.getTotal(), MICROS_IN_MILLI);
+            this.cancelled = cancelled;
+            long requests = summary.getRequests() + cancelled;
+            errorsPercent = requests > 0 ? (summary.getErrors() + cancelled) * 100.0 / requests : 100;
+            passed = latency.getCount() > 0 && latency.getPercentile(SLO_PERCENTILE) <= sloLatency
+                    && errorsPercent <= sloErrors;
+        }
+
+        // rate or concurrency of the step
+        public double getLoad() {
+            return load;
+        }
+
+        public Summary getSummary() {
+            return summary;
+        }
+
+        // latency that is checked by the SLO
+        public Distribution getLatency() {
+            return latency;
+        }
+
+        // count of requests in flight that were not completed in time after the step
+        public long getCancelled() {
+            return cancelled;
+        }
+
+        public double getErrorsPercent() {
+            return errorsPercent;
+        }
+
+        public boolean isPassed() {
+            return passed;
+        }
+    }
+
+    /**
+     * Confidence interval of the mean or a percentile of the latency. The interval of the mean is counted by
+     * the normal approximation, the interval of a percentile is counted by the order statistics, so it doesn't
+     * depend on the shape of the distribution. The estimate is converged if the half-width of the interval
+     * relative to the estimate is not more than the target error.
+     */
+    public static class Estimate {
+
+        // the interval is not counted by less values
+        static final long MIN_COUNT = 30;
+
+        private final double percentile;
+        private final double confidence;
+        private final double targetError;
+        private final long count;
+        private final double value;
+        private final double lower;
+        private final double upper;
+        private final double relativeError;
+
+        // percentile is NaN for the mean, confidence and target error are in percents
+        Estimate(Histogram latency, double percentile, double confidence, double targetError) {
+            this.percentile = percentile;
+            this.confidence = confidence;
+            this.targetError = targetError;
+            count = latency.getTotalCount();
+            double z = normalQuantile(0.5 + confidence / 200);
+            if (count < MIN_COUNT) {
+                value = count > 0 ? estimate(latency, percentile) : Double.NaN;
+                lower = Double.NaN;
+                upper = Double.NaN;
+            } else if (Double.isNaN(percentile)) {
+                value = latency.getMean();
+                double halfWidth = z * latency.getStdDeviation() / Math.sqrt(count);
+                lower = value - halfWidth;
+                upper = value + halfWidth;
+            } else {
+                value = latency.getValueAtPercentile(percentile);
+                // ranks of the interval bounds around the rank of the percentile
+                double q = percentile / 100;
+                double deviation = z * Math.sqrt(count * q * (1 - q));
+                long lowerRank = (long) Math.floor(count * q - deviation);
+                long upperRank = (long) Math.ceil(count * q + deviation) + 1;
+                lower = lowerRank >= 1 ? latency.getValueAtPercentile(lowerRank * 100.0 / count) : Double.NaN;
+                upper = upperRank <= count ? latency.getValueAtPercentile(upperRank * 100.0 / count) : Double.NaN;
+            }
+            relativeError = value > 0 ? Math.max(value - lower, upper - value) * 100 / value : Double.NaN;
+        }
+
+        private static double estimate(Histogram latency, double percentile) {
+            return Double.isNaN(percentile) ? latency.getMean() : latency.getValueAtPercentile(percentile);
+        }
+
+        // value that the given share of the standard normal values are less than, it is found by bisection
+        private static double normalQuantile(double p) {
+            double low = -10;
+            double high = 10;
+            for (int i = 0; i < 64; i++) {
+                double middle = (low + high) / 2;
+                if (1 - Baseline.upperTail(middle) < p) {
+                    low = middle;
+                } else {
+                    high = middle;
+                }
+            }
+            return (low + high) / 2;
+        }
+
+        // 'mean' or percentile like 'p99'
+        public String getMetric() {
+            return Double.isNaN(percentile) ? "mean" : "p" + NUMBER.format(percentile);
+        }
+
+        // confidence level in percents
+        public double getConfidence() {
+            return confidence;
+        }
+
+        // target relative error in percents
+        public double getTargetError() {
+            return targetError;
+        }
+
+        // count of the values the estimate is counted by
+        public long getCount() {
+            return count;
+        }
+
+        public double getValue() {
+            return value / MICROS_IN_MILLI;
+        }
+
+        // NaN if there are too few values
+        public double getLower() {
+            return lower / MICROS_IN_MILLI;
+        }
+
+        // NaN if there are too few values
+        public double getUpper() {
+            return upper / MICROS_IN_MILLI;
+        }
+
+        // half-width of the interval relative to the estimate in percents, NaN if the interval is unknown
+        public double getRelativeError() {
+            return relativeError;
+        }
+
+        public boolean isConverged() {
+            return relativeError <= targetError;
+        }
+    }
+
+    /**
+     * Statistics of the curl processes of the run: how many were started, killed on timeout and alive at once,
+     * their wall times and their CPU time. CPU time is NaN if it is unknown on the platform.
+     */
+    public static class Processes {
+
+        private final long started;
+        private final long killed;
+        private final int maxAlive;
+        private final Distribution wallTime;
+        private final double cpuTime;
+
+        // wall times are in microseconds like the recorded times, CPU time is in milliseconds or negative if unknown
+        Processes(long started, long killed, int maxAlive, Histogram wallTimes, double cpuTime) {
+            this.started = started;
+            this.killed = killed;
+            this.maxAlive = maxAlive;
+            wallTime = new Distribution(wallTimes, MICROS_IN_MILLI);
+            this.cpuTime = cpuTime >= 0 ? cpuTime : Double.NaN;
+        }
+
+        public long getStarted() {
+            return started;
+        }
+
+        // count of processes that were not completed in the timeout and were killed
+        public long getKilled() {
+            return killed;
+        }
+
+        // the highest count of processes that were alive at once
+        public int getMaxAlive() {
+            return maxAlive;
+        }
+
+        // time from the start till the exit of every process
+        public Distribution getWallTime() {
+            return wallTime;
+        }
+
+        // user and system CPU time of all the processes
+        public double getCpuTime() {
+            return cpuTime;
+        }
+
+        public double getCpuTimePerProcess() {
+            return started > 0 ? cpuTime / started : Double.NaN;
+        }
+    }
+
+    /**
+     * Distribution of values: min, max, mean, standard deviation and percentiles
+     */
+    public static class Distribution {
+
+        private final long count;
+        private final double min;
+        private final double max;
+        private final double mean;
+        private final double stdDeviation;
+        private final Map<Double, Double> percentiles = new LinkedHashMap<>();
+
+        // recorded values are divided by the unit
+        Distribution(Histogram histogram, double unit) {
+            count = histogram.getTotalCount();
+            min = histogram.getMin() / unit;
+            max = histogram.getMax() / unit;
+            mean = histogram.getMean() / unit;
+            stdDeviation = histogram.getStdDeviation() / unit;
+            for (double percentile : PERCENTILES) {
+                percentiles.put(percentile, histogram.getValueAtPercentile(percentile) / unit);
+            }
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public double getStdDeviation() {
+            return stdDeviation;
+        }
+
+        // value by percentile, in the order of the percentiles
+        public Map<Double, Double> getPercentiles() {
+            return Collections.unmodifiableMap(percentiles);
+        }
+
+        public double getPercentile(double percentile) {
+            Double value = percentiles.get(percentile);
+            if (value == null) {
+                throw new IllegalArgumentException("Percentile " + percentile + " is not counted.");
+            }
+            return value;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package curltool;
+
+import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+
+/**
+ * Renders the report of the run to a string of some format
+ */
+public interface ReportRenderer {
+
+    String render(Report report);
+
+    /**
+     * Returns the renderer of the given format
+     */
+    static ReportRenderer of(Format format) {
+        switch (format) {
+            case JSON:
+                return new JsonReportRenderer();
+            case CSV:
+                return new CsvReportRenderer();
+            case TEXT:
+            default:
+                return new TextReportRenderer();
+        }
+    }
+
+    /**
+     * Supported formats
+     */
+    enum Format {
+        // human readable text
+        TEXT,
+        // single json object
+        JSON,
+        // 'scope,metric,value' lines
+        CSV;
+
+        // numbers of machine readable formats don't depend on the locale
+        static final DecimalFormat NUMBER = new DecimalFormat("0.###", DecimalFormatSymbols.getInstance(Locale.ROOT));
+    }
+}
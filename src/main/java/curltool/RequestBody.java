@@ -0,0 +1,230 @@
+package curltool;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Body of the requests of the in-process engines built from curl-like arguments.
+ * It is prepared once: a static body is sent by every request as is. If the templates are on, a body with
+ * placeholders (see <code>Template</code>) is compiled once and is rendered for every request with the next
+ * sequence number, otherwise the args are sent exactly as they are.
+ */
+class RequestBody {
+
+    private static final String CRLF = "\r\n";
+
+    // bytes of the static body, or null if it is rendered for every request
+    final byte[] content;
+    final String contentType;
+    private final Template[] parts;
+    private final AtomicLong sequence = new AtomicLong();
+
+    private RequestBody(List<Template> parts, String contentType) {
+        this.parts = parts.toArray(new Template[0]);
+        this.contentType = contentType;
+        content = isTemplate() ? null : concat(this.parts);
+    }
+
+    /**
+     * Returns multipart body of the form args or urlencoded body of the body args, or null if there are no args.
+     * The placeholders are substituted only if the template is true, the feed is needed only if the args
+     * or the files of the body args have its columns
+     */
+    static RequestBody of(Set<String> formArgs, Set<String> bodyArgs, boolean template, Feed feed) throws IOException {
+        if (!formArgs.isEmpty()) {
+            return multipart(formArgs, template, feed);
+        }
+        return bodyArgs.isEmpty() ? null : urlencoded(bodyArgs, template, feed);
+    }
+
+    boolean isTemplate() {
+        for (Template part : parts) {
+            if (!part.isStatic()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Renders the body of the next request to the output, it could be called by any thread
+     */
+    void render(Template.Output out) {
+        long next = sequence.incrementAndGet();
+        out.reset();
+        for (Template part : parts) {
+            part.render(next, out);
+        }
+    }
+
+    private static byte[] concat(Template[] parts) {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        for (Template part : parts) {
+            byte[] literal = part.literal();
+            content.write(literal, 0, literal.length);
+        }
+        return content.toByteArray();
+    }
+
+    // the same as curl '-d' arguments: joined with '&', '@' prefix means the data is read from the file
+    private static RequestBody urlencoded(Set<String> bodyArgs, boolean template, Feed feed) throws IOException {
+        List<Template> parts = new ArrayList<>();
+        for (String arg : bodyArgs) {
+            if (!parts.isEmpty()) {
+                parts.add(Template.literal(new byte[]{'&'}));
+            }
+            parts.add(compile(bodyArg(arg), template, feed));
+        }
+        return new RequestBody(parts, "application/x-www-form-urlencoded");
+    }
+
+    // text of the '-d' argument, the file is read without line breaks like curl does
+    private static String bodyArg(String arg) throws IOException {
+        return arg.startsWith("@")
+                ? new String(Files.readAllBytes(Paths.get(arg.substring(1))), StandardCharsets.UTF_8)
+                .replace("\r", "").replace("\n", "")
+                : arg;
+    }
+
+    // text as is if the templates are off
+    private static Template compile(String text, boolean template, Feed feed) {
+        return template ? Template.compile(text, feed) : Template.literal(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // the same as curl '-F' arguments: 'name=value' or 'name=@file' to upload the file, only the values are templates
+    private static RequestBody multipart(Set<String> formArgs, boolean template, Feed feed) throws IOException {
+        String boundary = "------------------------" + Long.toHexString(nanoTime());
+        List<Template> parts = new ArrayList<>();
+        ByteArrayOutputStream multipart = new ByteArrayOutputStream();
+        for (String arg : formArgs) {
+            int eq = arg.indexOf('=');
+            String name = eq < 0 ? arg : arg.substring(0, eq);
+            String value = eq < 0 ? "" : arg.substring(eq + 1);
+
+            StringBuilder part = new StringBuilder("--").append(boundary).append(CRLF)
+                    .append("Content-Disposition: form-data; name=\"").append(name).append('"');
+            if (value.startsWith("@")) {
+                part.append("; filename=\"").append(Paths.get(value.substring(1)).getFileName()).append('"').append(CRLF)
+                        .append("Content-Type: application/octet-stream");
+            }
+            part.append(CRLF).append(CRLF);
+
+            multipart.write(part.toString().getBytes(StandardCharsets.UTF_8));
+            if (value.startsWith("@")) {
+                multipart.write(Files.readAllBytes(Paths.get(value.substring(1))));
+            } else {
+                Template compiled = compile(value, template, feed);
+                if (compiled.isStatic()) {
+                    multipart.write(compiled.literal());
+                } else {
+                    // static bytes before the value are a part of their own
+                    parts.add(Template.literal(multipart.toByteArray()));
+                    parts.add(compiled);
+                    multipart.reset();
+                }
+            }
+            multipart.write(CRLF.getBytes(StandardCharsets.UTF_8));
+        }
+        multipart.write(("--" + boundary + "--" + CRLF).getBytes(StandardCharsets.UTF_8));
+        parts.add(Template.literal(multipart.toByteArray()));
+        return new RequestBody(parts, "multipart/form-data; boundary=" + boundary);
+    }
+
+    /**
+     * Compiles the form and body args of a curl process: static args are passed to curl as they are, so curl reads
+     * '@file' by itself. If the templates are on, the args with placeholders (in the files too) are rendered
+     * for every transfer, otherwise the args are not parsed and the files are not read
+     */
+    static CurlArgs curlArgs(Set<String> formArgs, Set<String> bodyArgs, boolean template, Feed feed)
+            throws IOException {
+        List<String> names = new ArrayList<>();
+        List<String> fields = new ArrayList<>();
+        List<Template> values = new ArrayList<>();
+        for (String arg : formArgs) {
+            int eq = arg.indexOf('=');
+            // uploaded files are not templates, only the values of the fields are
+            boolean file = eq >= 0 && arg.startsWith("@", eq + 1);
+            Template value = template && eq >= 0 && !file ? Template.compile(arg.substring(eq + 1), feed) : null;
+            boolean rendered = value != null && !value.isStatic();
+            names.add("-F");
+            fields.add(rendered ? arg.substring(0, eq) : null);
+            values.add(rendered ? value : Template.literal(arg.getBytes(StandardCharsets.UTF_8)));
+        }
+        for (String arg : bodyArgs) {
+            Template compiled = template ? Template.compile(bodyArg(arg), feed) : null;
+            boolean rendered = compiled != null && !compiled.isStatic();
+            names.add(rendered ? "--data-binary" : "-d");
+            fields.add(null);
+            values.add(rendered ? compiled : Template.literal(arg.getBytes(StandardCharsets.UTF_8)));
+        }
+        return new CurlArgs(names.toArray(new String[0]), fields.toArray(new String[0]),
+                values.toArray(new Template[0]));
+    }
+
+    /**
+     * Form and body args of the curl transfers. A rendered value is written to a file of its own, so the command
+     * line has only its path and doesn't grow with the bodies and the count of transfers of the process
+     */
+    static class CurlArgs {
+
+        private final String[] names;
+        // names of the form fields whose values are rendered, or null
+        private final String[] fields;
+        private final Template[] values;
+        private final boolean template;
+        private final AtomicLong sequence = new AtomicLong();
+
+        private CurlArgs(String[] names, String[] fields, Template[] values) {
+            this.names = names;
+            this.fields = fields;
+            this.values = values;
+            template = Arrays.stream(values).anyMatch(v -> !v.isStatic());
+        }
+
+        // true if every transfer has its own args
+        boolean isTemplate() {
+            return template;
+        }
+
+        /**
+         * Adds the args of the next transfer, the files of its rendered values are added to the list
+         */
+        void add(Stream.Builder<String> args, List<Path> bodyFiles) throws IOException {
+            long next = template ? sequence.incrementAndGet() : 0;
+            Template.Output out = null;
+            for (int i = 0; i < names.length; i++) {
+                args.accept(names[i]);
+                if (values[i].isStatic()) {
+                    String value = new String(values[i].literal(), StandardCharsets.UTF_8);
+                    args.accept("-F".equals(names[i]) ? "'" + value + "'" : value);
+                    continue;
+                }
+                if (out == null) {
+                    out = new Template.Output();
+                }
+                out.reset();
+                values[i].render(next, out);
+                Path file = Files.createTempFile("curl-tool-body", null);
+                bodyFiles.add(file);
+                try (OutputStream stream = Files.newOutputStream(file)) {
+                    stream.write(out.bytes, 0, out.length);
+                }
+                // curl reads the field value from the file after '<' and the body after '@' as they are
+                args.accept(fields[i] != null ? fields[i] + "=<" + file : "@" + file);
+            }
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package curltool;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.function.Consumer;
+
+/**
+ * Executes a single http request configured by <code>CurlCmd</code> settings.
+ * Every engine passes the result of the request to the consumer as soon as it is known,
+ * so the statistics is counted the same way for all the engines.
+ * Engines are shared between workers and should be thread safe.
+ */
+interface RequestEngine extends AutoCloseable {
+
+    /**
+     * Executes the request the given count of times and passes every result to the consumer.
+     * If the log file is not null, the responses and the curl write-out are written to it.
+     * Returns false if the requests have been timeouted.
+     */
+    boolean execute(int transfers, File logFile, Consumer<Sample> consumer) throws InterruptedException, IOException;
+
+    /**
+     * Releases the resources of the engine when the run is completed
+     */
+    @Override
+    default void close() {
+    }
+
+    /**
+     * Supported engines
+     */
+    enum Type {
+        // forks a curl process for every request
+        CURL,
+        // executes requests in-process reusing JVM http connections
+        HTTP,
+        // executes requests in-process by a few threads multiplexing non-blocking keep-alive connections
+        NIO
+    }
+}
@@ -0,0 +1,81 @@
+package curltool;
+
+/**
+ * Result of a single request, times are in microseconds since the request start (like curl write-out times).
+ * Engines reuse the same instance for all the requests of a call, so consumers should copy the values they need.
+ */
+class Sample {
+
+    // curl exit codes that in-process engines set when the request fails
+    static final int CURLE_COULDNT_RESOLVE_HOST = 6;
+    static final int CURLE_COULDNT_CONNECT = 7;
+    // curl exit code of the response with an unexpected http code (like curl with '--fail')
+    static final int CURLE_HTTP_RETURNED_ERROR = 22;
+    // curl exit code of the request which is not completed in time
+    static final int CURLE_OPERATION_TIMEDOUT = 28;
+    // the connection is closed without any response
+    static final int CURLE_GOT_NOTHING = 52;
+    static final int CURLE_RECV_ERROR = 56;
+    // exit code of the response with an unexpected body checksum, it is outside of curl exit codes
+    static final int BODY_MISMATCH = 122;
+
+    int exitCode;
+    int httpCode;
+    long namelookup;
+    long connect;
+    long appconnect;
+    long redirect;
+    long pretransfer;
+    long starttransfer;
+    long total;
+    // bytes
+    long sizeDownload;
+    // bytes per second
+    long speedDownload;
+    // CRC32 of the response body, it is counted only if the engine is asked to
+    long checksum;
+
+    // the difference between the time when the first response byte is received and the time when the request is about to be sending
+    long calc() {
+        return starttransfer - pretransfer;
+    }
+
+    // DNS lookup time
+    long dns() {
+        return namelookup;
+    }
+
+    // TCP connection time
+    long tcp() {
+        return Math.max(0, connect - namelookup);
+    }
+
+    // SSL handshake time, appconnect is 0 if there is no handshake
+    long tls() {
+        return appconnect > 0 ? Math.max(0, appconnect - connect) : 0;
+    }
+
+    // time to receive the response after its first byte
+    long transfer() {
+        return Math.max(0, total - starttransfer);
+    }
+
+    boolean isError() {
+        return exitCode != 0;
+    }
+
+    void clear() {
+        exitCode = 0;
+        httpCode = 0;
+        namelookup = 0;
+        connect = 0;
+        appconnect = 0;
+        redirect = 0;
+        pretransfer = 0;
+        starttransfer = 0;
+        total = 0;
+        sizeDownload = 0;
+        speedDownload = 0;
+        checksum = 0;
+    }
+}
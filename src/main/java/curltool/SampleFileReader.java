@@ -0,0 +1,159 @@
+package curltool;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.StringJoiner;
+import java.util.function.Consumer;
+
+import static curltool.CurlCmd.*;
+import static java.lang.String.format;
+
+/**
+ * Reads the samples written by <code>SampleRecorder</code> and converts them to CSV or JSON, times are in microseconds.
+ * The file of a run that hasn't been completed is read till the first empty record.
+ */
+class SampleFileReader {
+
+    private static final String[] COLUMNS = {"timestamp_ns", "phase", "endpoint", EXIT_CODE, HTTP_CODE,
+            TIME_NAMELOOKUP, TIME_CONNECT, TIME_APPCONNECT, TIME_REDIRECT, TIME_PRETRANSFER, TIME_STARTTRANSFER,
+            TIME_TOTAL, SIZE_DOWNLOAD, SPEED_DOWNLOAD, "send_delay"};
+    private static final String[] PHASES = {"", "first", "warmup", "steady"};
+
+    private final Path file;
+    private final int precision;
+    private final double rate;
+    // count of records written to the header when the recorder was closed, 0 if it wasn't
+    private final long count;
+
+    SampleFileReader(Path file) throws IOException {
+        this.file = file;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != SampleRecorder.MAGIC) {
+                throw new IOException(format("%s is not a samples file.", file));
+            }
+            int version = in.readInt();
+            int recordSize = in.readInt();
+            if (version != SampleRecorder.VERSION || recordSize != SampleRecorder.RECORD_SIZE) {
+                throw new IOException(format("Version %d of the samples file is not supported.", version));
+            }
+            precision = in.readInt();
+            rate = in.readDouble();
+            count = in.readLong();
+        } catch (EOFException e) {
+            throw new IOException(format("%s is not a samples file.", file), e);
+        }
+    }
+
+    int getPrecision() {
+        return precision;
+    }
+
+    double getRate() {
+        return rate;
+    }
+
+    /**
+     * Passes every record to the consumer, the record is reused
+     */
+    void read(Consumer<Record> consumer) throws IOException {
+        Record record = new Record();
+        try (InputStream input = Files.newInputStream(file);
+             DataInputStream in = new DataInputStream(new BufferedInputStream(input, 64 * 1024))) {
+            in.skipBytes(SampleRecorder.HEADER_SIZE);
+            for (long i = 0; count == 0 || i < count; i++) {
+                try {
+                    record.read(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (record.phase == 0) {
+                    break;
+                }
+                consumer.accept(record);
+            }
+        }
+    }
+
+    void writeCsv(PrintWriter writer) throws IOException {
+        writer.println(String.join(",", COLUMNS));
+        read(record -> writer.println(String.join(",", record.values())));
+        writer.flush();
+    }
+
+    // writes an array of objects, one record per line
+    void writeJson(PrintWriter writer) throws IOException {
+        writer.print("[");
+        boolean[] next = {false};
+        read(record -> {
+            String[] values = record.values();
+            StringJoiner sj = new StringJoiner(",", next[0] ? ",\n{" : "\n{", "}");
+            for (int i = 0; i < COLUMNS.length; i++) {
+                sj.add('"' + COLUMNS[i] + "\":" + (i == 1 ? '"' + values[i] + '"' : values[i]));
+            }
+            writer.print(sj);
+            next[0] = true;
+        });
+        writer.println("\n]");
+        writer.flush();
+    }
+
+    /**
+     * Single record of the file
+     */
+    static class Record {
+
+        final Sample sample = new Sample();
+        // completion time in nanoseconds from the start of the run
+        long timestamp;
+        // -1 if the request was not scheduled
+        long sendDelay;
+        int endpoint;
+        byte phase;
+
+        private void read(DataInputStream in) throws IOException {
+            sample.clear();
+            timestamp = in.readLong();
+            sample.namelookup = in.readLong();
+            sample.connect = in.readLong();
+            sample.appconnect = in.readLong();
+            sample.redirect = in.readLong();
+            sample.pretransfer = in.readLong();
+            sample.starttransfer = in.readLong();
+            sample.total = in.readLong();
+            sample.sizeDownload = in.readLong();
+            sample.speedDownload = in.readLong();
+            sendDelay = in.readLong();
+            sample.httpCode = in.readShort();
+            sample.exitCode = in.readShort();
+            endpoint = in.readShort();
+            phase = in.readByte();
+            in.readByte();
+        }
+
+        private String[] values() {
+            return new String[]{
+                    String.valueOf(timestamp),
+                    phase > 0 && phase < PHASES.length ? PHASES[phase] : String.valueOf(phase),
+                    String.valueOf(endpoint),
+                    String.valueOf(sample.exitCode),
+                    String.valueOf(sample.httpCode),
+                    String.valueOf(sample.namelookup),
+                    String.valueOf(sample.connect),
+                    String.valueOf(sample.appconnect),
+                    String.valueOf(sample.redirect),
+                    String.valueOf(sample.pretransfer),
+                    String.valueOf(sample.starttransfer),
+                    String.valueOf(sample.total),
+                    String.valueOf(sample.sizeDownload),
+                    String.valueOf(sample.speedDownload),
+                    String.valueOf(sendDelay)
+            };
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package curltool;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static java.lang.System.nanoTime;
+
+/**
+ * Appends every sample of the run to a binary file as a fixed-width record, so the samples could be converted
+ * or counted again after the run (see <code>SampleFileReader</code>).
+ * The file is written through memory-mapped chunks, so a record is written without a system call.
+ * <p>
+ * The file starts with the header: magic int, version int, record size int, histogram precision int,
+ * target rate double (0 if the requests were not scheduled) and count of records long.
+ * Every record has: long completion time in nanoseconds from the start of the run, long times of curl write-out
+ * in microseconds (namelookup, connect, appconnect, redirect, pretransfer, starttransfer, total), long size and
+ * speed of download, long send delay in microseconds (-1 if the request was not scheduled), short http code,
+ * short curl exit code, short endpoint index, byte phase and a reserved byte. All the numbers are big-endian.
+ */
+class SampleRecorder implements Closeable {
+
+    static final int MAGIC = 0x43545253;
+    // the first version had times in milliseconds
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 96;
+    static final int COUNT_OFFSET = 24;
+
+    // phases of the run, the phase of an empty record is 0
+    static final byte PHASE_FIRST = 1;
+    static final byte PHASE_WARMUP = 2;
+    static final byte PHASE_STEADY = 3;
+
+    // records are mapped by chunks of this count
+    private static final int CHUNK_RECORDS = 64 * 1024;
+
+    private final FileChannel channel;
+    private final long start = nanoTime();
+    private MappedByteBuffer chunk = null;
+    private long chunkStart = HEADER_SIZE;
+    private long count = 0;
+
+    SampleRecorder(Path file, int precision, double rate) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE)
+                .putInt(MAGIC)
+                .putInt(VERSION)
+                .putInt(RECORD_SIZE)
+                .putInt(precision)
+                .putDouble(rate)
+                .putLong(0);
+        header.flip();
+        channel.write(header, 0);
+    }
+
+    /**
+     * Appends the sample, it could be called by any thread
+     */
+    synchronized void record(Sample sample, int endpoint, byte phase, long sendDelay) throws IOException {
+        if (chunk == null || !chunk.hasRemaining()) {
+            if (chunk != null) {
+                chunkStart += chunk.capacity();
+            }
+            chunk = channel.map(FileChannel.MapMode.READ_WRITE, chunkStart, (long) CHUNK_RECORDS * RECORD_SIZE);
+        }
+        chunk.putLong(nanoTime() - start)
+                .putLong(sample.namelookup)
+                .putLong(sample.connect)
+                .putLong(sample.appconnect)
+                .putLong(sample.redirect)
+                .putLong(sample.pretransfer)
+                .putLong(sample.starttransfer)
+                .putLong(sample.total)
+                .putLong(sample.sizeDownload)
+                .putLong(sample.speedDownload)
+                .putLong(sendDelay)
+                .putShort((short) sample.httpCode)
+                .putShort((short) sample.exitCode)
+                .putShort((short) endpoint)
+                .put(phase)
+                .put((byte) 0);
+        count++;
+    }
+
+    /**
+     * Writes the count of records to the header and cuts the unused part of the last chunk
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            if (chunk != null) {
+                chunk.force();
+            }
+            ByteBuffer countBuffer = ByteBuffer.allocate(Long.BYTES).putLong(count);
+            countBuffer.flip();
+            channel.write(countBuffer, COUNT_OFFSET);
+            try {
+                channel.truncate(HEADER_SIZE + count * RECORD_SIZE);
+            } catch (IOException e) {
+                // some systems don't truncate mapped files, the reader relies on the count then
+            }
+        } finally {
+            chunk = null;
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package curltool;
+
+import java.io.PrintStream;
+import java.util.StringJoiner;
+import java.util.concurrent.TimeUnit;
+
+import static java.lang.String.format;
+
+/**
+ * Interval reporter of a long (soak) run: every window is kept as an aggregate in a fixed ring which covers
+ * the longest rolling period, so the memory doesn't depend on the duration of the run. The ring has at most
+ * <code>MAX_SLOTS</code> histograms, so the consecutive short windows share a slot and the rolling periods
+ * are rounded up to the whole slots.
+ * The line of every window has the rolling 1, 5 and 15-minute throughput and percentiles, and the window
+ * is highlighted if its p99 drifts from the p99 of the first window by more than the threshold.
+ */
+class SoakReporter extends IntervalReporter {
+
+    static final long[] ROLLING_MINUTES = {1, 5, 15};
+    static final double DRIFT_PERCENTILE = 99;
+    // a full precision histogram takes about 200 KB, so the ring of the short windows would take gigabytes
+    static final int MAX_SLOTS = 60;
+
+    private final double driftThreshold;
+    // aggregates of the last windows, the slot of the oldest ones is reused by the next ones
+    private final int windowsPerSlot;
+    private final Histogram[] ringTimes;
+    private final long[] ringRequests;
+    private final long[] ringErrors;
+    private final long[] ringNanos;
+    // count of the closed windows
+    private long windows = 0;
+    private long referenceP99 = 0;
+    private long drifted = 0;
+    private double maxDrift = 0;
+
+    /**
+     * Creates a reporter with the window in milliseconds, the windows whose p99 is more than the threshold
+     * in percents above the p99 of the first window are highlighted
+     */
+    SoakReporter(long window, double driftThreshold, PrintStream out, Histogram layout, int stripes) {
+        super(window, out, layout, stripes);
+        this.driftThreshold = driftThreshold;
+        int longest = windowsIn(ROLLING_MINUTES[ROLLING_MINUTES.length - 1]);
+        // the slot of the current window is not full yet, so the other slots cover the longest period
+        windowsPerSlot = longest <= MAX_SLOTS ? 1 : (longest + MAX_SLOTS - 2) / (MAX_SLOTS - 1);
+        int slots = windowsPerSlot == 1 ? longest : MAX_SLOTS;
+        ringTimes = new Histogram[slots];
+        for (int i = 0; i < slots; i++) {
+            ringTimes[i] = layout.copyLayout();
+        }
+        ringRequests = new long[slots];
+        ringErrors = new long[slots];
+        ringNanos = new long[slots];
+    }
+
+    // count of the windows in the rolling period, at least the last one
+    private int windowsIn(long minutes) {
+        return (int) Math.max(1, (TimeUnit.MINUTES.toMillis(minutes) + interval - 1) / interval);
+    }
+
+    /**
+     * Stops the reporter and prints the summary of the drift
+     */
+    @Override
+    void stop() throws InterruptedException {
+        super.stop();
+        if (windows > 0) {
+            out.println(summary());
+        }
+    }
+
+    String summary() {
+        return format("Soak: %d windows of %d ms, %d drifted by more than %s%% of p%s of the first window",
+                windows, interval, drifted, AVERAGE.format(driftThreshold), AVERAGE.format(DRIFT_PERCENTILE))
+                + (drifted > 0 ? format(" (max +%s%%)", AVERAGE.format(maxDrift)) : "");
+    }
+
+    long getDrifted() {
+        return drifted;
+    }
+
+    int getSlots() {
+        return ringTimes.length;
+    }
+
+    // the window is added to the ring and the line has the rolling statistics of the last windows
+    @Override
+    String intervalToStr(long now, long requests, long intervalErrors) {
+        int slot = (int) (windows / windowsPerSlot % ringTimes.length);
+        if (windows % windowsPerSlot == 0) {
+            ringTimes[slot].reset();
+            ringRequests[slot] = 0;
+            ringErrors[slot] = 0;
+            ringNanos[slot] = 0;
+        }
+        ringTimes[slot].add(times);
+        ringRequests[slot] += requests;
+        ringErrors[slot] += intervalErrors;
+        ringNanos[slot] += now - lastReport;
+        windows++;
+
+        StringJoiner sj = new StringJoiner(" | ", super.intervalToStr(now, requests, intervalErrors) + " | ", "");
+        Histogram rolling = times.copyLayout();
+        for (long minutes : ROLLING_MINUTES) {
+            sj.add(rollingToStr(minutes, rolling));
+        }
+        String line = sj.toString();
+
+        if (times.getTotalCount() == 0) {
+            return line;
+        }
+        long p99 = times.getValueAtPercentile(DRIFT_PERCENTILE);
+        if (referenceP99 == 0) {
+            referenceP99 = Math.max(1, p99);
+            return line;
+        }
+        double drift = (p99 - referenceP99) * 100.0 / referenceP99;
+        if (drift > driftThreshold) {
+            drifted++;
+            maxDrift = Math.max(maxDrift, drift);
+            line += format(" <- DRIFT p%s +%s%%", AVERAGE.format(DRIFT_PERCENTILE), AVERAGE.format(drift));
+        }
+        return line;
+    }
+
+    // throughput and percentiles of the slots of the last windows of the rolling period
+    private String rollingToStr(long minutes, Histogram rolling) {
+        long count = Math.min(windowsIn(minutes), windows);
+        rolling.reset();
+        long requests = 0;
+        long errors = 0;
+        long nanos = 0;
+        // the current slot has the windows since its start, the previous ones are full
+        long covered = 0;
+        for (long last = windows - 1; covered < count; last -= windowsPerSlot) {
+            int slot = (int) (last / windowsPerSlot % ringTimes.length);
+            covered += covered == 0 ? last % windowsPerSlot + 1 : windowsPerSlot;
+            rolling.add(ringTimes[slot]);
+            requests += ringRequests[slot];
+            errors += ringErrors[slot];
+            nanos += ringNanos[slot];
+        }
+        StringJoiner sj = new StringJoiner(" ", minutes + "m ", "")
+                .add(AVERAGE.format(nanos > 0 ? requests / (nanos / 1e9) : 0) + "/s")
+                .add("errors " + errors);
+        if (rolling.getTotalCount() > 0) {
+            sj.add("p50 " + TIME.format(rolling.getValueAtPercentile(50) / MICROS_IN_MILLI))
+                    .add("p99 " + TIME.format(rolling.getValueAtPercentile(99) / MICROS_IN_MILLI));
+        }
+        return sj.toString();
+    }
+}
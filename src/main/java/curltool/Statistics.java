@@ -0,0 +1,259 @@
+package curltool;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.IntConsumer;
+
+/**
+ * Accumulates samples in memory, so the memory usage doesn't depend on the count of requests.
+ * Every time and phase of successful requests is recorded to a histogram, so percentiles could be counted.
+ * Failed requests (with non-zero curl exit code) are only counted by their exit codes.
+ * The class isn't thread safe: workers record to their own statistics, they are merged after the execution.
+ */
+class Statistics {
+
+    // the highest http code and curl exit code that are counted separately, bigger ones are counted as these ones
+    private static final int MAX_HTTP_CODE = 999;
+    private static final int MAX_EXIT_CODE = 127;
+    // 100 GB per second
+    private static final long HIGHEST_TRACKABLE_SPEED = 100L << 30;
+
+    private final Histogram total;
+    private final Histogram calc;
+    private final Histogram dns;
+    private final Histogram tcp;
+    private final Histogram tls;
+    private final Histogram redirect;
+    private final Histogram transfer;
+    private final Histogram speed;
+    // open loop only: total time counted from the scheduled send time and delay of the send
+    private final Histogram corrected;
+    private final Histogram sendDelay;
+    private final long[] httpCodes = new long[MAX_HTTP_CODE + 1];
+    private final long[] exitCodes = new long[MAX_EXIT_CODE + 1];
+    private long errors = 0;
+    private long downloaded = 0;
+
+    Statistics(long highestTrackableTime, int significantDigits) {
+        total = new Histogram(highestTrackableTime, significantDigits);
+        calc = total.copyLayout();
+        dns = total.copyLayout();
+        tcp = total.copyLayout();
+        tls = total.copyLayout();
+        redirect = total.copyLayout();
+        transfer = total.copyLayout();
+        speed = new Histogram(HIGHEST_TRACKABLE_SPEED, significantDigits);
+        corrected = total.copyLayout();
+        sendDelay = total.copyLayout();
+    }
+
+    private Statistics(Statistics layout) {
+        total = layout.total.copyLayout();
+        calc = layout.calc.copyLayout();
+        dns = layout.dns.copyLayout();
+        tcp = layout.tcp.copyLayout();
+        tls = layout.tls.copyLayout();
+        redirect = layout.redirect.copyLayout();
+        transfer = layout.transfer.copyLayout();
+        speed = layout.speed.copyLayout();
+        corrected = layout.corrected.copyLayout();
+        sendDelay = layout.sendDelay.copyLayout();
+    }
+
+    /**
+     * Creates empty statistics that could be merged with this one
+     */
+    Statistics copyLayout() {
+        return new Statistics(this);
+    }
+
+    void add(Sample sample) {
+        if (sample.isError()) {
+            errors++;
+            exitCodes[Math.min(Math.max(sample.exitCode, 0), MAX_EXIT_CODE)]++;
+            return;
+        }
+        total.record(sample.total);
+        calc.record(sample.calc());
+        dns.record(sample.dns());
+        tcp.record(sample.tcp());
+        tls.record(sample.tls());
+        redirect.record(sample.redirect);
+        transfer.record(sample.transfer());
+        speed.record(sample.speedDownload);
+        httpCodes[Math.min(Math.max(sample.httpCode, 0), MAX_HTTP_CODE)]++;
+        downloaded += sample.sizeDownload;
+    }
+
+    /**
+     * Adds the sample of the request which is sent by the schedule with the given delay in microseconds.
+     * Its latency is also counted from the scheduled time to avoid coordinated omission.
+     */
+    void add(Sample sample, long sendDelay) {
+        this.sendDelay.record(sendDelay);
+        if (!sample.isError()) {
+            corrected.record(sample.total + sendDelay);
+        }
+        add(sample);
+    }
+
+    void add(Statistics other) {
+        total.add(other.total);
+        calc.add(other.calc);
+        dns.add(other.dns);
+        tcp.add(other.tcp);
+        tls.add(other.tls);
+        redirect.add(other.redirect);
+        transfer.add(other.transfer);
+        speed.add(other.speed);
+        corrected.add(other.corrected);
+        sendDelay.add(other.sendDelay);
+        for (int i = 0; i < httpCodes.length; i++) {
+            httpCodes[i] += other.httpCodes[i];
+        }
+        for (int i = 0; i < exitCodes.length; i++) {
+            exitCodes[i] += other.exitCodes[i];
+        }
+        errors += other.errors;
+        downloaded += other.downloaded;
+    }
+
+    /**
+     * Writes all the histograms and the counts, so the statistics could be merged by another process
+     */
+    void write(DataOutput out) throws IOException {
+        for (Histogram histogram : histograms()) {
+            histogram.write(out);
+        }
+        writeCounts(out, httpCodes);
+        writeCounts(out, exitCodes);
+        out.writeLong(errors);
+        out.writeLong(downloaded);
+    }
+
+    /**
+     * Adds the statistics written by <code>write</code>, they should have the same layout
+     */
+    void add(DataInput in) throws IOException {
+        try {
+            for (Histogram histogram : histograms()) {
+                histogram.add(Histogram.read(in));
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        readCounts(in, httpCodes);
+        readCounts(in, exitCodes);
+        errors += in.readLong();
+        downloaded += in.readLong();
+    }
+
+    private Histogram[] histograms() {
+        return new Histogram[]{total, calc, dns, tcp, tls, redirect, transfer, speed, corrected, sendDelay};
+    }
+
+    // only the codes that are counted are written
+    private static void writeCounts(DataOutput out, long[] counts) throws IOException {
+        out.writeInt((int) Arrays.stream(counts).filter(c -> c > 0).count());
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                out.writeInt(i);
+                out.writeLong(counts[i]);
+            }
+        }
+    }
+
+    private static void readCounts(DataInput in, long[] counts) throws IOException {
+        int codes = in.readInt();
+        for (int c = 0; c < codes; c++) {
+            int i = in.readInt();
+            if (i < 0 || i >= counts.length) {
+                throw new IOException("Invalid code: " + i);
+            }
+            counts[i] += in.readLong();
+        }
+    }
+
+    // count of successful requests
+    long getCount() {
+        return total.getTotalCount();
+    }
+
+    long getErrors() {
+        return errors;
+    }
+
+    // total count of downloaded bytes
+    long getDownloaded() {
+        return downloaded;
+    }
+
+    Histogram getTotal() {
+        return total;
+    }
+
+    Histogram getCalc() {
+        return calc;
+    }
+
+    Histogram getDns() {
+        return dns;
+    }
+
+    Histogram getTcp() {
+        return tcp;
+    }
+
+    Histogram getTls() {
+        return tls;
+    }
+
+    Histogram getRedirect() {
+        return redirect;
+    }
+
+    Histogram getTransfer() {
+        return transfer;
+    }
+
+    // download speed in bytes per second
+    Histogram getSpeed() {
+        return speed;
+    }
+
+    Histogram getCorrected() {
+        return corrected;
+    }
+
+    Histogram getSendDelay() {
+        return sendDelay;
+    }
+
+    long getHttpCodeCount(int httpCode) {
+        return httpCodes[httpCode];
+    }
+
+    long getExitCodeCount(int exitCode) {
+        return exitCodes[exitCode];
+    }
+
+    // passes every http code of the successful requests to the consumer
+    void forEachHttpCode(IntConsumer consumer) {
+        forEachCounted(httpCodes, consumer);
+    }
+
+    // passes every curl exit code of the failed requests to the consumer
+    void forEachExitCode(IntConsumer consumer) {
+        forEachCounted(exitCodes, consumer);
+    }
+
+    private static void forEachCounted(long[] counts, IntConsumer consumer) {
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] > 0) {
+                consumer.accept(i);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package curltool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.String.format;
+
+/**
+ * Text of the request that is different for every request. It is compiled once into the literal bytes and
+ * the placeholders, and a request only appends them to the reused output:
+ * <pre>
+ * {{seq}}          - sequence number of the request from 1
+ * {{uuid}}         - random UUID
+ * {{random}}       - random non-negative integer
+ * {{random:N}}     - random integer from 0 to N - 1
+ * {{feed:column}}  - value of the column of the feed row of the request (see <code>Feed</code>)
+ * </pre>
+ * Random values are taken from the thread-local generator, so the workers don't contend for them.
+ */
+class Template {
+
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{\\{\\s*([^{}]*?)\\s*}}");
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+
+    // kinds of the placeholders
+    private static final int SEQ = 0;
+    private static final int UUID = 1;
+    private static final int RANDOM = 2;
+    private static final int FEED = 3;
+
+    // literals[i] is followed by the placeholder i, the last literal ends the text
+    private final byte[][] literals;
+    private final int[] kinds;
+    // bound of the random value or column of the feed
+    private final long[] args;
+    private final Feed feed;
+
+    private Template(byte[][] literals, int[] kinds, long[] args, Feed feed) {
+        this.literals = literals;
+        this.kinds = kinds;
+        this.args = args;
+        this.feed = feed;
+    }
+
+    /**
+     * Compiles the text, the feed is needed only if the text has its columns.
+     * Throws <code>IllegalArgumentException</code> if a placeholder is not known.
+     */
+    static Template compile(String text, Feed feed) {
+        List<byte[]> literals = new ArrayList<>();
+        List<long[]> placeholders = new ArrayList<>();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int end = 0;
+        while (matcher.find()) {
+            literals.add(text.substring(end, matcher.start()).getBytes(StandardCharsets.UTF_8));
+            placeholders.add(placeholder(matcher.group(1), feed));
+            end = matcher.end();
+        }
+        literals.add(text.substring(end).getBytes(StandardCharsets.UTF_8));
+
+        int[] kinds = new int[placeholders.size()];
+        long[] args = new long[placeholders.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = (int) placeholders.get(i)[0];
+            args[i] = placeholders.get(i)[1];
+        }
+        return new Template(literals.toArray(new byte[0][]), kinds, args, feed);
+    }
+
+    /**
+     * Returns the template of the bytes without placeholders
+     */
+    static Template literal(byte[] content) {
+        return new Template(new byte[][]{content}, new int[0], new long[0], null);
+    }
+
+    // kind and argument of the placeholder
+    private static long[] placeholder(String name, Feed feed) {
+        if ("seq".equals(name)) {
+            return new long[]{SEQ, 0};
+        }
+        if ("uuid".equals(name)) {
+            return new long[]{UUID, 0};
+        }
+        if ("random".equals(name)) {
+            return new long[]{RANDOM, Integer.MAX_VALUE};
+        }
+        if (name.startsWith("random:")) {
+            try {
+                long bound = Long.parseLong(name.substring("random:".length()).trim());
+                if (bound > 0) {
+                    return new long[]{RANDOM, bound};
+                }
+            } catch (NumberFormatException e) {
+                // reported below
+            }
+            throw new IllegalArgumentException(format("Bound of {{%s}} should be a positive integer.", name));
+        }
+        if (name.startsWith("feed:")) {
+            if (feed == null) {
+                throw new IllegalArgumentException(format("{{%s}} needs a feed, but it is not set.", name));
+            }
+            return new long[]{FEED, feed.column(name.substring("feed:".length()).trim())};
+        }
+        throw new IllegalArgumentException(format("Placeholder {{%s}} is unknown, it should be one of seq, uuid, " +
+                "random, random:N or feed:column.", name));
+    }
+
+    // true if every request has the same text
+    boolean isStatic() {
+        return kinds.length == 0;
+    }
+
+    // bytes of the static template
+    byte[] literal() {
+        return isStatic() ? literals[0] : null;
+    }
+
+    /**
+     * Appends the text of the request with the sequence number to the output
+     */
+    void render(long sequence, Output out) {
+        for (int i = 0; i < kinds.length; i++) {
+            out.append(literals[i]);
+            switch (kinds[i]) {
+                case SEQ:
+                    out.appendLong(sequence);
+                    break;
+                case UUID:
+                    out.appendUuid(ThreadLocalRandom.current());
+                    break;
+                case RANDOM:
+                    out.appendLong(ThreadLocalRandom.current().nextLong(args[i]));
+                    break;
+                case FEED:
+                default:
+                    out.append(feed.value(sequence, (int) args[i]));
+                    break;
+            }
+        }
+        out.append(literals[kinds.length]);
+    }
+
+    // text of the request with the sequence number as a string
+    String render(long sequence) {
+        Output out = new Output();
+        render(sequence, out);
+        return new String(out.bytes, 0, out.length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Growing byte buffer the requests are rendered to, it is reused by the requests of a worker
+     */
+    static class Output {
+
+        byte[] bytes = new byte[256];
+        int length = 0;
+
+        void reset() {
+            length = 0;
+        }
+
+        private void ensure(int more) {
+            if (length + more > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + more));
+            }
+        }
+
+        void append(byte[] b) {
+            append(b, b.length);
+        }
+
+        void append(byte[] b, int count) {
+            ensure(count);
+            System.arraycopy(b, 0, bytes, length, count);
+            length += count;
+        }
+
+        // decimal digits of the non-negative value without a string
+        void appendLong(long value) {
+            int digits = 1;
+            for (long v = value; v >= 10; v /= 10) {
+                digits++;
+            }
+            ensure(digits);
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+            length += digits;
+        }
+
+        // version 4 UUID like UUID.randomUUID(), but from the faster generator
+        void appendUuid(ThreadLocalRandom random) {
+            long high = random.nextLong() & ~0xf000L | 0x4000L;
+            long low = random.nextLong() & ~(0xcL << 60) | (0x8L << 60);
+            ensure(36);
+            appendHex(high >>> 32, 8);
+            bytes[length++] = '-';
+            appendHex(high >>> 16, 4);
+            bytes[length++] = '-';
+            appendHex(high, 4);
+            bytes[length++] = '-';
+            appendHex(low >>> 48, 4);
+            bytes[length++] = '-';
+            appendHex(low, 12);
+        }
+
+        private void appendHex(long value, int digits) {
+            for (int i = length + digits - 1; i >= length; i--) {
+                bytes[i] = HEX[(int) (value & 0xf)];
+                value >>>= 4;
+            }
+            length += digits;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package curltool;
+
+import java.text.DecimalFormat;
+import java.util.Locale;
+import java.util.StringJoiner;
+
+import static java.lang.String.format;
+import static java.lang.System.lineSeparator;
+
+/**
+ * Renders the report to human readable text
+ */
+class TextReportRenderer implements ReportRenderer {
+
+    private static final DecimalFormat AVERAGE = new DecimalFormat("##.##");
+    // times are shown with microsecond precision
+    private static final DecimalFormat TIME = new DecimalFormat("0.###");
+    private static final DecimalFormat CHANGE = new DecimalFormat("+0.##;-0.##");
+
+    @Override
+    public String render(Report report) {
+        StringJoiner sj = new StringJoiner(lineSeparator());
+
+        Report.Summary first = report.getFirst();
+        if (first.getSuccessful() > 0) {
+            sj.add(statisticToStr("First", TIME.format(first.getTotal().getMax()),
+                    TIME.format(first.getCalc().getMax())));
+        } else if (first.getErrors() > 0) {
+            sj.add("First:").add("- errors - " + errorsToStr(first));
+        }
+        Report.Summary warmup = report.getWarmup();
+        if (warmup != null) {
+            sj.add(statisticToStr("Warm-up (not counted in the next statistics)",
+                    AVERAGE.format(warmup.getTotal().getMean()),
+                    AVERAGE.format(warmup.getCalc().getMean())))
+                    .add("- requests - " + warmup.getRequests())
+                    .add("- errors - " + errorsToStr(warmup));
+        }
+        Report.Summary then = report.getThen();
+        sj.add(statisticToStr("Then",
+                AVERAGE.format(then.getTotal().getMean()),
+                AVERAGE.format(then.getCalc().getMean())));
+        if (!Double.isNaN(then.getRequestsPerSecond())) {
+            sj.add("- requests per second - " + AVERAGE.format(then.getRequestsPerSecond()));
+        }
+        if (then.getSuccessful() > 0) {
+            sj.add(statisticToStr("Percentiles",
+                    percentilesToStr(then.getTotal()),
+                    percentilesToStr(then.getCalc())));
+            sj.add("Phases:")
+                    .add("- dns lookup - " + percentilesToStr(then.getDns()))
+                    .add("- connection - " + percentilesToStr(then.getTcp()))
+                    .add("- ssl handshake - " + percentilesToStr(then.getTls()))
+                    .add("- redirects - " + percentilesToStr(then.getRedirect()))
+                    .add("- response transfer - " + percentilesToStr(then.getTransfer()));
+            sj.add("Download:")
+                    .add("- size, bytes - total " + then.getDownloaded()
+                            + ", average " + AVERAGE.format((double) then.getDownloaded() / then.getSuccessful()))
+                    .add("- speed, bytes per second - " + percentilesToStr(then.getSpeed()));
+
+            StringJoiner httpCodes = new StringJoiner(", ", "Http codes: ", "");
+            then.getHttpCodes().forEach((code, count) -> httpCodes.add(code + " - " + count));
+            sj.add(httpCodes.toString());
+        }
+        sj.add("Errors: " + errorsToStr(then));
+        if (report.getCancelled() > 0) {
+            sj.add("Cancelled: " + report.getCancelled()
+                    + " requests in flight were not completed in time after the deadline");
+        }
+        if (report.getEstimate() != null) {
+            sj.add(estimateToStr(report.getEstimate()));
+        }
+        if (report.getSchedule() != null) {
+            sj.add(scheduleToStr(report.getSchedule()));
+        }
+        if (!report.getEndpoints().isEmpty()) {
+            sj.add(endpointsToStr(report));
+        }
+        if (report.getRamp() != null) {
+            sj.add(rampToStr(report.getRamp()));
+        }
+        if (report.getComparison() != null) {
+            sj.add(comparisonToStr(report.getComparison()));
+        }
+        if (report.getProcesses() != null) {
+            sj.add(processesToStr(report.getProcesses()));
+        }
+
+        return sj.toString();
+    }
+
+    // Convert open loop statistics to string: latencies counted from the scheduled send time and send delays
+    private static String scheduleToStr(Report.Schedule schedule) {
+        Report.Distribution sendDelay = schedule.getSendDelay();
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add("Schedule:")
+                .add("- target rate - " + AVERAGE.format(schedule.getRate()) + " requests per second")
+                .add("- send delay - " + percentilesToStr(sendDelay));
+        if (schedule.getCorrected().getCount() > 0) {
+            sj.add("Corrected percentiles (from the scheduled send time):")
+                    .add("- total time - " + percentilesToStr(schedule.getCorrected()));
+        }
+        if (schedule.getLate() > 0) {
+            sj.add(format("Warning: the client couldn't keep up with the schedule - %d of %d requests were sent " +
+                            "more than %s ms late (max %s ms). Increase concurrency or decrease rate.",
+                    schedule.getLate(), sendDelay.getCount(), TIME.format(schedule.getLateThreshold()),
+                    TIME.format(sendDelay.getMax())));
+        }
+        return sj.toString();
+    }
+
+    // Convert the steady state statistics of every endpoint to a table, the statistics above are their aggregate
+    private static String endpointsToStr(Report report) {
+        int nameWidth = Math.max(8, report.getEndpoints().stream().mapToInt(e -> e.getName().length()).max().orElse(0));
+        String row = "%-" + nameWidth + "s %10s %8s %10s %8s %8s %8s %8s %8s";
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add("Endpoints:")
+                .add(format(row, "endpoint", "requests", "errors", "per second", "mean", "p50", "p90", "p99", "max"));
+        for (Report.Summary endpoint : report.getEndpoints()) {
+            Report.Distribution total = endpoint.getTotal();
+            sj.add(format(row, endpoint.getName(), endpoint.getRequests(), endpoint.getErrors(),
+                    Double.isNaN(endpoint.getRequestsPerSecond()) ? "-" : AVERAGE.format(endpoint.getRequestsPerSecond()),
+                    AVERAGE.format(total.getMean()), TIME.format(total.getPercentile(50)),
+                    TIME.format(total.getPercentile(90)), TIME.format(total.getPercentile(99)),
+                    TIME.format(total.getMax())));
+        }
+        return sj.toString();
+    }
+
+    // Convert the confidence interval of the target metric to string
+    private static String estimateToStr(Report.Estimate estimate) {
+        String interval = Double.isNaN(estimate.getRelativeError())
+                ? "unknown"
+                : format("%s - %s ms (+/-%s%%, target +/-%s%%)", TIME.format(estimate.getLower()),
+                TIME.format(estimate.getUpper()), AVERAGE.format(estimate.getRelativeError()),
+                AVERAGE.format(estimate.getTargetError()));
+        return format("Estimate: %s %s ms, %s%% confidence interval %s - %s %d requests", estimate.getMetric(),
+                TIME.format(estimate.getValue()), AVERAGE.format(estimate.getConfidence()), interval,
+                estimate.isConverged() ? "converged after" : "not converged by", estimate.getCount());
+    }
+
+    // Convert the ramp steps to a table followed by the knee - the max load that met the SLO
+    private static String rampToStr(Report.Ramp ramp) {
+        String row = "%12s %10s %10s %10s %8s %8s %8s %8s  %s";
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add(format("Ramp by %s, SLO p%s <= %s ms and errors <= %s%%:", ramp.getRampBy(),
+                        AVERAGE.format(Report.Step.SLO_PERCENTILE), TIME.format(ramp.getSloLatency()),
+                        AVERAGE.format(ramp.getSloErrors())))
+                .add(format(row, ramp.getRampBy(), "requests", "errors, %", "per second", "p50", "p90", "p99", "max",
+                        "SLO"));
+        for (Report.Step step : ramp.getSteps()) {
+            Report.Summary summary = step.getSummary();
+            Report.Distribution latency = step.getLatency();
+            sj.add(format(row, AVERAGE.format(step.getLoad()), summary.getRequests() + step.getCancelled(),
+                    AVERAGE.format(step.getErrorsPercent()),
+                    Double.isNaN(summary.getRequestsPerSecond()) ? "-" : AVERAGE.format(summary.getRequestsPerSecond()),
+                    TIME.format(latency.getPercentile(50)), TIME.format(latency.getPercentile(90)),
+                    TIME.format(latency.getPercentile(99)), TIME.format(latency.getMax()),
+                    step.isPassed() ? "met" : "breached"));
+        }
+        Report.Step knee = ramp.getKnee();
+        if (knee == null) {
+            sj.add("Knee: not found - the SLO was breached by the first step");
+        } else {
+            sj.add(format("Knee: %s %s - %s requests per second, p99 %s ms%s", ramp.getRampBy(),
+                    AVERAGE.format(knee.getLoad()), AVERAGE.format(knee.getSummary().getRequestsPerSecond()),
+                    TIME.format(knee.getLatency().getPercentile(99)),
+                    ramp.isBreached() ? "" : " (the SLO was met up to the max " + ramp.getRampBy() + ")"));
+        }
+        return sj.toString();
+    }
+
+    // Convert the comparison with the baseline to string, the last line tells if it is a regression
+    private static String comparisonToStr(Report.Comparison comparison) {
+        StringJoiner changes = new StringJoiner(", ", "- change, % - ", "");
+        comparison.getChanges().forEach((percentile, change) ->
+                changes.add("p" + AVERAGE.format(percentile) + " " + CHANGE.format(change)));
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add("Baseline comparison (total time):")
+                .add("- baseline - " + percentilesToStr(comparison.getBaseline()))
+                .add(changes.toString());
+        if (!Double.isNaN(comparison.getPValue())) {
+            sj.add(format(Locale.ROOT, "- p-value of not slower (Mann-Whitney U test) - %.3g, significance %s",
+                    comparison.getPValue(), AVERAGE.format(comparison.getSignificance())));
+        }
+        if (comparison.isRegression()) {
+            StringJoiner regressed = new StringJoiner(", ", "Regression: ", "");
+            comparison.getRegressed().forEach(percentile -> regressed.add("p" + AVERAGE.format(percentile)));
+            sj.add(regressed + " slower than the baseline by more than "
+                    + AVERAGE.format(comparison.getMaxRegression()) + "%");
+        } else {
+            sj.add("No regression (allowed slowdown " + AVERAGE.format(comparison.getMaxRegression()) + "%)");
+        }
+        return sj.toString();
+    }
+
+    // Convert the statistics of the curl processes to string, CPU time is shown only if it is known
+    private static String processesToStr(Report.Processes processes) {
+        StringJoiner sj = new StringJoiner(lineSeparator())
+                .add("Curl processes:")
+                .add(format("- started - %d, killed on timeout - %d, max alive at once - %d",
+                        processes.getStarted(), processes.getKilled(), processes.getMaxAlive()))
+                .add("- wall time - " + percentilesToStr(processes.getWallTime()));
+        if (!Double.isNaN(processes.getCpuTime())) {
+            sj.add("- cpu time, ms - total " + TIME.format(processes.getCpuTime())
+                    + ", average per process " + TIME.format(processes.getCpuTimePerProcess()));
+        }
+        return sj.toString();
+    }
+
+    // Convert count of failed requests and their curl exit codes to string
+    private static String errorsToStr(Report.Summary summary) {
+        StringJoiner sj = new StringJoiner(", ", summary.getErrors() + " (", ")");
+        summary.getExitCodes().forEach((code, count) -> sj.add("exit code " + code + " - " + count));
+        return summary.getErrors() == 0 ? "0" : sj.toString();
+    }
+
+    // Convert the distribution of the values to string
+    private static String percentilesToStr(Report.Distribution distribution) {
+        StringJoiner sj = new StringJoiner(", ")
+                .add("min " + TIME.format(distribution.getMin()));
+        distribution.getPercentiles().forEach((percentile, value) ->
+                sj.add("p" + AVERAGE.format(percentile) + " " + TIME.format(value)));
+        return sj.add("max " + TIME.format(distribution.getMax()))
+                .add("std dev " + AVERAGE.format(distribution.getStdDeviation()))
+                .toString();
+    }
+
+    // Convert statistic values to string
+    private static <T> String statisticToStr(String statisticTitle, T totalTime, T calcTime) {
+        StringJoiner sj = new StringJoiner(lineSeparator());
+        return sj.add(statisticTitle + ":")
+                .add("- total time - " + totalTime)
+                .add("- calculation time - " + calcTime).toString();
+    }
+}
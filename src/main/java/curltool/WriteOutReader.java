@@ -0,0 +1,257 @@
+package curltool;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.function.Consumer;
+
+import static curltool.CurlCmd.*;
+
+/**
+ * Reads curl output as it arrives and passes every parsed write-out block (see <code>CurlCmd.CURL_OUT_TEMPLATE</code>)
+ * to the consumer. Responses between the blocks are skipped. If the raw log is given, all the output is copied to it.
+ * The output bytes are scanned directly: known keys are matched at the line starts and their values are parsed
+ * to the sample fields as the digits arrive, so nothing is allocated per line. Times in seconds are converted
+ * to microseconds, both '.' and ',' are accepted as the decimal separator.
+ * If the checksum is asked for, the response before every block is hashed by CRC32 as it is scanned
+ * (curl bodies are sent to the null sink otherwise, so they don't reach the tool at all).
+ */
+class WriteOutReader {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+    // known keys, their indexes are used to set the sample fields
+    private static final byte[][] KEYS = keys(EXIT_CODE, HTTP_CODE, TIME_NAMELOOKUP, TIME_CONNECT, TIME_APPCONNECT,
+            TIME_REDIRECT, TIME_PRETRANSFER, TIME_STARTTRANSFER, SIZE_DOWNLOAD, SPEED_DOWNLOAD, TIME_TOTAL);
+    private static final int EXIT_CODE_KEY = 0;
+    private static final int HTTP_CODE_KEY = 1;
+    private static final int TIME_NAMELOOKUP_KEY = 2;
+    private static final int TIME_CONNECT_KEY = 3;
+    private static final int TIME_APPCONNECT_KEY = 4;
+    private static final int TIME_REDIRECT_KEY = 5;
+    private static final int TIME_PRETRANSFER_KEY = 6;
+    private static final int TIME_STARTTRANSFER_KEY = 7;
+    private static final int SIZE_DOWNLOAD_KEY = 8;
+    private static final int SPEED_DOWNLOAD_KEY = 9;
+    private static final int TIME_TOTAL_KEY = 10;
+    private static final int MAX_KEY_LENGTH = 32;
+    // fraction digits of seconds which are kept in microseconds
+    private static final int MICROS_DIGITS = 6;
+
+    // line states
+    private static final int KEY = 0;
+    private static final int VALUE = 1;
+    private static final int SKIP = 2;
+
+    private final Consumer<Sample> consumer;
+    // checksum of the response before the current block, null if the responses are not hashed
+    private final CRC32 checksum;
+    // the line break could be the first byte of the block, so it is hashed when the next line is not the block start
+    private boolean pendingBreak = false;
+    private final Sample sample = new Sample();
+    private final byte[] key = new byte[MAX_KEY_LENGTH];
+    private int keyLength = 0;
+    private int state = KEY;
+    private boolean inBlock = false;
+
+    // value of the current line
+    private int valueKey;
+    private long integer;
+    private long fraction;
+    private int fractionDigits;
+    private boolean inFraction;
+
+    private WriteOutReader(Consumer<Sample> consumer, boolean checksum) {
+        this.consumer = consumer;
+        this.checksum = checksum ? new CRC32() : null;
+    }
+
+    static void read(InputStream in, OutputStream rawLog, Consumer<Sample> consumer) throws IOException {
+        read(in, rawLog, false, consumer);
+    }
+
+    static void read(InputStream in, OutputStream rawLog, boolean checksum, Consumer<Sample> consumer)
+            throws IOException {
+        WriteOutReader reader = new WriteOutReader(consumer, checksum);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+            if (rawLog != null) {
+                rawLog.write(buffer, 0, n);
+            }
+            for (int i = 0; i < n; i++) {
+                reader.accept(buffer[i]);
+            }
+        }
+        // the last line could be without the line break
+        reader.accept((byte) '\n');
+    }
+
+    private void accept(byte b) {
+        switch (state) {
+            case KEY:
+                if (b == '=') {
+                    startValue();
+                } else if (b == '\n') {
+                    hashLine();
+                    pendingBreak = checksum != null && !inBlock;
+                    keyLength = 0;
+                } else if (keyLength < MAX_KEY_LENGTH) {
+                    key[keyLength++] = b;
+                } else {
+                    hashLine();
+                    hash(b);
+                    state = SKIP;
+                }
+                break;
+            case VALUE:
+                if (b == '\n' || b == '\r') {
+                    endValue();
+                    state = b == '\n' ? KEY : SKIP;
+                } else if (b >= '0' && b <= '9') {
+                    if (!inFraction) {
+                        integer = integer * 10 + (b - '0');
+                    } else if (fractionDigits < MICROS_DIGITS) {
+                        fraction = fraction * 10 + (b - '0');
+                        fractionDigits++;
+                    }
+                } else if (b == '.' || b == ',') {
+                    inFraction = true;
+                }
+                break;
+            case SKIP:
+            default:
+                if (b == '\n') {
+                    pendingBreak = checksum != null && !inBlock;
+                    keyLength = 0;
+                    state = KEY;
+                } else {
+                    hash(b);
+                }
+                break;
+        }
+    }
+
+    // hashes the line start which is not the block start
+    private void hashLine() {
+        if (checksum == null || inBlock) {
+            return;
+        }
+        if (pendingBreak) {
+            checksum.update('\n');
+            pendingBreak = false;
+        }
+        checksum.update(key, 0, keyLength);
+    }
+
+    private void hash(byte b) {
+        if (checksum != null && !inBlock) {
+            checksum.update(b);
+        }
+    }
+
+    private void startValue() {
+        valueKey = findKey();
+        // every write-out block starts with exitcode and ends with time_total line
+        if (valueKey == EXIT_CODE_KEY) {
+            sample.clear();
+            if (checksum != null) {
+                // the line break before the key is a part of the block
+                sample.checksum = checksum.getValue();
+                checksum.reset();
+                pendingBreak = false;
+            }
+            inBlock = true;
+        }
+        if (!inBlock) {
+            hashLine();
+            hash((byte) '=');
+        }
+        keyLength = 0;
+        if (valueKey < 0 || !inBlock) {
+            state = SKIP;
+            return;
+        }
+        integer = 0;
+        fraction = 0;
+        fractionDigits = 0;
+        inFraction = false;
+        state = VALUE;
+    }
+
+    private void endValue() {
+        switch (valueKey) {
+            case EXIT_CODE_KEY:
+                sample.exitCode = (int) integer;
+                break;
+            case HTTP_CODE_KEY:
+                sample.httpCode = (int) integer;
+                break;
+            case TIME_NAMELOOKUP_KEY:
+                sample.namelookup = micros();
+                break;
+            case TIME_CONNECT_KEY:
+                sample.connect = micros();
+                break;
+            case TIME_APPCONNECT_KEY:
+                sample.appconnect = micros();
+                break;
+            case TIME_REDIRECT_KEY:
+                sample.redirect = micros();
+                break;
+            case TIME_PRETRANSFER_KEY:
+                sample.pretransfer = micros();
+                break;
+            case TIME_STARTTRANSFER_KEY:
+                sample.starttransfer = micros();
+                break;
+            case SIZE_DOWNLOAD_KEY:
+                sample.sizeDownload = integer;
+                break;
+            case SPEED_DOWNLOAD_KEY:
+                sample.speedDownload = integer;
+                break;
+            case TIME_TOTAL_KEY:
+            default:
+                sample.total = micros();
+                inBlock = false;
+                consumer.accept(sample);
+                break;
+        }
+    }
+
+    // value in seconds converted to microseconds
+    private long micros() {
+        long micros = fraction;
+        for (int i = fractionDigits; i < MICROS_DIGITS; i++) {
+            micros *= 10;
+        }
+        return integer * 1_000_000 + micros;
+    }
+
+    // index of the key of the current line or -1 if it is unknown
+    private int findKey() {
+        for (int k = 0; k < KEYS.length; k++) {
+            byte[] known = KEYS[k];
+            if (known.length != keyLength) {
+                continue;
+            }
+            int i = 0;
+            while (i < keyLength && known[i] == key[i]) {
+                i++;
+            }
+            if (i == keyLength) {
+                return k;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[][] keys(String... keys) {
+        byte[][] bytes = new byte[keys.length][];
+        for (int i = 0; i < keys.length; i++) {
+            bytes[i] = keys[i].getBytes(StandardCharsets.US_ASCII);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,134 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Baseline</code> and <code>curltool.Report.Comparison</code>
+ */
+public class BaselineTest {
+
+    // times in microseconds around the given mean with some noise
+    private static Histogram times(long seed, int count, double mean) {
+        Histogram histogram = new Histogram(3_600_000_000L, 3);
+        Random random = new Random(seed);
+        for (int i = 0; i < count; i++) {
+            histogram.record((long) (mean * (1 + 0.2 * random.nextGaussian())));
+        }
+        return histogram;
+    }
+
+    /**
+     * Checks that the saved baseline is read with all the counts
+     */
+    @Test
+    public void writeReadTest() throws IOException {
+        Path file = Files.createTempFile("baseline", ".bin");
+        try {
+            Histogram saved = times(1, 1000, 20_000);
+            Baseline.write(file, saved);
+
+            Histogram read = Baseline.read(file);
+            assertEquals(read.getTotalCount(), 1000);
+            assertEquals(read.getMin(), saved.getMin());
+            assertEquals(read.getMax(), saved.getMax());
+            assertEquals(read.getMean(), saved.getMean());
+            assertEquals(read.getValueAtPercentile(99), saved.getValueAtPercentile(99));
+            read.add(saved);
+            assertEquals(read.getTotalCount(), 2000);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Checks that a file of another kind is not read as the baseline
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void readNotBaselineTest() throws IOException {
+        Path file = Files.createTempFile("baseline", ".txt");
+        try {
+            Files.write(file, Arrays.asList("exitcode=0", "time_total=0.1"));
+            Baseline.read(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @DataProvider
+    public static Object[][] shifts() {
+        return new Object[][]{
+                // current mean, min and max expected p-value
+                {20_000, 0.05, 1},
+                {21_000, 0, 1e-3},
+                {25_000, 0, 1e-30},
+                {18_000, 0.99, 1},
+        };
+    }
+
+    /**
+     * Checks that the test tells whether the current times are significantly slower than the baseline ones
+     */
+    @Test(dataProvider = "shifts")
+    public void slowerPValueTest(double currentMean, double minPValue, double maxPValue) {
+        double pValue = Baseline.slowerPValue(times(1, 2000, 20_000), times(2, 2000, currentMean));
+
+        assertTrue(pValue >= minPValue && pValue <= maxPValue, "p-value " + pValue);
+    }
+
+    /**
+     * Checks the ties and the empty histograms
+     */
+    @Test
+    public void slowerPValueEdgeCasesTest() {
+        Histogram same = new Histogram(3_600_000_000L, 3);
+        same.record(1000);
+        same.record(1000);
+        assertEquals(Baseline.slowerPValue(same, same), 0.5);
+        assertTrue(Double.isNaN(Baseline.slowerPValue(same, same.copyLayout())));
+        // the values differ, but they are in the same bucket, so they are the same for the test
+        Histogram baseline = new Histogram(3_600_000_000L, 3);
+        Histogram current = baseline.copyLayout();
+        for (int i = 0; i < 50; i++) {
+            baseline.record(1_000_000);
+            current.record(1_000_100);
+        }
+        assertEquals(Baseline.slowerPValue(baseline, current), 0.5);
+        assertEquals(Baseline.upperTail(1.6448536), 0.05, 1e-6);
+        assertEquals(Baseline.upperTail(-1.6448536), 0.95, 1e-6);
+    }
+
+    /**
+     * Checks that the run is a regression only if it is significantly slower by more than the allowed percent
+     */
+    @Test
+    public void comparisonTest() {
+        Histogram baseline = times(1, 2000, 20_000);
+
+        Report.Comparison slower = new Report.Comparison(baseline, times(2, 2000, 25_000), 10);
+        assertTrue(slower.isRegression());
+        assertEquals(slower.getRegressed(), Arrays.asList(50.0, 90.0, 99.0));
+        assertEquals(slower.getChanges().get(50.0), 25, 2);
+        assertEquals(slower.getBaseline().getPercentile(50), 20, 0.5);
+
+        assertFalse(new Report.Comparison(baseline, times(2, 2000, 25_000), 30).isRegression());
+        assertFalse(new Report.Comparison(baseline, times(2, 2000, 20_000), 0).isRegression());
+        // a slow request of a few is not significant
+        Histogram few = baseline.copyLayout();
+        few.record(15_000);
+        few.record(40_000);
+        Report.Comparison notSignificant = new Report.Comparison(baseline, few, 10);
+        assertTrue(notSignificant.getChanges().get(99.0) > 10);
+        assertFalse(notSignificant.isRegression());
+    }
+}
@@ -0,0 +1,91 @@
+package curltool;
+
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Calibration</code> and <code>curltool.CalibrationServer</code>
+ */
+public class CalibrationTest {
+
+    /**
+     * Checks that the server responds after the delay and the errors are spread evenly
+     */
+    @Test
+    public void serverTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(20, 10, 25)) {
+            int errors = 0;
+            for (int i = 1; i <= 8; i++) {
+                long start = System.nanoTime();
+                HttpURLConnection connection = (HttpURLConnection) new URL(server.getUrl()).openConnection();
+                int code = connection.getResponseCode();
+                if (code == CalibrationServer.ERROR_CODE) {
+                    errors++;
+                } else {
+                    assertEquals(code, 200);
+                    try (InputStream in = connection.getInputStream()) {
+                        assertEquals(in.read(new byte[100]), 10);
+                    }
+                }
+                assertTrue(System.nanoTime() - start >= 20_000_000, "latency " + (System.nanoTime() - start));
+                // every 4th request is an error
+                assertEquals(errors, i / 4);
+            }
+            assertEquals(server.getRequests(), 8);
+        }
+    }
+
+    /**
+     * Checks that the server doesn't accept the error rate more than 100%
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void serverWrongErrorRateTest() throws IOException {
+        new CalibrationServer(0, 0, 101).close();
+    }
+
+    /**
+     * Checks that every engine is measured with every concurrency level and the measured values are
+     * close to the injected ones
+     */
+    @Test
+    public void runTest() throws IOException {
+        Calibration calibration = new Calibration(5, 100, 10, "curl", 21, 1, 4);
+        List<Calibration.Row> rows = calibration.run();
+
+        assertEquals(rows.size(), 6);
+        for (Calibration.Row row : rows) {
+            String name = row.engine + " " + row.concurrency;
+            assertEquals(row.summary.getRequests(), 20, name);
+            assertTrue(row.getOverhead(50) >= 0, name + " overhead " + row.getOverhead(50));
+            assertEquals(row.getErrorsPercent(), 10, 5, name);
+            assertEquals(row.getAverageSize(), 100, 0.001, name);
+        }
+        assertEquals(rows.get(0).engine, RequestEngine.Type.CURL);
+        assertEquals(rows.get(1).concurrency, 4);
+        String text = calibration.toString();
+        assertTrue(text.startsWith("Calibration: injected delay 5 ms, size 100 bytes, errors 10%, 21 requests per run:"),
+                text);
+        assertTrue(text.contains("overhead p99"), text);
+        assertTrue(text.matches("(?s).*\\n\\s+nio\\s+4\\s+20\\s.*"), text);
+    }
+
+    /**
+     * Checks that curl is not calibrated without its command
+     */
+    @Test
+    public void runWithoutCurlTest() throws IOException {
+        List<Calibration.Row> rows = new Calibration(0, 0, 0, null, 2, 1).run();
+
+        assertEquals(rows.size(), 2);
+        assertEquals(rows.get(0).engine, RequestEngine.Type.HTTP);
+        assertEquals(rows.get(1).engine, RequestEngine.Type.NIO);
+    }
+}
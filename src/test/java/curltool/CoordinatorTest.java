@@ -0,0 +1,101 @@
+package curltool;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Coordinator</code> and <code>curltool.Agent</code>
+ */
+public class CoordinatorTest {
+
+    private HttpServer server;
+    private String url;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 100);
+        server.createContext("/", exchange -> {
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static PrintStream silent() {
+        return new PrintStream(new ByteArrayOutputStream());
+    }
+
+    /**
+     * Checks that the agents execute their shares of the count and the rate and the coordinator merges them
+     */
+    @Test(timeOut = 20_000)
+    public void mergeAgentsTest() throws Exception {
+        ExecutorService agents = Executors.newFixedThreadPool(3);
+        try (Coordinator coordinator = new Coordinator(0, 3, silent())) {
+            List<Future<CurlCmd>> runs = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                runs.add(agents.submit(() -> new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO)
+                        .setUrlToTest(url).setCount(31).setRate(60).setConsole(silent())
+                        .setAgent("127.0.0.1:" + coordinator.getPort()).execute()));
+            }
+
+            Report report = coordinator.run().getReport();
+
+            assertEquals(report.getFirst().getSuccessful(), 3);
+            assertEquals(report.getThen().getSuccessful(), 28);
+            assertEquals(report.getThen().getErrors(), 0);
+            assertEquals(report.getSchedule().getRate(), 60.0);
+            long counts = 0;
+            for (Future<CurlCmd> run : runs) {
+                Report agentReport = run.get().getReport();
+                assertEquals(agentReport.getSchedule().getRate(), 20.0);
+                counts += agentReport.getThen().getSuccessful();
+            }
+            assertEquals(counts, 28);
+            // agents are started at the same time, so their windows overlap and the rates are added
+            double rps = report.getThen().getRequestsPerSecond();
+            assertTrue(rps > 30, "requests per second " + rps);
+        } finally {
+            agents.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the failure of an agent fails the distributed run
+     */
+    @Test(timeOut = 20_000, expectedExceptions = IOException.class, expectedExceptionsMessageRegExp = "Agent 1 .*")
+    public void failedAgentTest() throws Exception {
+        ExecutorService agents = Executors.newSingleThreadExecutor();
+        try (Coordinator coordinator = new Coordinator(0, 1, silent())) {
+            // target error couldn't be shared
+            agents.submit(() -> new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(url)
+                    .setCount(31).setTargetError(0.05).setConsole(silent())
+                    .setAgent("127.0.0.1:" + coordinator.getPort()).execute());
+
+            coordinator.run();
+        } finally {
+            agents.shutdownNow();
+        }
+    }
+}
@@ -49,6 +49,17 @@ public class CurlCmdBuilderTest {
                 .execute();
     }
 
+    /**
+     * Checks that curl command is not required by the http engine
+     */
+    @Test
+    public void executeHttpEngineWithoutCmd() {
+        builder.setEngine(RequestEngine.Type.HTTP)
+                .setUrlToTest("http://localhost")
+                .execute();
+        assertEquals(this.curlCmd.countExecuteCalls, 1);
+    }
+
     @DataProvider(name = "Positive")
     public static Object[][] positiveData() {
         return new Object[][]{
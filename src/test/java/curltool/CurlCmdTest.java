@@ -1,44 +1,60 @@
 package curltool;
 
-import org.springframework.test.util.ReflectionTestUtils;
+import com.sun.net.httpserver.HttpServer;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
-import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 /**
- * Unit tests for <code>curltool.CurlCmd</code> methods
+ * Unit tests for <code>curltool.CurlCmd</code> methods.
+ * Requests are executed against the loopback <code>CalibrationServer</code> and checked by the report of the run.
  */
 public class CurlCmdTest {
 
     // todo need to add more tests for different states of CurlCmd and methods
 
-    private CurlCmdStartProcessAndWaitForResultMock curlCmd;
     private CurlCmd.Builder builder;
 
     @BeforeMethod
     public void setup() {
         builder = new CurlCmd.Builder();
-        curlCmd = new CurlCmdStartProcessAndWaitForResultMock();
-        ReflectionTestUtils.setField(builder, "curlCmd", curlCmd);
         builder.setCurlCmd("curlCmd")
                 .setUrlToTest("urlToTest");
     }
 
     /**
-     * Checks that logs count equals to default count if count is not set
+     * Checks that requests count equals to default count if count is not set
      */
     @Test
-    public void executeDefaultCountTest() {
-        CurlCmd curl = builder.execute();
-        List<File> resultLogs = (List<File>) ReflectionTestUtils.getField(curl, "logs");
-        assertSame(CurlCmd.DEFAULT_COUNT, resultLogs.size());
-        assertSame(CurlCmd.DEFAULT_COUNT, this.curlCmd.callCount);
+    public void executeDefaultCountTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            Report report = builder(server, RequestEngine.Type.NIO).execute().getReport();
+            assertEquals(requestsCount(report), CurlCmd.DEFAULT_COUNT);
+            assertEquals(server.getRequests(), CurlCmd.DEFAULT_COUNT);
+        }
     }
 
     @DataProvider(name = "LogsCount")
@@ -51,14 +67,563 @@ public class CurlCmdTest {
     }
 
     /**
-     * Checks that if count is set for a proper value, the result logs count and method calls count will be equal to set count
+     * Checks that if count is set for a proper value, the result requests count and the requests received by
+     * the server will be equal to set count
      */
     @Test(dataProvider = "LogsCount")
-    public void executeCountTest(Integer count) {
-        CurlCmd curl = builder.setCount(count).execute();
-        List<File> resultLogs = (List<File>) ReflectionTestUtils.getField(curl, "logs");
-        assertSame(count, resultLogs.size());
-        assertSame(count, this.curlCmd.callCount);
+    public void executeCountTest(Integer count) throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            Report report = builder(server, RequestEngine.Type.NIO).setCount(count).execute().getReport();
+            assertEquals(requestsCount(report), (long) count);
+            assertEquals(server.getRequests(), (long) count);
+        }
+    }
+
+    @DataProvider(name = "Concurrency")
+    public static Object[][] concurrencyData() {
+        return new Object[][]{
+                {2, 1},
+                {10, 4},
+                {100, 8},
+                {5, 16}
+        };
+    }
+
+    /**
+     * Checks that if concurrency is set, all the requests are still executed and all the samples are collected
+     */
+    @Test(dataProvider = "Concurrency")
+    public void executeConcurrentlyTest(Integer count, Integer concurrency) throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            Report report = builder(server, RequestEngine.Type.HTTP).setCount(count).setConcurrency(concurrency)
+                    .execute().getReport();
+            assertEquals(requestsCount(report), (long) count);
+            assertEquals(report.getThen().getSuccessful(), count - 1);
+            assertEquals(server.getRequests(), (long) count);
+        }
+    }
+
+    @DataProvider(name = "Batch")
+    public static Object[][] batchData() {
+        return new Object[][]{
+                {2, 5, 2},
+                {10, 3, 4},
+                {100, 10, 11},
+                {100, 33, 4}
+        };
+    }
+
+    /**
+     * Checks that every batch is executed by one curl process with one log file, and all the requests are executed
+     */
+    @Test(dataProvider = "Batch")
+    public void executeBatchTest(Integer count, Integer batch, Integer logsCount) throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 10, 0)) {
+            List<Path> before = logDirs();
+            CurlCmd.Builder builder = builder(server, RequestEngine.Type.CURL).setCount(count).setBatch(batch)
+                    .setConcurrency(2);
+            builder.setDeleteLogs(false);
+            Report report = builder.execute().getReport();
+
+            List<Path> created = logDirs();
+            created.removeAll(before);
+            assertEquals(created.size(), 1);
+            try {
+                assertEquals(logFiles(created.get(0)).size(), (int) logsCount);
+            } finally {
+                for (Path log : logFiles(created.get(0))) {
+                    Files.delete(log);
+                }
+                Files.delete(created.get(0));
+            }
+            assertEquals(requestsCount(report), (long) count);
+            assertEquals(server.getRequests(), (long) count);
+        }
+    }
+
+    /**
+     * Checks that no logs are written if they should be deleted
+     */
+    @Test
+    public void executeWithoutLogsTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 10, 0)) {
+            List<Path> before = logDirs();
+            Report report = builder(server, RequestEngine.Type.CURL).setCount(10).setBatch(3).execute().getReport();
+
+            assertEquals(logDirs(), before);
+            assertEquals(requestsCount(report), 10);
+        }
+    }
+
+    /**
+     * Checks that curl args of a batch repeat the transfer for every request separating them with '--next'
+     */
+    @Test
+    public void curlArgsBatchTest() throws IOException {
+        builder.setParallelMax(2);
+        builder.addHeader("Accept: */*");
+        String[] args = builder.build().curlArgs(3, new ArrayList<>());
+        List<String> argsList = Arrays.asList(args);
+
+        assertEquals(argsList.get(0), "curlCmd");
+        assertEquals(argsList.subList(1, 4), Arrays.asList("--parallel", "--parallel-max", "2"));
+        assertEquals(argsList.stream().filter("--next"::equals).count(), 2);
+        assertEquals(argsList.stream().filter("urlToTest"::equals).count(), 3);
+        assertEquals(argsList.stream().filter("Accept: */*"::equals).count(), 3);
+        assertEquals(argsList.get(argsList.size() - 1), "urlToTest");
+        // logs are deleted, so the bodies are discarded by curl
+        assertEquals(argsList.stream().filter("-o"::equals).count(), 3);
+    }
+
+    /**
+     * Checks that the templated body and form value are rendered to a file for every transfer, so the args have
+     * only their paths, and the static file is passed to curl as it is
+     */
+    @Test
+    public void curlArgsTemplateTest() throws IOException {
+        Path file = Files.createTempFile("body", ".txt");
+        List<Path> bodyFiles = new ArrayList<>();
+        try {
+            Files.write(file, "static".getBytes(StandardCharsets.UTF_8));
+            builder.setTemplate(true);
+            builder.addBodyArg("id={{seq}}");
+            builder.addBodyArg("@" + file);
+            builder.addFormArg("trace={{seq}}");
+            List<String> argsList = Arrays.asList(builder.build().curlArgs(3, bodyFiles));
+
+            assertEquals(bodyFiles.size(), 6);
+            assertEquals(argsList.stream().filter("--data-binary"::equals).count(), 3);
+            assertEquals(argsList.stream().filter(("@" + file)::equals).count(), 3);
+            for (int i = 0; i < 3; i++) {
+                // every transfer has its form value and its body, and the args refer to their files
+                Path value = bodyFiles.get(2 * i);
+                Path body = bodyFiles.get(2 * i + 1);
+                assertEquals(new String(Files.readAllBytes(value), StandardCharsets.UTF_8), String.valueOf(i + 1));
+                assertEquals(new String(Files.readAllBytes(body), StandardCharsets.UTF_8), "id=" + (i + 1));
+                assertTrue(argsList.contains("trace=<" + value), argsList.toString());
+                assertTrue(argsList.contains("@" + body), argsList.toString());
+            }
+            assertTrue(argsList.stream().noneMatch(arg -> arg.contains("id=")), argsList.toString());
+        } finally {
+            Files.delete(file);
+            for (Path bodyFile : bodyFiles) {
+                Files.delete(bodyFile);
+            }
+        }
+    }
+
+    /**
+     * Checks that the body args are passed to curl as they are if the templates are off, so the files are not read
+     */
+    @Test
+    public void curlArgsNoTemplateTest() throws IOException {
+        builder.addBodyArg("id={{seq}}");
+        builder.addBodyArg("@no-such-file");
+        List<Path> bodyFiles = new ArrayList<>();
+        List<String> argsList = Arrays.asList(builder.build().curlArgs(2, bodyFiles));
+
+        assertTrue(bodyFiles.isEmpty());
+
+        assertEquals(argsList.stream().filter("-d"::equals).count(), 4);
+        assertEquals(argsList.stream().filter("id={{seq}}"::equals).count(), 2);
+        assertEquals(argsList.stream().filter("@no-such-file"::equals).count(), 2);
+    }
+
+    /**
+     * Checks that the statistics is counted by all the write-out blocks of the curl output
+     */
+    @Test
+    public void countStatisticsBatchTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 100, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.CURL).setCount(7).setBatch(3).execute();
+
+            Report.Summary then = curl.getReport().getThen();
+            assertEquals(curl.getReport().getFirst().getSuccessful(), 1);
+            assertEquals(then.getSuccessful(), 6);
+            assertEquals(then.getTotal().getCount(), 6);
+            assertEquals(then.getDownloaded(), 600);
+            assertTrue(curl.countStatistics().contains("- size, bytes - total 600, average 100"),
+                    curl.countStatistics());
+        }
+    }
+
+    /**
+     * Checks that responses are counted by their http codes and the phases are counted by the write-out times
+     */
+    @Test
+    public void countStatisticsPhasesAndCodesTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 1000, 25)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.CURL).setCount(9).setBatch(4).execute();
+
+            // every 4th request is an error, the first one is not
+            Report.Summary then = curl.getReport().getThen();
+            assertEquals(then.getHttpCodes().get(200), Long.valueOf(6));
+            assertEquals(then.getHttpCodes().get(CalibrationServer.ERROR_CODE), Long.valueOf(2));
+            assertEquals(then.getErrors(), 0);
+            assertEquals(then.getDownloaded(), 6000);
+            assertEquals(then.getTcp().getCount(), 8);
+            assertEquals(then.getTransfer().getCount(), 8);
+            String statistics = curl.countStatistics();
+            assertTrue(statistics.contains("- connection - min "), statistics);
+            assertTrue(statistics.contains("- response transfer - min "), statistics);
+            assertTrue(statistics.contains("Http codes: 200 - 6, 500 - 2"), statistics);
+        }
+    }
+
+    /**
+     * Checks that failed requests are counted by their exit codes
+     */
+    @Test
+    public void countStatisticsErrorsTest() throws IOException {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = socket.getLocalPort();
+        }
+        CurlCmd.Builder builder = new CurlCmd.Builder().setCurlCmd("curl")
+                .setUrlToTest("http://127.0.0.1:" + port + "/").setCount(3);
+
+        CurlCmd curl = builder.execute();
+        Report.Summary then = curl.getReport().getThen();
+        assertEquals(then.getErrors(), 2);
+        assertEquals(then.getExitCodes(), Collections.singletonMap(Sample.CURLE_COULDNT_CONNECT, 2L));
+        assertTrue(curl.countStatistics().contains("Errors: 2 (exit code 7 - 2)"), curl.countStatistics());
+    }
+
+    /**
+     * Checks that timeouted requests are counted as errors, not in the times
+     */
+    @Test
+    public void timeoutedRequestsTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(300, 0, 0)) {
+            CurlCmd.Builder builder = builder(server, RequestEngine.Type.HTTP).setCount(5);
+            builder.setTimeout(100);
+            CurlCmd curl = builder.execute();
+
+            Report report = curl.getReport();
+            assertEquals(report.getFirst().getErrors(), 1);
+            assertEquals(report.getThen().getErrors(), 4);
+            assertEquals(report.getThen().getTotal().getCount(), 0);
+            assertTrue(curl.countStatistics().contains("Errors: 4 (exit code 28 - 4)"), curl.countStatistics());
+        }
+    }
+
+    /**
+     * Checks that with the rate requests are sent by the schedule and the corrected latency is counted
+     */
+    @Test
+    public void executeWithRateTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            long start = System.nanoTime();
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setCount(11).setRate(200).setConcurrency(2)
+                    .execute();
+            long elapsed = System.nanoTime() - start;
+
+            // 10 requests after the first one are sent with 5 ms interval
+            assertTrue(elapsed >= TimeUnit.MILLISECONDS.toNanos(45), "elapsed " + elapsed);
+            Report.Schedule schedule = curl.getReport().getSchedule();
+            assertEquals(schedule.getCorrected().getCount(), 10);
+            assertEquals(schedule.getSendDelay().getCount(), 10);
+            assertTrue(curl.countStatistics().contains("- target rate - 200 requests per second"));
+        }
+    }
+
+    /**
+     * Checks that if responses are slower than the schedule, the delay is counted in the corrected latency
+     * and the report warns that the client couldn't keep up
+     */
+    @Test
+    public void executeWithRateLateTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(20, 0, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.HTTP).setCount(6).setRate(1000).execute();
+
+            Report report = curl.getReport();
+            double total = report.getThen().getTotal().getMax();
+            double corrected = report.getSchedule().getCorrected().getMax();
+            assertTrue(total >= 20, "total max " + total);
+            assertTrue(corrected >= 80, "corrected max " + corrected);
+            assertTrue(curl.countStatistics().contains("Warning: the client couldn't keep up with the schedule"));
+        }
+    }
+
+    /**
+     * Checks that the rate couldn't be used with batches
+     */
+    @Test(expectedExceptions = RuntimeException.class)
+    public void executeWithRateAndBatchTest() {
+        builder.setRate(10).setBatch(2).execute();
+    }
+
+    /**
+     * Checks that warm-up requests are executed but not counted in the steady state statistics
+     */
+    @Test
+    public void executeWithWarmupCountTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setCount(30).setWarmupCount(10).setConcurrency(3)
+                    .execute();
+
+            Report report = curl.getReport();
+            assertEquals(server.getRequests(), 30);
+            assertEquals(report.getFirst().getRequests(), 1);
+            assertEquals(report.getWarmup().getRequests(), 9);
+            assertEquals(report.getThen().getRequests(), 20);
+            assertTrue(curl.countStatistics().contains("- requests - 9"));
+        }
+    }
+
+    /**
+     * Checks that warm-up count should be less than the count of calls
+     */
+    @Test(expectedExceptions = RuntimeException.class)
+    public void executeWithTooManyWarmupsTest() {
+        builder.setCount(10).setWarmupCount(10).execute();
+    }
+
+    /**
+     * Checks that if only the duration is set, requests are executed till the deadline
+     */
+    @Test
+    public void executeWithDurationTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(10, 0, 0)) {
+            long start = System.nanoTime();
+            Report report = builder(server, RequestEngine.Type.HTTP).setWarmupDuration(100).setDuration(300)
+                    .setConcurrency(2).execute().getReport();
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+            assertTrue(elapsed >= 400 && elapsed < 2000, "elapsed " + elapsed);
+            long warmup = report.getWarmup().getRequests();
+            long then = report.getThen().getRequests();
+            assertTrue(warmup > 5 && warmup <= 22, "warm-up " + warmup);
+            assertTrue(then > 20 && then <= 62, "then " + then);
+            assertTrue(server.getRequests() >= 1 + warmup + then, "requests " + server.getRequests());
+        }
+    }
+
+    /**
+     * Checks that if both the duration and the count are set, requests are executed till the count
+     */
+    @Test
+    public void executeWithDurationAndCountTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            builder(server, RequestEngine.Type.NIO).setCount(50).setDuration(60_000).setConcurrency(4).execute();
+            assertEquals(server.getRequests(), 50);
+        }
+    }
+
+    /**
+     * Checks that requests in flight which are not completed in time after the deadline are cancelled
+     */
+    @Test
+    public void executeCancelAfterDeadlineTest() throws IOException {
+        AtomicInteger requests = new AtomicInteger();
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", exchange -> {
+            if (requests.incrementAndGet() == 1) {
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+                return;
+            }
+            // the body is sent byte by byte faster than the read timeout, so the request is never timeouted
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 3000; i++) {
+                    os.write('x');
+                    os.flush();
+                    TimeUnit.MILLISECONDS.sleep(20);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        ExecutorService handlers = Executors.newCachedThreadPool();
+        server.setExecutor(handlers);
+        server.start();
+        try {
+            CurlCmd.Builder builder = new CurlCmd.Builder().setEngine(RequestEngine.Type.HTTP)
+                    .setUrlToTest("http://127.0.0.1:" + server.getAddress().getPort() + "/");
+            builder.setTimeout(200);
+            CurlCmd curl = builder.setDuration(100).setConcurrency(3).execute();
+
+            assertEquals(curl.getReport().getCancelled(), 3);
+            assertTrue(curl.countStatistics().contains("Cancelled: 3 requests"), curl.countStatistics());
+        } finally {
+            server.stop(0);
+            handlers.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the steady state is stopped as soon as the confidence interval of the mean is narrow enough
+     */
+    @Test
+    public void executeUntilConvergedTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(10, 0, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setCount(100_000).setConcurrency(2)
+                    .setTargetError(2).execute();
+
+            Report.Estimate estimate = curl.getReport().getEstimate();
+            assertTrue(estimate.isConverged(), "error " + estimate.getRelativeError());
+            assertEquals(estimate.getMetric(), "mean");
+            assertTrue(estimate.getCount() < 1000, "count " + estimate.getCount());
+            assertTrue(estimate.getValue() >= 10, "mean " + estimate.getValue());
+            assertTrue(curl.countStatistics().contains("Estimate: mean "), curl.countStatistics());
+            assertEquals(server.getRequests(), 1 + estimate.getCount());
+        }
+    }
+
+    /**
+     * Checks that the estimate which doesn't converge is stopped by the count
+     */
+    @Test
+    public void executeNotConvergedTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setCount(201).setTargetError(0.1)
+                    .setTargetMetric("p90").execute();
+
+            Report.Estimate estimate = curl.getReport().getEstimate();
+            assertEquals(estimate.getCount(), 200);
+            assertEquals(estimate.getMetric(), "p90");
+            assertTrue(!estimate.isConverged());
+        }
+    }
+
+    @DataProvider(name = "WrongTargetMetric")
+    public static Object[][] wrongTargetMetricData() {
+        return new Object[][]{{"median"}, {"p0"}, {"p100"}, {"99"}};
+    }
+
+    /**
+     * Checks that the target metric is the mean or a percentile
+     */
+    @Test(dataProvider = "WrongTargetMetric", expectedExceptions = NumberFormatException.class)
+    public void setWrongTargetMetricTest(String metric) {
+        builder.setTargetMetric(metric);
+    }
+
+    /**
+     * Checks that the concurrency is stepped till p99 latency breaches the SLO and the knee is the last step that met it
+     */
+    @Test
+    public void executeRampByConcurrencyTest() throws IOException {
+        // the server handles one request at once, so the latency is about the delay multiplied by the concurrency,
+        // the SLO is between the latencies of the concurrency 2 and 3 with the margin for a loaded machine
+        try (CalibrationServer server = new CalibrationServer(50, 0, 0, 1)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO)
+                    .setRamp(CurlCmd.RampBy.CONCURRENCY, 1, 1, 8).setSloLatency(135).setDuration(300).execute();
+
+            Report report = curl.getReport();
+            Report.Ramp ramp = report.getRamp();
+            assertEquals(ramp.getSteps().size(), 3);
+            assertEquals(ramp.getKnee().getLoad(), 2.0);
+            assertTrue(ramp.isBreached());
+            assertTrue(ramp.getSteps().get(2).getLatency().getMax() > 135,
+                    "max " + ramp.getSteps().get(2).getLatency().getMax());
+            String text = curl.countStatistics();
+            assertTrue(text.contains("Ramp by concurrency, SLO p99 <= 135 ms and errors <= 1%:"), text);
+            assertTrue(text.contains("Knee: concurrency 2 - "), text);
+            // all the steps are counted in the steady state
+            assertEquals(report.getThen().getRequests(),
+                    ramp.getSteps().stream().mapToLong(step -> step.getSummary().getRequests()).sum());
+        }
+    }
+
+    /**
+     * Checks that the rate is stepped by the schedule and the ramp ends at the max rate if the SLO is met
+     */
+    @Test
+    public void executeRampByRateTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setRamp(CurlCmd.RampBy.RATE, 50, 50, 150)
+                    .setDuration(200).setConcurrency(2).execute();
+
+            Report.Ramp ramp = curl.getReport().getRamp();
+            assertEquals(ramp.getSteps().size(), 3);
+            assertEquals(ramp.getKnee().getLoad(), 150.0);
+            assertTrue(!ramp.isBreached());
+            long previous = 0;
+            for (Report.Step step : ramp.getSteps()) {
+                long requests = step.getSummary().getRequests();
+                // a loaded machine may send late and fit fewer requests into the step, but never more
+                assertTrue(requests <= step.getLoad() / 5 + 2 && requests >= step.getLoad() / 5 * 0.75,
+                        step.getLoad() + " - " + requests);
+                assertTrue(requests > previous, step.getLoad() + " - " + requests);
+                assertEquals(step.getLatency().getCount(), requests);
+                previous = requests;
+            }
+            assertTrue(curl.countStatistics().contains("(the SLO was met up to the max rate)"));
+        }
+    }
+
+    /**
+     * Checks that a step with errors above the SLO breaches it
+     */
+    @Test
+    public void executeRampErrorsTest() throws IOException {
+        try (CalibrationServer server = new CalibrationServer(0, 0, 10)) {
+            // the step should have enough requests for the percent of the evenly spread errors
+            CurlCmd curl = builder(server, RequestEngine.Type.NIO).setExpectedStatus(200)
+                    .setRamp(CurlCmd.RampBy.CONCURRENCY, 1, 1, 4).setSloErrors(5).setDuration(300).execute();
+
+            Report.Ramp ramp = curl.getReport().getRamp();
+            assertEquals(ramp.getSteps().size(), 1);
+            assertEquals(ramp.getKnee(), null);
+            assertEquals(ramp.getSteps().get(0).getErrorsPercent(), 10, 2);
+            assertTrue(curl.countStatistics().contains("Knee: not found"));
+        }
+    }
+
+    @DataProvider(name = "WrongRamp")
+    public static Object[][] wrongRampData() {
+        return new Object[][]{
+                {CurlCmd.RampBy.RATE, 0, 1, 10},
+                {CurlCmd.RampBy.RATE, 10, 0, 10},
+                {CurlCmd.RampBy.RATE, 10, 1, 5},
+                {CurlCmd.RampBy.CONCURRENCY, 1, 0.5, 4},
+        };
+    }
+
+    /**
+     * Checks that the ramp should step the load up from a positive start
+     */
+    @Test(dataProvider = "WrongRamp", expectedExceptions = NumberFormatException.class)
+    public void setWrongRampTest(CurlCmd.RampBy rampBy, double start, double step, double max) {
+        builder.setRamp(rampBy, start, step, max);
+    }
+
+    /**
+     * Checks that requests of the scenario endpoints are mixed by their weights and counted for every endpoint
+     */
+    @Test
+    public void executeScenarioTest() throws IOException {
+        Path scenario = Files.createTempFile("scenario", ".ini");
+        try (CalibrationServer server = new CalibrationServer(0, 0, 0)) {
+            Files.write(scenario, ("[a]\nurl = " + server.getUrl() + "a\nweight = 3\n" +
+                    "[b]\nurl = " + server.getUrl() + "b\n" +
+                    "[c]\nurl = " + server.getUrl() + "c\nweight = 6\n").getBytes(StandardCharsets.UTF_8));
+            CurlCmd curl = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setScenario(scenario.toString())
+                    .setCount(101).setConcurrency(4).execute();
+
+            Report report = curl.getReport();
+            List<Report.Summary> endpoints = report.getEndpoints();
+            assertEquals(endpoints.stream().map(Report.Summary::getName).collect(Collectors.toList()),
+                    Arrays.asList("a", "b", "c"));
+            assertEquals(endpoints.get(0).getRequests(), 30);
+            assertEquals(endpoints.get(1).getRequests(), 10);
+            assertEquals(endpoints.get(2).getRequests(), 60);
+            assertEquals(report.getThen().getRequests(), 100);
+            assertEquals(server.getRequests(), 101);
+            assertTrue(curl.countStatistics().contains("Endpoints:"));
+        } finally {
+            Files.delete(scenario);
+        }
+    }
+
+    /**
+     * Checks that if concurrency is less then 1, RuntimeException will be thrown
+     */
+    @Test(expectedExceptions = RuntimeException.class)
+    public void executeWrongConcurrencyTest() {
+        builder.setConcurrency(0).execute();
     }
 
     @DataProvider(name = "WrongCount")
@@ -78,14 +643,27 @@ public class CurlCmdTest {
         builder.setCount(count).execute();
     }
 
-    class CurlCmdStartProcessAndWaitForResultMock extends CurlCmd {
+    // builder of the run against the server by the engine, curl is run from the PATH
+    private static CurlCmd.Builder builder(CalibrationServer server, RequestEngine.Type engine) {
+        return new CurlCmd.Builder().setEngine(engine).setCurlCmd("curl").setUrlToTest(server.getUrl());
+    }
+
+    // count of the first request and the requests of the steady state
+    private static long requestsCount(Report report) {
+        return report.getFirst().getRequests() + report.getThen().getRequests();
+    }
 
-        private int callCount = 0;
+    // directories of the kept logs, they are created in the working directory
+    private static List<Path> logDirs() throws IOException {
+        try (Stream<Path> files = Files.list(Paths.get("").toAbsolutePath())) {
+            return files.filter(Files::isDirectory).filter(dir -> dir.getFileName().toString().startsWith("temp"))
+                    .collect(Collectors.toList());
+        }
+    }
 
-        @Override
-        protected boolean startProcessAndWaitForResult(String[] args, File logFile) throws InterruptedException, IOException {
-            callCount++;
-            return true;
+    private static List<Path> logFiles(Path logDir) throws IOException {
+        try (Stream<Path> files = Files.list(logDir)) {
+            return files.collect(Collectors.toList());
         }
     }
 
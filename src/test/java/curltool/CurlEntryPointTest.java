@@ -0,0 +1,52 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for <code>curltool.CurlEntryPoint</code> methods
+ */
+public class CurlEntryPointTest {
+
+    @DataProvider(name = "Durations")
+    public static Object[][] durationData() {
+        return new Object[][]{
+                {"500ms", 500L},
+                {"30s", 30_000L},
+                {"1.5s", 1_500L},
+                {"5m", 300_000L},
+                {"1h", 3_600_000L},
+                {"90", 90_000L}
+        };
+    }
+
+    /**
+     * Checks that durations are parsed to milliseconds, the number without unit is in seconds
+     */
+    @Test(dataProvider = "Durations")
+    public void parseDurationTest(String duration, Long millis) {
+        assertEquals(CurlEntryPoint.parseDuration(duration, TimeUnit.SECONDS), (long) millis);
+    }
+
+    @DataProvider(name = "WrongDurations")
+    public static Object[][] wrongDurationData() {
+        return new Object[][]{
+                {""},
+                {"s"},
+                {"10d"},
+                {"-5s"}
+        };
+    }
+
+    /**
+     * Checks that wrong durations couldn't be parsed
+     */
+    @Test(expectedExceptions = NumberFormatException.class, dataProvider = "WrongDurations")
+    public void parseWrongDurationTest(String duration) {
+        CurlEntryPoint.parseDuration(duration, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,98 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+/**
+ * Unit tests for <code>curltool.Endpoint</code> scenario reading
+ */
+public class EndpointTest {
+
+    private static List<Endpoint> read(String scenario) throws IOException {
+        return Endpoint.readScenario(new BufferedReader(new StringReader(scenario)),
+                new HashSet<>(Collections.singletonList("Authorization: token")));
+    }
+
+    /**
+     * Checks that all the keys of the endpoints are read and the common headers are added to every endpoint
+     */
+    @Test
+    public void readScenarioTest() throws IOException {
+        List<Endpoint> endpoints = read("# endpoints\n" +
+                "[search]\n" +
+                "url = http://host/search?q=a b\n" +
+                "header = Accept: application/json\n" +
+                "weight = 5\n" +
+                "\n" +
+                "[login]\n" +
+                "  url=http://host/login\n" +
+                "method = POST\n" +
+                "body = user=name\n" +
+                "body = password=secret\n" +
+                "form = file=@data.txt\n");
+
+        assertEquals(endpoints.size(), 2);
+        Endpoint search = endpoints.get(0);
+        assertEquals(search.name, "search");
+        assertEquals(search.url, "http://host/search?q=a%20b");
+        assertNull(search.method);
+        assertEquals(search.headers, new HashSet<>(Arrays.asList("Authorization: token", "Accept: application/json")));
+        assertEquals(search.weight, 5.0);
+        assertEquals(search.rate, 0.0);
+
+        Endpoint login = endpoints.get(1);
+        assertEquals(login.url, "http://host/login");
+        assertEquals(login.method, "POST");
+        assertEquals(login.headers, Collections.singleton("Authorization: token"));
+        assertEquals(login.bodyArgs, new HashSet<>(Arrays.asList("user=name", "password=secret")));
+        assertEquals(login.formArgs, Collections.singleton("file=@data.txt"));
+        assertEquals(login.weight, Endpoint.DEFAULT_WEIGHT);
+        assertEquals(Endpoint.totalRate(endpoints), 0.0);
+    }
+
+    /**
+     * Checks that the rates are used as the weights and their sum is the rate of the scenario
+     */
+    @Test
+    public void readScenarioRatesTest() throws IOException {
+        List<Endpoint> endpoints = read("[a]\nurl = http://host/a\nrate = 2.5\n[b]\nurl = http://host/b\nrate = 7.5\n");
+        assertEquals(endpoints.get(0).weight, 2.5);
+        assertEquals(endpoints.get(1).weight, 7.5);
+        assertEquals(Endpoint.totalRate(endpoints), 10.0);
+    }
+
+    @DataProvider(name = "WrongScenarios")
+    public static Object[][] wrongScenarioData() {
+        return new Object[][]{
+                {""},
+                {"url = http://host/\n"},
+                {"[a]\n"},
+                {"[a]\nurl = http://host/\nunknown = 1\n"},
+                {"[a]\nurl = http://host/\nweight = 0\n"},
+                {"[a]\nurl = http://host/\nweight = x\n"},
+                {"[a]\nurl = http://host/\n[a]\nurl = http://host/\n"},
+                {"[a]\nurl = http://host/\nrate = 1\n[b]\nurl = http://host/\n"},
+                {"[]\nurl = http://host/\n"},
+                {"[a]\nhttp://host/\n"}
+        };
+    }
+
+    /**
+     * Checks that wrong scenarios are rejected
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class, dataProvider = "WrongScenarios")
+    public void readWrongScenarioTest(String scenario) throws IOException {
+        read(scenario);
+    }
+}
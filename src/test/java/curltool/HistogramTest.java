@@ -0,0 +1,116 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Histogram</code>
+ */
+public class HistogramTest {
+
+    private static final long HIGHEST = 3_600_000_000L;
+
+    @DataProvider(name = "Precision")
+    public static Object[][] precisionData() {
+        return new Object[][]{
+                {1},
+                {2},
+                {3},
+                {4}
+        };
+    }
+
+    /**
+     * Checks that percentiles differ from the exact ones not more than the precision allows
+     */
+    @Test(dataProvider = "Precision")
+    public void percentilesPrecisionTest(Integer digits) {
+        Histogram histogram = new Histogram(HIGHEST, digits);
+        Random random = new Random(digits);
+        long[] values = new long[100_000];
+        for (int i = 0; i < values.length; i++) {
+            // log-normal like latencies from microseconds to minutes
+            values[i] = (long) Math.exp(random.nextGaussian() * 2 + 9);
+            histogram.record(values[i]);
+        }
+        Arrays.sort(values);
+
+        for (double percentile : new double[]{1, 50, 90, 99, 99.9, 100}) {
+            long exact = values[(int) Math.ceil(percentile / 100 * values.length) - 1];
+            long value = histogram.getValueAtPercentile(percentile);
+            assertTrue(Math.abs(value - exact) <= 2 * exact / Math.pow(10, digits) + 1,
+                    "p" + percentile + ": " + value + " instead of " + exact);
+        }
+        assertEquals(histogram.getMin(), values[0]);
+        assertEquals(histogram.getMax(), values[values.length - 1]);
+        assertEquals(histogram.getTotalCount(), values.length);
+    }
+
+    /**
+     * Checks that small values are counted exactly and the mean and deviation are exact
+     */
+    @Test
+    public void exactValuesTest() {
+        Histogram histogram = new Histogram(HIGHEST, 3);
+        for (long v = 1; v <= 100; v++) {
+            histogram.record(v);
+        }
+        assertEquals(histogram.getValueAtPercentile(50), 50);
+        assertEquals(histogram.getValueAtPercentile(90), 90);
+        assertEquals(histogram.getValueAtPercentile(99.9), 100);
+        assertEquals(histogram.getMean(), 50.5, 1e-9);
+        assertEquals(histogram.getStdDeviation(), Math.sqrt((100 * 100 - 1) / 12.0), 1e-9);
+    }
+
+    /**
+     * Checks that merged histograms give the same result as one histogram with all the values
+     */
+    @Test
+    public void mergeTest() {
+        Histogram all = new Histogram(HIGHEST, 3);
+        Histogram first = all.copyLayout();
+        Histogram second = all.copyLayout();
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            long value = random.nextInt(1_000_000);
+            all.record(value);
+            (i % 3 == 0 ? first : second).record(value);
+        }
+        first.add(second);
+
+        assertEquals(first.getTotalCount(), all.getTotalCount());
+        assertEquals(first.getMin(), all.getMin());
+        assertEquals(first.getMax(), all.getMax());
+        assertEquals(first.getMean(), all.getMean(), 1e-6);
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            assertEquals(first.getValueAtPercentile(percentile), all.getValueAtPercentile(percentile));
+        }
+    }
+
+    /**
+     * Checks that values out of the trackable range are counted as the edge values
+     */
+    @Test
+    public void outOfRangeTest() {
+        Histogram histogram = new Histogram(1000, 2);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+        assertEquals(histogram.getMin(), 0);
+        assertEquals(histogram.getMax(), 1000);
+        assertEquals(histogram.getTotalCount(), 2);
+    }
+
+    /**
+     * Checks that histograms of different layouts couldn't be merged
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void mergeDifferentLayoutsTest() {
+        new Histogram(HIGHEST, 3).add(new Histogram(HIGHEST, 2));
+    }
+}
@@ -0,0 +1,156 @@
+package curltool;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.HttpClientEngine</code> against a local http server
+ */
+public class HttpClientEngineTest {
+
+    private HttpServer server;
+    private String url;
+    private volatile String lastMethod;
+    private volatile String lastBody;
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            lastMethod = exchange.getRequestMethod();
+            byte[] request = new byte[1024];
+            int n = exchange.getRequestBody().read(request);
+            lastBody = n < 0 ? "" : new String(request, 0, n, StandardCharsets.UTF_8);
+
+            byte[] response = "pong".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    /**
+     * Checks that the engine writes the response and all the times that are needed to count the statistics
+     */
+    @Test
+    public void executeWritesCurlWriteOut() throws Exception {
+        HttpClientEngine engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.emptySet(), false, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+        File log = File.createTempFile("curl", ".log");
+        log.deleteOnExit();
+
+        List<Sample> samples = new ArrayList<>();
+        assertTrue(engine.execute(1, log, samples::add));
+        assertEquals(samples.size(), 1);
+        assertTrue(new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8).startsWith("pong"));
+        Properties props = new Properties();
+        try (Reader reader = new FileReader(log)) {
+            props.load(reader);
+        }
+        assertEquals(props.getProperty("exitcode"), "0");
+        assertEquals(lastMethod, "GET");
+        double pretransfer = Double.parseDouble(props.getProperty(CurlCmd.TIME_PRETRANSFER));
+        double starttransfer = Double.parseDouble(props.getProperty(CurlCmd.TIME_STARTTRANSFER));
+        double total = Double.parseDouble(props.getProperty(CurlCmd.TIME_TOTAL));
+        assertTrue(pretransfer <= starttransfer && starttransfer <= total);
+    }
+
+    /**
+     * Checks that a sample is passed and a write-out block is written for every request of the batch
+     */
+    @Test
+    public void executeBatch() throws Exception {
+        HttpClientEngine engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.emptySet(), false, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+        File log = File.createTempFile("curl", ".log");
+        log.deleteOnExit();
+
+        AtomicInteger samples = new AtomicInteger();
+        assertTrue(engine.execute(3, log, sample -> samples.incrementAndGet()));
+        assertEquals(samples.get(), 3);
+        String text = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        assertEquals(text.split("\nexitcode=0\n", -1).length, 4);
+    }
+
+    /**
+     * Checks that body arguments are sent with POST method like curl '-d' arguments do
+     */
+    @Test
+    public void executeSendsBody() throws Exception {
+        HttpClientEngine engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.singleton("a=1"), false, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+        assertTrue(engine.execute(1, null, sample -> assertEquals(sample.exitCode, 0)));
+        assertEquals(lastMethod, "POST");
+        assertEquals(lastBody, "a=1");
+    }
+
+    /**
+     * Checks that the templated body is rendered for every request and the body is sent as is if the templates are off
+     */
+    @Test
+    public void executeRendersTemplate() throws Exception {
+        HttpClientEngine engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.singleton("n={{seq}}"), true, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+        assertTrue(engine.execute(12, null, sample -> assertEquals(sample.exitCode, 0)));
+        assertEquals(lastMethod, "POST");
+        assertEquals(lastBody, "n=12");
+
+        engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.singleton("n={{seq}}"), false, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+        assertTrue(engine.execute(1, null, sample -> assertEquals(sample.exitCode, 0)));
+        assertEquals(lastBody, "n={{seq}}");
+    }
+
+    /**
+     * Checks that the response which is not logged is counted and hashed
+     */
+    @Test
+    public void executeHashesBody() throws Exception {
+        HttpClientEngine engine = new HttpClientEngine(url, null, Collections.emptySet(), Collections.emptySet(),
+                Collections.emptySet(), false, null, CurlCmd.DEFAULT_TIMEOUT, false, true);
+        CRC32 expected = new CRC32();
+        expected.update("pong".getBytes(StandardCharsets.UTF_8));
+
+        assertTrue(engine.execute(2, null, sample -> {
+            assertEquals(sample.sizeDownload, 4);
+            assertEquals(sample.checksum, expected.getValue());
+        }));
+    }
+
+    /**
+     * Checks that a method which can't be sent by the engine is rejected on the engine creation
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unsupportedMethod() throws Exception {
+        new HttpClientEngine(url, "PATCH", Collections.emptySet(), Collections.emptySet(),
+                Collections.emptySet(), false, null, CurlCmd.DEFAULT_TIMEOUT, false, false);
+    }
+}
@@ -0,0 +1,105 @@
+package curltool;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static curltool.Samples.sample;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.IntervalReporter</code>
+ */
+public class IntervalReporterTest {
+
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private IntervalReporter reporter(long interval) {
+        output.reset();
+        return new IntervalReporter(interval, new PrintStream(output, true), new Histogram(3_600_000_000L, 3), 4);
+    }
+
+    // total time is in microseconds
+    private String[] lines() {
+        return output.toString().trim().split("\\R");
+    }
+
+    /**
+     * Checks that every report contains only the requests completed since the previous one
+     */
+    @Test
+    public void reportIntervalsTest() {
+        IntervalReporter reporter = reporter(1000);
+        for (int i = 1; i <= 100; i++) {
+            reporter.record(sample().httpCode(200).total(i * 1000).build());
+        }
+        reporter.record(sample().exitCode(7).httpCode(200).build());
+        reporter.report();
+        reporter.record(sample().httpCode(200).total(1250).build());
+        reporter.report();
+        reporter.report();
+
+        String[] lines = lines();
+        assertEquals(lines.length, 3);
+        assertTrue(lines[0].contains("requests 101, "), lines[0]);
+        // percentiles are precise up to the histogram resolution
+        assertTrue(lines[0].matches(".*errors 1, p50 50[.0-9]*, p90 90[.0-9]*, p99 99[.0-9]*, max 100[.0-9]*"),
+                lines[0]);
+        assertTrue(lines[1].contains("requests 1, "), lines[1]);
+        assertTrue(lines[1].contains("errors 0, p50 1.25, p90 1.25, p99 1.25, max 1.25"), lines[1]);
+        assertTrue(lines[2].endsWith("requests 0, per second 0, errors 0"), lines[2]);
+    }
+
+    /**
+     * Checks that requests recorded by many threads are all reported while the reporter is running
+     */
+    @Test
+    public void concurrentRecordTest() throws InterruptedException {
+        IntervalReporter reporter = reporter(20);
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        reporter.start();
+        for (int t = 0; t < 8; t++) {
+            workers.execute(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    reporter.record(sample().exitCode(i % 100 == 0 ? 7 : 0).httpCode(200).total(i % 1000).build());
+                }
+            });
+        }
+        workers.shutdown();
+        assertTrue(workers.awaitTermination(10, TimeUnit.SECONDS));
+        reporter.stop();
+
+        long requests = 0;
+        long errors = 0;
+        for (String line : lines()) {
+            requests += Long.parseLong(line.replaceAll(".*requests (\\d+),.*", "$1"));
+            errors += Long.parseLong(line.replaceAll(".*errors (\\d+).*", "$1"));
+        }
+        assertEquals(requests, 80_000);
+        assertEquals(errors, 800);
+    }
+
+    /**
+     * Checks that interval reports are printed while the requests are executed
+     */
+    @Test
+    public void executeWithReportIntervalTest() throws IOException {
+        output.reset();
+        try (CalibrationServer server = new CalibrationServer(5, 0, 0)) {
+            new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(server.getUrl())
+                    .setConsole(new PrintStream(output, true))
+                    .setDuration(350).setReportInterval(100).setConcurrency(2).execute();
+        }
+
+        String[] lines = lines();
+        assertTrue(lines.length >= 3 && lines.length <= 5, output.toString());
+        // the server responds after 5 ms
+        assertTrue(lines[0].matches(".*, p50 ([5-9]|\\d{2,})([.,]\\d+)?, .*"), lines[0]);
+    }
+}
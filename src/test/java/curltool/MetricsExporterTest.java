@@ -0,0 +1,101 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static curltool.Samples.sample;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.MetricsExporter</code>
+ */
+public class MetricsExporterTest {
+
+    /**
+     * Checks that the requests are counted by the phases, the codes and the cumulative latency buckets
+     */
+    @Test
+    public void scrapeTest() throws Exception {
+        try (MetricsExporter exporter = new MetricsExporter("127.0.0.1:0")) {
+            exporter.record(sample().httpCode(200).total(20_000).sizeDownload(100).build(), SampleRecorder.PHASE_FIRST);
+            exporter.record(sample().httpCode(200).total(3_000).sizeDownload(100).build(), SampleRecorder.PHASE_STEADY);
+            exporter.record(sample().httpCode(404).total(1_000).sizeDownload(100).build(), SampleRecorder.PHASE_STEADY);
+            exporter.record(sample().httpCode(200).total(60_000_000).sizeDownload(100).build(),
+                    SampleRecorder.PHASE_STEADY);
+            exporter.record(sample().exitCode(Sample.CURLE_OPERATION_TIMEDOUT).total(10_000_000).sizeDownload(100)
+                    .build(), SampleRecorder.PHASE_STEADY);
+
+            List<String> lines = Arrays.asList(exporter.scrape().split("\n"));
+
+            assertTrue(lines.contains("curltool_responses_total{phase=\"first\",code=\"200\"} 1"));
+            assertTrue(lines.contains("curltool_responses_total{phase=\"steady\",code=\"200\"} 2"));
+            assertTrue(lines.contains("curltool_responses_total{phase=\"steady\",code=\"404\"} 1"));
+            assertTrue(lines.contains("curltool_errors_total{phase=\"steady\",exit_code=\"28\"} 1"));
+            assertTrue(lines.contains("curltool_downloaded_bytes_total{phase=\"steady\"} 300"));
+            assertTrue(lines.contains("curltool_latency_seconds_bucket{phase=\"steady\",le=\"0.001\"} 1"));
+            assertTrue(lines.contains("curltool_latency_seconds_bucket{phase=\"steady\",le=\"0.005\"} 2"));
+            assertTrue(lines.contains("curltool_latency_seconds_bucket{phase=\"steady\",le=\"10\"} 2"));
+            assertTrue(lines.contains("curltool_latency_seconds_bucket{phase=\"steady\",le=\"+Inf\"} 3"));
+            assertTrue(lines.contains("curltool_latency_seconds_count{phase=\"steady\"} 3"));
+            assertTrue(lines.contains("curltool_latency_seconds_sum{phase=\"steady\"} 60.004"));
+            assertEquals(lines.get(lines.size() - 1), "# EOF");
+        }
+    }
+
+    /**
+     * Checks that the port alone binds the loopback interface and the host is bound only if it is set
+     */
+    @Test
+    public void addressTest() {
+        InetSocketAddress address = MetricsExporter.address("9400");
+        assertTrue(address.getAddress().isLoopbackAddress(), address.toString());
+        assertEquals(address.getPort(), 9400);
+        assertTrue(MetricsExporter.address("0.0.0.0:0").getAddress().isAnyLocalAddress());
+    }
+
+    @DataProvider(name = "WrongAddress")
+    public static Object[][] wrongAddressData() {
+        return new Object[][]{{"abc"}, {"host:x"}, {"host:"}, {":9400"}, {"70000"}};
+    }
+
+    /**
+     * Checks that a wrong port is rejected as a wrong number, so it is reported as a wrong argument
+     */
+    @Test(dataProvider = "WrongAddress", expectedExceptions = NumberFormatException.class)
+    public void wrongAddressTest(String address) {
+        new CurlCmd.Builder().setMetrics(address);
+    }
+
+    /**
+     * Checks that the metrics are served by http with OpenMetrics content type while the run is in progress
+     */
+    @Test(timeOut = 10_000)
+    public void serveDuringRunTest() throws Exception {
+        try (MetricsExporter exporter = new MetricsExporter("127.0.0.1:0")) {
+            exporter.record(sample().httpCode(200).total(3_000).sizeDownload(100).build(), SampleRecorder.PHASE_STEADY);
+            HttpURLConnection connection = (HttpURLConnection)
+                    new URL("http://127.0.0.1:" + exporter.getPort() + MetricsExporter.PATH).openConnection();
+
+            assertEquals(connection.getResponseCode(), 200);
+            assertEquals(connection.getContentType(), MetricsExporter.CONTENT_TYPE);
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            try (InputStream in = connection.getInputStream()) {
+                byte[] buffer = new byte[1024];
+                for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                    body.write(buffer, 0, n);
+                }
+            }
+            assertEquals(new String(body.toByteArray(), StandardCharsets.UTF_8), exporter.scrape());
+        }
+    }
+}
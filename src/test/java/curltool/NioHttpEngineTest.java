@@ -0,0 +1,309 @@
+package curltool;
+
+import com.sun.net.httpserver.HttpServer;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.NioHttpEngine</code> against a local http server
+ */
+public class NioHttpEngineTest {
+
+    private HttpServer server;
+    private String url;
+    // remote addresses of the requests, every connection has its own port
+    private final Set<String> connections = ConcurrentHashMap.newKeySet();
+    private volatile String lastMethod;
+    private volatile String lastBody;
+    private final AtomicInteger lengths = new AtomicInteger();
+
+    @BeforeClass
+    public void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1000);
+        server.createContext("/", exchange -> {
+            connections.add(exchange.getRemoteAddress().toString());
+            lastMethod = exchange.getRequestMethod();
+            byte[] request = new byte[1024];
+            int n = exchange.getRequestBody().read(request);
+            lastBody = n < 0 ? "" : new String(request, 0, n, StandardCharsets.UTF_8);
+
+            byte[] response = "pong".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        // chunked response
+        server.createContext("/chunked", exchange -> {
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream os = exchange.getResponseBody()) {
+                for (int i = 0; i < 100; i++) {
+                    os.write("0123456789".getBytes(StandardCharsets.UTF_8));
+                    os.flush();
+                }
+            }
+        });
+        // every response is longer than the previous one
+        server.createContext("/lengths", exchange -> {
+            byte[] response = new byte[lengths.incrementAndGet()];
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.createContext("/empty", exchange -> {
+            exchange.sendResponseHeaders(204, -1);
+            exchange.close();
+        });
+        server.createContext("/slow", exchange -> {
+            try {
+                Thread.sleep(Long.parseLong(exchange.getRequestURI().getQuery()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        server.setExecutor(Executors.newFixedThreadPool(300));
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterClass
+    public void stopServer() {
+        server.stop(0);
+    }
+
+    private static NioHttpEngine engine(String url, Set<String> bodyArgs, long timeout) throws IOException {
+        return engine(url, bodyArgs, false, timeout);
+    }
+
+    private static NioHttpEngine engine(String url, Set<String> bodyArgs, boolean template, long timeout)
+            throws IOException {
+        return new NioHttpEngine(url, null, Collections.singleton("X-Test: 1"), Collections.emptySet(), bodyArgs,
+                template, null, timeout, false, false);
+    }
+
+    /**
+     * Checks that the requests of a call reuse the connection, and every request has the times that are needed
+     * to count the statistics and a write-out block in the log
+     */
+    @Test
+    public void executeBatchReusesConnection() throws Exception {
+        File log = File.createTempFile("curl", ".log");
+        log.deleteOnExit();
+        List<long[]> samples = new ArrayList<>();
+        connections.clear();
+        try (NioHttpEngine engine = engine(url + "/", Collections.emptySet(), CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(3, log, sample -> samples.add(new long[]{sample.exitCode, sample.httpCode,
+                    sample.pretransfer, sample.starttransfer, sample.total, sample.sizeDownload})));
+        }
+
+        assertEquals(samples.size(), 3);
+        for (long[] sample : samples) {
+            assertEquals(sample[0], 0);
+            assertEquals(sample[1], 200);
+            assertTrue(sample[2] <= sample[3] && sample[3] <= sample[4]);
+            assertEquals(sample[5], 4);
+        }
+        assertEquals(connections.size(), 1);
+        assertEquals(lastMethod, "GET");
+        String text = new String(Files.readAllBytes(log.toPath()), StandardCharsets.UTF_8);
+        assertTrue(text.startsWith("pong\nexitcode=0\n"), text);
+        assertEquals(text.split("\nexitcode=0\n", -1).length, 4);
+    }
+
+    /**
+     * Checks that chunked and empty responses are read to the end and body arguments are sent with POST method
+     */
+    @Test
+    public void executeResponses() throws Exception {
+        try (NioHttpEngine engine = engine(url + "/chunked", Collections.emptySet(), CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(2, null, sample -> assertEquals(sample.sizeDownload, 1000)));
+        }
+        try (NioHttpEngine engine = engine(url + "/empty", Collections.emptySet(), CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(2, null, sample -> assertEquals(sample.httpCode, 204)));
+        }
+        try (NioHttpEngine engine = engine(url + "/", Collections.singleton("a=1"), CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(1, null, sample -> assertEquals(sample.exitCode, 0)));
+        }
+        assertEquals(lastMethod, "POST");
+        assertEquals(lastBody, "a=1");
+    }
+
+    /**
+     * Checks that the templated body is rendered for every request and the requests of different lengths
+     * reuse the connection, and the body is sent as is if the templates are off
+     */
+    @Test
+    public void executeRendersTemplate() throws Exception {
+        connections.clear();
+        try (NioHttpEngine engine = engine(url + "/", Collections.singleton("n={{seq}}"), true,
+                CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(12, null, sample -> assertEquals(sample.exitCode, 0)));
+        }
+        assertEquals(lastBody, "n=12");
+        assertEquals(connections.size(), 1);
+
+        try (NioHttpEngine engine = engine(url + "/", Collections.singleton("n={{seq}}"), CurlCmd.DEFAULT_TIMEOUT)) {
+            assertTrue(engine.execute(1, null, sample -> assertEquals(sample.exitCode, 0)));
+        }
+        assertEquals(lastBody, "n={{seq}}");
+    }
+
+    /**
+     * Checks that a few threads of the engine keep many slow requests in flight at once
+     */
+    @Test(timeOut = 10_000)
+    public void executeAsyncManyConnections() throws Exception {
+        List<CompletableFuture<Boolean>> results = new ArrayList<>();
+        List<Integer> codes = Collections.synchronizedList(new ArrayList<>());
+        long start = System.nanoTime();
+        try (NioHttpEngine engine = engine(url + "/slow?200", Collections.emptySet(), CurlCmd.DEFAULT_TIMEOUT)) {
+            for (int i = 0; i < 200; i++) {
+                results.add(engine.executeAsync(1, null, sample -> codes.add(sample.httpCode)));
+            }
+            for (CompletableFuture<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(codes, Collections.nCopies(200, 200));
+        // requests one after another would take 40 seconds
+        assertTrue(elapsed < 5000, "elapsed " + elapsed);
+    }
+
+    /**
+     * Checks that the request which is not completed in time, the refused one and the one to an unknown host
+     * are failed with curl exit codes
+     */
+    @Test(timeOut = 10_000)
+    public void executeFailures() throws Exception {
+        try (NioHttpEngine engine = engine(url + "/slow?2000", Collections.emptySet(), 100)) {
+            assertTrue(engine.execute(1, null, sample -> {
+                assertEquals(sample.exitCode, Sample.CURLE_OPERATION_TIMEDOUT);
+                assertTrue(sample.total >= 100_000);
+            }));
+        }
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        try (NioHttpEngine engine = engine("127.0.0.1:" + port, Collections.emptySet(), 1000)) {
+            assertTrue(engine.execute(1, null,
+                    sample -> assertEquals(sample.exitCode, Sample.CURLE_COULDNT_CONNECT)));
+        }
+        // the host is resolved on the engine creation, every request of the unknown one fails
+        try (NioHttpEngine engine = engine("no-such-host.invalid:" + port, Collections.emptySet(), 1000)) {
+            assertTrue(engine.execute(2, null,
+                    sample -> assertEquals(sample.exitCode, Sample.CURLE_COULDNT_RESOLVE_HOST)));
+        }
+    }
+
+    /**
+     * Checks that the requests of a long batch which fail at once are all counted without the deep recursion
+     */
+    @Test(timeOut = 10_000)
+    public void executeLongFailedBatch() throws Exception {
+        AtomicInteger failed = new AtomicInteger();
+        try (NioHttpEngine engine = engine("no-such-host.invalid", Collections.emptySet(), 1000)) {
+            assertTrue(engine.execute(100_000, null, sample -> {
+                if (sample.exitCode == Sample.CURLE_COULDNT_RESOLVE_HOST) {
+                    failed.incrementAndGet();
+                }
+            }));
+        }
+        assertEquals(failed.get(), 100_000);
+    }
+
+    /**
+     * Checks that if an IO thread is failed by an error, its requests in flight and the next ones are failed
+     * instead of waiting forever
+     */
+    @Test(timeOut = 10_000)
+    public void executeAfterLoopFailure() throws Exception {
+        try (NioHttpEngine engine = engine(url + "/", Collections.emptySet(), 1000)) {
+            int failed = 0;
+            // the calls are spread by the IO threads in turn, so every thread is failed by its first call
+            for (int i = 0; i < 16; i++) {
+                try {
+                    engine.execute(1, null, sample -> {
+                        throw new AssertionError("The IO thread is failed.");
+                    });
+                } catch (IOException e) {
+                    failed++;
+                }
+            }
+            assertEquals(failed, 16);
+        }
+    }
+
+    /**
+     * Checks that the run with the engine executes all the requests with the concurrency above the count of threads
+     */
+    @Test(timeOut = 10_000)
+    public void executeRun() {
+        CurlCmd curl = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(url + "/slow?50")
+                .setCount(201).setConcurrency(100).execute();
+
+        Report.Summary then = curl.getReport().getThen();
+        assertEquals(then.getSuccessful(), 200);
+        assertEquals(then.getErrors(), 0);
+    }
+
+    /**
+     * Checks that the responses with an unexpected http code or body are counted as errors
+     */
+    @Test(timeOut = 10_000)
+    public void executeRunChecksResponses() {
+        Report.Summary then = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(url + "/empty")
+                .setExpectedStatus(200).setCount(3).execute().getReport().getThen();
+        assertEquals(then.getErrors(), 2);
+        assertEquals(then.getExitCodes(), Collections.singletonMap(Sample.CURLE_HTTP_RETURNED_ERROR, 2L));
+
+        // the first body is expected, the bodies of the next requests have other lengths
+        lengths.set(0);
+        then = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(url + "/lengths")
+                .setExpectedChecksum("first").setCount(3).execute().getReport().getThen();
+        assertEquals(then.getErrors(), 2);
+        assertEquals(then.getExitCodes(), Collections.singletonMap(Sample.BODY_MISMATCH, 2L));
+
+        CRC32 pong = new CRC32();
+        pong.update("pong".getBytes(StandardCharsets.UTF_8));
+        then = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(url + "/")
+                .setExpectedChecksum(Long.toHexString(pong.getValue())).setCount(3).execute().getReport().getThen();
+        assertEquals(then.getSuccessful(), 2);
+        assertEquals(then.getDownloaded(), 8);
+    }
+
+    /**
+     * Checks that https which the engine doesn't support is rejected on the engine creation
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void unsupportedProtocol() throws Exception {
+        engine("https://127.0.0.1/", Collections.emptySet(), CurlCmd.DEFAULT_TIMEOUT);
+    }
+}
@@ -0,0 +1,124 @@
+package curltool;
+
+import org.testng.annotations.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.ProcessSupervisor</code> and <code>curltool.CurlProcessEngine</code>
+ */
+public class ProcessSupervisorTest {
+
+    private static final Histogram LAYOUT = new Histogram(3_600_000_000L, 3);
+
+    /**
+     * Checks that the process which is not completed in the timeout is killed and its place is released
+     */
+    @Test(timeOut = 10_000)
+    public void killTest() throws Exception {
+        try (ProcessSupervisor supervisor = new ProcessSupervisor(1, LAYOUT)) {
+            long start = System.nanoTime();
+            ProcessSupervisor.Child child = supervisor.start(new ProcessBuilder("sleep", "60"), 100);
+
+            assertFalse(supervisor.finish(child));
+            assertFalse(child.process.isAlive());
+            long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            assertTrue(elapsed >= 100 + ProcessSupervisor.KILL_MARGIN && elapsed < 5000, "elapsed " + elapsed);
+            assertEquals(supervisor.getKilled(), 1);
+
+            // the place of the killed process is free for the next one
+            assertTrue(supervisor.finish(supervisor.start(new ProcessBuilder("true"), 1000)));
+            assertEquals(supervisor.getStarted(), 2);
+            assertEquals(supervisor.getKilled(), 1);
+            assertEquals(supervisor.getWallTimes().getTotalCount(), 2);
+        }
+    }
+
+    /**
+     * Checks that no more than the max count of processes are alive at once
+     */
+    @Test(timeOut = 10_000)
+    public void maxProcessesTest() throws Exception {
+        ExecutorService workers = Executors.newFixedThreadPool(4);
+        try (ProcessSupervisor supervisor = new ProcessSupervisor(2, LAYOUT)) {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for (int i = 0; i < 6; i++) {
+                results.add(workers.submit(() ->
+                        supervisor.finish(supervisor.start(new ProcessBuilder("sleep", "0.1"), 1000))));
+            }
+            for (Future<Boolean> result : results) {
+                assertTrue(result.get());
+            }
+
+            assertEquals(supervisor.getStarted(), 6);
+            assertEquals(supervisor.getMaxAlive(), 2);
+            assertEquals(supervisor.getKilled(), 0);
+            // the histogram bucket of 100 ms starts a bit lower
+            assertTrue(supervisor.getWallTimes().getMin() >= 99_000);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Checks that the requests of the killed curl process which are not written out are passed as timeouted
+     */
+    @Test(timeOut = 10_000)
+    public void engineTimeoutTest() throws Exception {
+        String block = "\\nexitcode=0\\nhttp_code=200\\ntime_total=0.01\\n";
+        try (ProcessSupervisor supervisor = new ProcessSupervisor(1, LAYOUT)) {
+            // the shell is replaced by sleep, so the killed process is the one that writes the output
+            CurlProcessEngine engine = new CurlProcessEngine((transfers, bodyFiles) ->
+                    new String[]{"sh", "-c", "printf '" + block + "'; exec sleep 60"}, 100, 0, supervisor, false, false);
+            List<int[]> samples = new ArrayList<>();
+
+            boolean completed = engine.execute(3, null,
+                    sample -> samples.add(new int[]{sample.exitCode, sample.httpCode}));
+
+            assertFalse(completed);
+            assertEquals(samples.size(), 3);
+            assertEquals(samples.get(0), new int[]{0, 200});
+            assertEquals(samples.get(1), new int[]{Sample.CURLE_OPERATION_TIMEDOUT, 0});
+            assertEquals(samples.get(2), new int[]{Sample.CURLE_OPERATION_TIMEDOUT, 0});
+        }
+    }
+
+    /**
+     * Checks that the files of the rendered bodies are read by the process and are deleted when it ends
+     */
+    @Test(timeOut = 10_000)
+    public void engineDeletesBodyFilesTest() throws Exception {
+        List<Path> files = new ArrayList<>();
+        try (ProcessSupervisor supervisor = new ProcessSupervisor(1, LAYOUT)) {
+            CurlProcessEngine engine = new CurlProcessEngine((transfers, bodyFiles) -> {
+                Path file = Files.createTempFile("curl-tool-body", null);
+                Files.write(file, "\nexitcode=0\nhttp_code=201\ntime_total=0.01\n".getBytes(StandardCharsets.UTF_8));
+                bodyFiles.add(file);
+                files.add(file);
+                return new String[]{"cat", file.toString()};
+            }, 1000, 0, supervisor, false, true);
+            List<Integer> codes = new ArrayList<>();
+
+            assertTrue(engine.execute(1, null, sample -> codes.add(sample.httpCode)));
+            assertTrue(engine.execute(1, null, sample -> codes.add(sample.httpCode)));
+
+            assertEquals(codes.size(), 2);
+            assertEquals((int) codes.get(1), 201);
+            // every process of the templated args has its own files
+            assertEquals(files.size(), 2);
+            assertTrue(files.stream().noneMatch(Files::exists), files.toString());
+        }
+    }
+}
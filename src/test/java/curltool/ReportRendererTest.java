@@ -0,0 +1,190 @@
+package curltool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import static curltool.Samples.sample;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Report</code> and its renderers
+ */
+public class ReportRendererTest {
+
+    private Locale defaultLocale;
+    private Report report;
+
+    @BeforeMethod
+    public void setup() {
+        defaultLocale = Locale.getDefault();
+        // the locale with decimal comma shouldn't change the numbers of machine readable formats
+        Locale.setDefault(Locale.GERMANY);
+
+        Statistics first = new Statistics(3_600_000_000L, 3);
+        first.add(sample().httpCode(200).starttransfer(40_000).total(40_000).sizeDownload(10).build());
+        Statistics then = first.copyLayout();
+        Statistics a = first.copyLayout();
+        Statistics b = first.copyLayout();
+        for (int i = 1; i <= 100; i++) {
+            // the first byte comes with the whole response, times are in microseconds
+            Sample sample = sample().exitCode(i % 25 == 0 ? 7 : 0).httpCode(i % 10 == 0 ? 404 : 200)
+                    .starttransfer(i * 1000).total(i * 1000).sizeDownload(10).build();
+            (i % 2 == 0 ? a : b).add(sample, i % 3 * 1000);
+        }
+        then.add(a);
+        then.add(b);
+        List<Report.Summary> endpoints = Arrays.asList(
+                new Report.Summary("a", a, 2_000_000_000L), new Report.Summary("b,\"c\"", b, 2_000_000_000L));
+        report = new Report(new Report.Summary("first", first, 0), null,
+                new Report.Summary("then", then, 3_000_000_000L), 2,
+                new Report.Schedule(33.3, then, 1000), endpoints,
+                new Report.Comparison(baseline(), then.getTotal(), 10), null,
+                new Report.Estimate(then.getTotal(), 99, 95, 5),
+                new Report.Processes(101, 1, 4, then.getTotal(), 250));
+    }
+
+    @AfterMethod
+    public void cleanup() {
+        Locale.setDefault(defaultLocale);
+    }
+
+    // the same times as the steady state ones, but 20% faster
+    private static Histogram baseline() {
+        Histogram baseline = new Histogram(3_600_000_000L, 3);
+        for (int i = 1; i <= 100; i++) {
+            baseline.record(i * 800);
+        }
+        return baseline;
+    }
+
+    /**
+     * Checks that the report model counts the summaries of the statistics
+     */
+    @Test
+    public void reportModelTest() {
+        Report.Summary then = report.getThen();
+        assertEquals(then.getRequests(), 100);
+        assertEquals(then.getSuccessful(), 96);
+        assertEquals(then.getErrors(), 4);
+        assertEquals(then.getExitCodes(), Collections.singletonMap(7, 4L));
+        assertEquals((long) then.getHttpCodes().get(404), 8);
+        assertEquals(then.getRequestsPerSecond(), 100 / 3.0, 1e-9);
+        assertEquals(then.getTotal().getPercentile(50), 49, 0.1);
+        assertEquals(then.getTotal().getMax(), 99.0);
+        assertEquals(then.getDownloaded(), 960);
+        assertTrue(Double.isNaN(report.getFirst().getRequestsPerSecond()));
+        assertNull(report.getWarmup());
+        assertEquals(report.getSchedule().getLate(), 33);
+        assertEquals(report.getEndpoints().size(), 2);
+        assertEquals(report.getEndpoints().get(0).getRequests(), 50);
+    }
+
+    /**
+     * Checks the confidence intervals of the mean and a percentile and whether they are narrow enough
+     */
+    @Test
+    public void estimateTest() {
+        Histogram latency = new Histogram(3_600_000_000L, 3);
+        for (int i = 1; i <= 10_000; i++) {
+            latency.record(1000 + i % 1000);
+        }
+
+        Report.Estimate mean = new Report.Estimate(latency, Double.NaN, 95, 1);
+        assertEquals(mean.getMetric(), "mean");
+        assertEquals(mean.getValue(), 1.4995, 1e-9);
+        // 1.96 * 288.7 / sqrt(10000) = 5.66 microseconds
+        assertEquals(mean.getUpper() - mean.getValue(), 0.00566, 1e-4);
+        assertTrue(mean.isConverged());
+
+        Report.Estimate p99 = new Report.Estimate(latency, 99, 95, 1);
+        assertEquals(p99.getMetric(), "p99");
+        assertEquals(p99.getValue(), 1.989, 0.002);
+        assertTrue(p99.getLower() < p99.getValue() && p99.getUpper() > p99.getValue());
+        assertTrue(p99.isConverged(), "error " + p99.getRelativeError());
+        assertTrue(!new Report.Estimate(latency, 99, 95, 0.01).isConverged());
+
+        // the upper bound of p99.99 is above the highest rank
+        assertTrue(Double.isNaN(new Report.Estimate(latency, 99.99, 95, 1).getUpper()));
+        assertTrue(!new Report.Estimate(latency, 99.99, 95, 1).isConverged());
+        // too few values
+        Histogram few = latency.copyLayout();
+        few.record(1000);
+        assertTrue(!new Report.Estimate(few, Double.NaN, 95, 50).isConverged());
+    }
+
+    /**
+     * Checks that the text report has all the sections
+     */
+    @Test
+    public void renderTextTest() {
+        String text = ReportRenderer.of(ReportRenderer.Format.TEXT).render(report);
+        assertTrue(text.startsWith("First:"), text);
+        assertTrue(text.contains("Percentiles:"), text);
+        assertTrue(text.contains("Errors: 4 (exit code 7 - 4)"), text);
+        assertTrue(text.contains("Cancelled: 2 requests"), text);
+        assertTrue(text.contains("Schedule:"), text);
+        assertTrue(text.contains("Endpoints:"), text);
+        assertTrue(text.contains("Estimate: p99 99 ms, 95% confidence interval unknown - not converged by 96 requests"),
+                text);
+        assertTrue(text.contains("Baseline comparison (total time):"), text);
+        assertTrue(text.contains("Regression: p50, p90, p99 slower than the baseline by more than 10%"), text);
+        assertTrue(text.contains("Curl processes:" + System.lineSeparator()
+                + "- started - 101, killed on timeout - 1, max alive at once - 4"), text);
+        // the text is formatted in the default locale of the first render, so the decimal separator may differ
+        assertTrue(text.matches("(?s).*- cpu time, ms - total 250, average per process 2[.,]475"), text);
+    }
+
+    /**
+     * Checks that the json report is an object with the sections and locale independent numbers
+     */
+    @Test
+    public void renderJsonTest() {
+        String json = ReportRenderer.of(ReportRenderer.Format.JSON).render(report);
+        assertTrue(json.startsWith("{\"first\":{\"name\":\"first\",\"requests\":1,"), json);
+        assertTrue(json.contains(",\"warmup\":null,\"then\":{\"name\":\"then\",\"requests\":100,\"successful\":96," +
+                "\"errors\":4,\"requests_per_second\":33.333,\"http_codes\":{\"200\":88,\"404\":8}," +
+                "\"exit_codes\":{\"7\":4},\"total\":{\"count\":96,\"min\":1,\"max\":99,"), json);
+        assertTrue(json.contains("\"late_threshold\":1,\"late\":33}"), json);
+        assertTrue(json.contains("\"p99.9\":"), json);
+        assertTrue(json.contains("\"cancelled\":2,\"schedule\":{\"rate\":33.3,"), json);
+        assertTrue(json.contains("{\"name\":\"b,\\\"c\\\"\","), json);
+        assertTrue(json.contains(",\"regressed\":[\"p50\",\"p90\",\"p99\"],\"regression\":true},\"ramp\":null,\"estimate\":{\"metric\":\"p99\","), json);
+        assertTrue(json.contains(",\"processes\":{\"started\":101,\"killed\":1,\"max_alive\":4,\"wall_time\":{"), json);
+        assertTrue(json.endsWith(",\"cpu_time\":250,\"cpu_time_per_process\":2.475}}"), json);
+        assertEquals(json.chars().filter(c -> c == '{').count(), json.chars().filter(c -> c == '}').count());
+    }
+
+    /**
+     * Checks that the csv report has a line per metric with locale independent numbers
+     */
+    @Test
+    public void renderCsvTest() {
+        List<String> lines = Arrays.asList(ReportRenderer.of(ReportRenderer.Format.CSV).render(report).split("\\R"));
+        assertEquals(lines.get(0), "scope,metric,value");
+        assertTrue(lines.contains("then,requests,100"));
+        assertTrue(lines.contains("then,requests_per_second,33.333"));
+        assertTrue(lines.contains("then,http_code_404,8"));
+        assertTrue(lines.contains("then,exit_code_7,4"));
+        assertTrue(lines.stream().anyMatch(l -> l.startsWith("then,total_p50,49.")));
+        assertTrue(lines.contains("run,cancelled,2"));
+        assertTrue(lines.contains("schedule,rate,33.3"));
+        assertTrue(lines.contains("endpoint:a,requests,50"));
+        assertTrue(lines.contains("\"endpoint:b,\"\"c\"\"\",requests,50"));
+        assertTrue(lines.stream().noneMatch(l -> l.startsWith("first,requests_per_second")));
+        assertTrue(lines.contains("baseline,total_count,100"));
+        assertTrue(lines.contains("baseline,regression,1"));
+        assertTrue(lines.contains("estimate,p99,99"));
+        assertTrue(lines.contains("estimate,converged,0"));
+        assertTrue(lines.contains("processes,killed,1"));
+        assertTrue(lines.contains("processes,wall_time_count,96"));
+        assertTrue(lines.contains("processes,cpu_time_per_process,2.475"));
+    }
+}
@@ -0,0 +1,161 @@
+package curltool;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static curltool.Samples.sample;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.SampleRecorder</code> and <code>curltool.SampleFileReader</code>
+ */
+public class SampleFileReaderTest {
+
+    private Path file;
+
+    @BeforeMethod
+    public void setup() throws IOException {
+        file = Files.createTempFile("samples", ".bin");
+    }
+
+    @AfterMethod
+    public void cleanup() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Checks that all the recorded samples are read back with all their values
+     */
+    @Test
+    public void recordAndReadTest() throws IOException {
+        // more than a mapped chunk
+        int count = 100_000;
+        try (SampleRecorder recorder = new SampleRecorder(file, 3, 12.5)) {
+            recorder.record(sample().httpCode(200).namelookup(1).connect(2).pretransfer(3).starttransfer(49).total(50)
+                    .sizeDownload(100).build(), 0, SampleRecorder.PHASE_FIRST, -1);
+            for (int i = 1; i < count; i++) {
+                Sample sample = sample().exitCode(i % 10 == 0 ? 7 : 0).httpCode(200 + i % 3)
+                        .namelookup(1).connect(2).pretransfer(3).starttransfer(i % 1000 - 1).total(i % 1000)
+                        .sizeDownload(100).build();
+                recorder.record(sample, i % 3, SampleRecorder.PHASE_STEADY, i % 5);
+            }
+        }
+        assertEquals(Files.size(file), SampleRecorder.HEADER_SIZE + (long) count * SampleRecorder.RECORD_SIZE);
+
+        SampleFileReader reader = new SampleFileReader(file);
+        assertEquals(reader.getPrecision(), 3);
+        assertEquals(reader.getRate(), 12.5);
+        List<String> records = new ArrayList<>();
+        long[] previous = {-1};
+        reader.read(record -> {
+            assertTrue(record.timestamp >= previous[0]);
+            previous[0] = record.timestamp;
+            int i = records.size();
+            if (i == 0) {
+                assertEquals(record.phase, SampleRecorder.PHASE_FIRST);
+                assertEquals(record.sendDelay, -1);
+                assertEquals(record.sample.total, 50);
+            } else {
+                assertEquals(record.phase, SampleRecorder.PHASE_STEADY);
+                assertEquals(record.endpoint, i % 3);
+                assertEquals(record.sendDelay, i % 5);
+                assertEquals(record.sample.exitCode, i % 10 == 0 ? 7 : 0);
+                assertEquals(record.sample.httpCode, 200 + i % 3);
+                assertEquals(record.sample.total, i % 1000);
+                assertEquals(record.sample.starttransfer, i % 1000 - 1);
+            }
+            assertEquals(record.sample.namelookup, 1);
+            assertEquals(record.sample.connect, 2);
+            assertEquals(record.sample.pretransfer, 3);
+            assertEquals(record.sample.sizeDownload, 100);
+            records.add("");
+        });
+        assertEquals(records.size(), count);
+    }
+
+    /**
+     * Checks that the samples of a run that hasn't been completed are read till the last recorded one
+     */
+    @Test
+    public void readNotClosedTest() throws IOException {
+        try (SampleRecorder recorder = new SampleRecorder(file, 2, 0)) {
+            for (int i = 0; i < 3; i++) {
+                recorder.record(sample().httpCode(200).total(10).sizeDownload(100).build(), 0,
+                        SampleRecorder.PHASE_STEADY, -1);
+            }
+            int[] count = {0};
+            new SampleFileReader(file).read(record -> count[0]++);
+            assertEquals(count[0], 3);
+        }
+    }
+
+    /**
+     * Checks that the samples are converted to csv and json with a line per sample
+     */
+    @Test
+    public void convertTest() throws IOException {
+        try (SampleRecorder recorder = new SampleRecorder(file, 3, 0)) {
+            recorder.record(sample().httpCode(200).total(10).sizeDownload(100).build(), 0,
+                    SampleRecorder.PHASE_FIRST, -1);
+            recorder.record(sample().httpCode(404).namelookup(1).connect(2).pretransfer(3).starttransfer(19).total(20)
+                    .sizeDownload(100).speedDownload(5000).build(), 1, SampleRecorder.PHASE_STEADY, -1);
+        }
+        SampleFileReader reader = new SampleFileReader(file);
+
+        StringWriter csv = new StringWriter();
+        reader.writeCsv(new PrintWriter(csv));
+        String[] lines = csv.toString().split("\\R");
+        assertEquals(lines.length, 3);
+        assertTrue(lines[0].startsWith("timestamp_ns,phase,endpoint,exitcode,http_code,"), lines[0]);
+        assertTrue(lines[2].matches("\\d+,steady,1,0,404,1,2,0,0,3,19,20,100,5000,-1"), lines[2]);
+
+        StringWriter json = new StringWriter();
+        reader.writeJson(new PrintWriter(json));
+        lines = json.toString().split("\\R");
+        assertEquals(lines.length, 4);
+        assertEquals(lines[0], "[");
+        assertTrue(lines[1].matches("\\{\"timestamp_ns\":\\d+,\"phase\":\"first\",\"endpoint\":0,.*\"send_delay\":-1},"),
+                lines[1]);
+        assertTrue(lines[2].contains("\"http_code\":404,"), lines[2]);
+        assertEquals(lines[3], "]");
+    }
+
+    /**
+     * Checks that the statistics counted from the recorded samples are the same as the statistics of the run
+     */
+    @Test
+    public void replayTest() throws IOException {
+        CurlCmd live;
+        try (CalibrationServer server = new CalibrationServer(1, 100, 5)) {
+            // error responses fail the expected status, so the failed samples are replayed too
+            live = new CurlCmd.Builder().setEngine(RequestEngine.Type.NIO).setUrlToTest(server.getUrl())
+                    .setExpectedStatus(200).setCount(300).setWarmupCount(20).setConcurrency(3)
+                    .setSamplesFile(file.toString()).execute();
+        }
+
+        String liveReport = live.countStatistics();
+        String offlineReport = CurlCmd.replay(new SampleFileReader(file)).countStatistics();
+        // throughput is counted from the sample times, so it differs a bit
+        String perSecond = "- requests per second - [\\d.,]+";
+        assertEquals(offlineReport.replaceAll(perSecond, ""), liveReport.replaceAll(perSecond, ""));
+    }
+
+    /**
+     * Checks that a file of another format is not read
+     */
+    @Test(expectedExceptions = IOException.class)
+    public void readWrongFileTest() throws IOException {
+        Files.write(file, "exitcode=0\n".getBytes());
+        new SampleFileReader(file);
+    }
+}
@@ -0,0 +1,70 @@
+package curltool;
+
+/**
+ * Builder of the samples of the unit tests. Every field that a test depends on is set by its name,
+ * the other fields are 0. Times are in microseconds.
+ */
+final class Samples {
+
+    private final Sample sample = new Sample();
+
+    private Samples() {
+    }
+
+    /**
+     * Returns the builder of a sample
+     */
+    static Samples sample() {
+        return new Samples();
+    }
+
+    Samples exitCode(int exitCode) {
+        sample.exitCode = exitCode;
+        return this;
+    }
+
+    Samples httpCode(int httpCode) {
+        sample.httpCode = httpCode;
+        return this;
+    }
+
+    Samples namelookup(long namelookup) {
+        sample.namelookup = namelookup;
+        return this;
+    }
+
+    Samples connect(long connect) {
+        sample.connect = connect;
+        return this;
+    }
+
+    Samples pretransfer(long pretransfer) {
+        sample.pretransfer = pretransfer;
+        return this;
+    }
+
+    Samples starttransfer(long starttransfer) {
+        sample.starttransfer = starttransfer;
+        return this;
+    }
+
+    Samples total(long total) {
+        sample.total = total;
+        return this;
+    }
+
+    Samples sizeDownload(long sizeDownload) {
+        sample.sizeDownload = sizeDownload;
+        return this;
+    }
+
+    // bytes per second
+    Samples speedDownload(long speedDownload) {
+        sample.speedDownload = speedDownload;
+        return this;
+    }
+
+    Sample build() {
+        return sample;
+    }
+}
@@ -0,0 +1,94 @@
+package curltool;
+
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import static curltool.Samples.sample;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.SoakReporter</code>
+ */
+public class SoakReporterTest {
+
+    private static final Histogram LAYOUT = new Histogram(3_600_000_000L, 3);
+
+    /**
+     * Checks that the rolling statistics are counted from the last windows of the ring only
+     * and the windows slower than the first one are marked as drifted
+     */
+    @Test
+    public void rollingWindowsTest() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SoakReporter reporter = new SoakReporter(TimeUnit.MINUTES.toMillis(1), 50, new PrintStream(output), LAYOUT, 2);
+        // every window has a single request which is 1 ms slower than the previous one
+        for (int i = 1; i <= 20; i++) {
+            reporter.record(sample().httpCode(200).total(i * 1000).build());
+            reporter.report();
+        }
+
+        String[] lines = output.toString().split("\n");
+        assertEquals(lines.length, 20);
+        String last = lines[19];
+        // the throughput depends on the time of the report calls, the times are rounded to the histogram buckets
+        assertTrue(last.matches(".*\\| 1m [0-9.]+/s errors 0 p50 20 p99 20 \\|.*"), last);
+        assertTrue(last.matches(".*\\| 5m [0-9.]+/s errors 0 p50 18(\\.\\d+)? p99 20 \\|.*"), last);
+        assertTrue(last.matches(".*\\| 15m [0-9.]+/s errors 0 p50 13(\\.\\d+)? p99 20 .*"), last);
+        // the 2nd window is 100% slower than the first one, the next ones are even slower
+        assertFalse(lines[0].contains("DRIFT"));
+        assertTrue(lines[1].endsWith("<- DRIFT p99 +100%"), lines[1]);
+        assertEquals(reporter.getDrifted(), 19);
+        assertEquals(reporter.summary(),
+                "Soak: 20 windows of 60000 ms, 19 drifted by more than 50% of p99 of the first window (max +1900%)");
+    }
+
+    /**
+     * Checks that the window which is longer than the rolling periods is the only one that is kept
+     */
+    @Test
+    public void longWindowTest() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SoakReporter reporter = new SoakReporter(TimeUnit.HOURS.toMillis(1), 50, new PrintStream(output), LAYOUT, 2);
+        reporter.record(sample().httpCode(200).total(5000).build());
+        reporter.report();
+        reporter.record(sample().httpCode(200).total(1000).build());
+        reporter.report();
+
+        String[] lines = output.toString().split("\n");
+        assertTrue(lines[1].matches(".*\\| 15m [0-9.]+/s errors 0 p50 1 p99 1"), lines[1]);
+        assertEquals(reporter.getDrifted(), 0);
+    }
+
+    /**
+     * Checks that the ring of the short windows is bounded and the rolling periods are counted from the whole slots
+     */
+    @Test
+    public void shortWindowTest() {
+        // 100 ms windows would need 9000 histograms of the full precision
+        assertEquals(new SoakReporter(100, 50, new PrintStream(new ByteArrayOutputStream()), LAYOUT, 2).getSlots(),
+                SoakReporter.MAX_SLOTS);
+        assertEquals(new SoakReporter(TimeUnit.MINUTES.toMillis(1), 50, new PrintStream(new ByteArrayOutputStream()),
+                LAYOUT, 2).getSlots(), 15);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SoakReporter reporter = new SoakReporter(1000, 50, new PrintStream(output), LAYOUT, 2);
+        assertEquals(reporter.getSlots(), SoakReporter.MAX_SLOTS);
+        // 900 windows of 15 minutes are kept in slots of 16 windows, every window has a request of its number in ms
+        for (int i = 1; i <= 100; i++) {
+            reporter.record(sample().httpCode(200).total(i * 1000).build());
+            reporter.report();
+        }
+
+        String[] lines = output.toString().split("\n");
+        assertEquals(lines.length, 100);
+        String last = lines[99];
+        // the minute is rounded up to the current slot of 4 windows and the 4 previous ones: windows 33 - 100
+        assertTrue(last.matches(".*\\| 1m [0-9.]+/s errors 0 p50 66(\\.\\d+)? p99 100(\\.\\d+)? \\|.*"), last);
+        assertTrue(last.matches(".*\\| 5m [0-9.]+/s errors 0 p50 50(\\.\\d+)? p99 99(\\.\\d+)? \\|.*"), last);
+    }
+}
@@ -0,0 +1,123 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+/**
+ * Unit tests for <code>curltool.Template</code>, <code>curltool.Feed</code> and the templated
+ * <code>curltool.RequestBody</code>
+ */
+public class TemplateTest {
+
+    private static Feed feed(String text) throws IOException {
+        Path file = Files.createTempFile("feed", ".csv");
+        try {
+            Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+            return Feed.read(file);
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Checks that the placeholders are substituted and the text around them is kept
+     */
+    @Test
+    public void renderTest() throws IOException {
+        Feed feed = feed("user,name\n1,\"Doe, John\"\n2,\"say \"\"hi\"\"\"\n");
+        Template template = Template.compile(
+                "{\"seq\":{{seq}},\"user\":{{ feed:user }},\"name\":\"{{feed:name}}\",\"r\":{{random:10}}}", feed);
+
+        assertFalse(template.isStatic());
+        assertTrue(template.render(1).matches("\\{\"seq\":1,\"user\":1,\"name\":\"Doe, John\",\"r\":\\d}"),
+                template.render(1));
+        assertTrue(template.render(12).startsWith("{\"seq\":12,\"user\":2,\"name\":\"say \"hi\"\",\"r\":"),
+                template.render(12));
+    }
+
+    /**
+     * Checks that the random values are in their bounds and the UUIDs have the version 4 format
+     */
+    @Test
+    public void renderRandomTest() {
+        Template template = Template.compile("{{uuid}} {{random}}", null);
+        String uuid = null;
+        for (int i = 0; i < 100; i++) {
+            String[] values = template.render(i + 1).split(" ");
+            assertTrue(values[0].matches("[0-9a-f]{8}-[0-9a-f]{4}-4[0-9a-f]{3}-[89ab][0-9a-f]{3}-[0-9a-f]{12}"),
+                    values[0]);
+            assertFalse(values[0].equals(uuid));
+            uuid = values[0];
+            assertTrue(Long.parseLong(values[1]) >= 0 && Long.parseLong(values[1]) < Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Checks that the text without placeholders is static
+     */
+    @Test
+    public void staticTest() {
+        Template template = Template.compile("{\"a\":{\"b\":1}}", null);
+        assertTrue(template.isStatic());
+        assertEquals(new String(template.literal(), StandardCharsets.UTF_8), "{\"a\":{\"b\":1}}");
+    }
+
+    @DataProvider(name = "WrongPlaceholder")
+    public static Object[][] wrongPlaceholderData() {
+        return new Object[][]{{"{{id}}"}, {"{{random:0}}"}, {"{{random:x}}"}, {"{{feed:user}}"}, {"{{feed:email}}"}};
+    }
+
+    /**
+     * Checks that unknown placeholders and columns are rejected when the template is compiled
+     */
+    @Test(dataProvider = "WrongPlaceholder", expectedExceptions = IllegalArgumentException.class)
+    public void wrongPlaceholderTest(String text) throws IOException {
+        Template.compile(text, text.contains("email") ? feed("user\n1\n") : null);
+    }
+
+    /**
+     * Checks that a row of the feed should have all the columns
+     */
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void wrongFeedTest() throws IOException {
+        feed("user,name\n1\n");
+    }
+
+    /**
+     * Checks that the body args are rendered with the next sequence number and the same feed row,
+     * and the static parts of the multipart body are kept
+     */
+    @Test
+    public void requestBodyTest() throws IOException {
+        Feed feed = feed("user\nalice\nbob\n");
+        RequestBody body = RequestBody.of(Collections.emptySet(),
+                new LinkedHashSet<>(Arrays.asList("id={{seq}}", "user={{feed:user}}")), true, feed);
+        Template.Output out = new Template.Output();
+
+        assertTrue(body.isTemplate());
+        assertNull(body.content);
+        body.render(out);
+        assertEquals(new String(out.bytes, 0, out.length, StandardCharsets.UTF_8), "id=1&user=alice");
+        body.render(out);
+        assertEquals(new String(out.bytes, 0, out.length, StandardCharsets.UTF_8), "id=2&user=bob");
+
+        RequestBody form = RequestBody.of(Collections.singleton("id={{seq}}"), Collections.emptySet(), true, null);
+        form.render(out);
+        String multipart = new String(out.bytes, 0, out.length, StandardCharsets.UTF_8);
+        assertTrue(multipart.contains("name=\"id\"\r\n\r\n1\r\n--"), multipart);
+        assertTrue(multipart.endsWith("--\r\n"), multipart);
+    }
+}
@@ -0,0 +1,119 @@
+package curltool;
+
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.testng.Assert.assertEquals;
+
+/**
+ * Unit tests for <code>curltool.WriteOutReader</code>
+ */
+public class WriteOutReaderTest {
+
+    private static String block(int exitCode, String total) {
+        return "\nexitcode=" + exitCode + "\n" +
+                "json={\"exitcode\":" + exitCode + ",\"url\":\"http://localhost/?a=b\"}\n" +
+                "stdout=\n" +
+                "http_code=200\n" +
+                "time_namelookup=0.000012\n" +
+                "time_connect=0.000345\n" +
+                "time_appconnect=0.000000\n" +
+                "time_redirect=0.000000\n" +
+                "time_pretransfer=0.000400\n" +
+                "time_starttransfer=0.0015\n" +
+                "size_download=1234\n" +
+                "speed_download=567890\n" +
+                "time_total=" + total + "\n";
+    }
+
+    private static List<long[]> read(String output, ByteArrayOutputStream rawLog) throws IOException {
+        List<long[]> samples = new ArrayList<>();
+        WriteOutReader.read(new ByteArrayInputStream(output.getBytes(StandardCharsets.UTF_8)), rawLog,
+                sample -> samples.add(new long[]{sample.exitCode, sample.httpCode, sample.namelookup, sample.connect,
+                        sample.pretransfer, sample.starttransfer, sample.sizeDownload, sample.speedDownload,
+                        sample.total}));
+        return samples;
+    }
+
+    @DataProvider
+    public static Object[][] totalTimes() {
+        return new Object[][]{
+                {"0.012345", 12_345},
+                {"0,012345", 12_345},
+                {"1.5", 1_500_000},
+                {"2", 2_000_000},
+                {"0.0123456789", 12_345},
+        };
+    }
+
+    /**
+     * Checks that times in seconds are parsed to microseconds with any decimal separator and precision
+     */
+    @Test(dataProvider = "totalTimes")
+    public void readTimeTest(String total, long expected) throws IOException {
+        List<long[]> samples = read(block(0, total), null);
+
+        assertEquals(samples.size(), 1);
+        assertEquals(samples.get(0), new long[]{0, 200, 12, 345, 400, 1500, 1234, 567890, expected});
+    }
+
+    /**
+     * Checks that response bodies between the blocks are skipped and all the output is copied to the raw log
+     */
+    @Test
+    public void readBlocksTest() throws IOException {
+        char[] longLine = new char[20_000];
+        Arrays.fill(longLine, 'x');
+        String output = "<html>\ntime_total=7\n" + new String(longLine) + "=1\n" +
+                block(0, "0.1") +
+                "body\r\nhttp_code=500\r\n" +
+                block(7, "0.2").replace("\n", "\r\n") +
+                block(0, "0.3").trim();
+        ByteArrayOutputStream rawLog = new ByteArrayOutputStream();
+
+        List<long[]> samples = read(output, rawLog);
+
+        assertEquals(samples.size(), 3);
+        assertEquals(samples.get(0)[8], 100_000);
+        assertEquals(samples.get(1)[0], 7);
+        assertEquals(samples.get(1)[1], 200);
+        assertEquals(samples.get(1)[8], 200_000);
+        // the last block is read without the trailing line break
+        assertEquals(samples.get(2)[8], 300_000);
+        assertEquals(rawLog.toString("UTF-8"), output);
+    }
+
+    /**
+     * Checks that every response body is hashed without the line break that starts the next block
+     */
+    @Test
+    public void readChecksumTest() throws IOException {
+        char[] longLine = new char[100];
+        Arrays.fill(longLine, 'x');
+        String[] bodies = {"pong", "", "a=b\nexitcode\n\n", "time_total=1\n" + new String(longLine) + "=1", "\n"};
+        StringBuilder output = new StringBuilder();
+        for (String body : bodies) {
+            output.append(body).append(block(0, "0.1"));
+        }
+        List<Long> checksums = new ArrayList<>();
+
+        WriteOutReader.read(new ByteArrayInputStream(output.toString().getBytes(StandardCharsets.UTF_8)), null, true,
+                sample -> checksums.add(sample.checksum));
+
+        assertEquals(checksums.size(), bodies.length);
+        for (int i = 0; i < bodies.length; i++) {
+            CRC32 expected = new CRC32();
+            expected.update(bodies[i].getBytes(StandardCharsets.UTF_8));
+            assertEquals((long) checksums.get(i), expected.getValue(), "body " + i);
+        }
+    }
+}